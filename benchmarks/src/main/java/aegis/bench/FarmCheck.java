@@ -0,0 +1,176 @@
+package aegis.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjDoubleConsumer;
+
+import aegis.core.Aegis;
+import aegis.core.EvaluationFarm;
+import aegis.experiments.FoodExperiment;
+import braincraft.Brain;
+import braincraft.Population;
+
+/**
+ * Checks an EvaluationFarm end to end with workers launched locally, and exits with status 1 if
+ * anything is wrong:
+ * 1. a generation evaluated on the farm gets the fitnesses the experiment gives in this JVM
+ * 2. killing a worker mid-generation reissues its brains, and every fitness still matches
+ * 3. once every worker is dead, evaluating fails quickly instead of waiting forever
+ * 4. a generation larger than the queue fails after the timeout if no worker ever connects
+ *
+ * Not a JMH benchmark, it checks behaviour rather than timing it.
+ *
+ * <pre>
+ *   gradle :benchmarks:farmCheck
+ * </pre>
+ *
+ * @author Prad
+ */
+public final class FarmCheck
+{
+	private static final String[] ARGS = {"hl", "pop=400", "seed=3"};
+	private static final long SEED = 99;
+
+	private static int failures = 0;
+
+	private FarmCheck()
+	{
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		Aegis.headless = true;
+		final FoodExperiment local = new FoodExperiment(ARGS);
+		Population pop = local.getPopulation();
+
+		EvaluationFarm farm = new EvaluationFarm(FoodExperiment.class, ARGS);
+		farm.setSeed(SEED);
+		farm.setTimeout(60 * 1000);
+		List<Process> workers = farm.launchLocalWorkers(2);
+		try
+		{
+			waitForWorkers(farm, 2);
+
+			//1. a whole generation, compared brain by brain with this JVM
+			final List<double[]> seen = new ArrayList<double[]>();
+			int n = farm.evaluateGeneration(pop, new ObjDoubleConsumer<Brain>()
+			{
+				@Override
+				public void accept(Brain b, double fitness)
+				{
+					seen.add(new double[] {fitness, local.evaluate(b, SEED ^ b.getID())});
+				}
+			});
+			int wrong = 0;
+			for(double[] s : seen)
+				if(s[0] != s[1])
+					wrong++;
+			check(n == 400, "evaluated " + n + " of 400 brains");
+			check(wrong == 0, wrong + " of " + n + " farm fitnesses differ from local ones");
+
+			//2. kill a worker once both are busy
+			List<Brain> brains = new ArrayList<Brain>();
+			Brain b;
+			while((b = pop.getBrain()) != null)
+				brains.add(b);
+			List<CompletableFuture<Double>> results = new ArrayList<CompletableFuture<Double>>();
+			for(Brain brain : brains)
+				results.add(farm.submit(brain, SEED ^ brain.getID()));
+			results.get(0).get(60, TimeUnit.SECONDS);
+			workers.get(0).destroyForcibly().waitFor();
+			wrong = 0;
+			for(int i=0; i<brains.size(); i++)
+			{
+				double fitness = results.get(i).get(60, TimeUnit.SECONDS);
+				if(fitness != local.evaluate(brains.get(i), SEED ^ brains.get(i).getID()))
+					wrong++;
+				pop.reportFitness(brains.get(i), fitness);
+			}
+			check(farm.getReissued() > 0, "no brain was reissued after killing a worker");
+			check(wrong == 0, wrong + " fitnesses differ after a worker was killed");
+			System.out.println("killed a worker: " + farm.getReissued() + " brains reissued");
+
+			//3. no workers left
+			workers.get(1).destroyForcibly().waitFor();
+			long start = System.nanoTime();
+			try
+			{
+				farm.evaluateGeneration(pop, null);
+				check(false, "evaluating without workers succeeded");
+			}
+			catch (IllegalStateException e)
+			{
+				double seconds = (System.nanoTime() - start) / 1e9;
+				check(seconds < 30, "evaluating without workers took " + seconds + "s to fail");
+				System.out.println("without workers: " + e.getMessage() + " after "
+						+ String.format("%.2f", seconds) + "s");
+			}
+		}
+		catch (ExecutionException e)
+		{
+			check(false, "a brain couldn't be evaluated: " + e.getCause());
+		}
+		finally
+		{
+			farm.close();
+			for(Process p : workers)
+				p.destroyForcibly();
+		}
+
+		//4. no worker ever connects, and the generation doesn't fit in the queue
+		EvaluationFarm empty = new EvaluationFarm("unix:" + new File(System.getProperty("java.io.tmpdir"),
+				"aegis-farmcheck-" + ProcessHandle.current().pid() + ".sock").getPath(), FoodExperiment.class, ARGS, 8, 2, 16);
+		empty.setTimeout(1000);
+		try
+		{
+			long start = System.nanoTime();
+			try
+			{
+				empty.evaluateGeneration(new FoodExperiment(ARGS).getPopulation(), null);
+				check(false, "evaluating before any worker connected succeeded");
+			}
+			catch (IllegalStateException e)
+			{
+				double seconds = (System.nanoTime() - start) / 1e9;
+				check(seconds < 30, "evaluating before any worker connected took " + seconds + "s to fail");
+				System.out.println("before any worker: " + e.getMessage() + " after "
+						+ String.format("%.2f", seconds) + "s");
+			}
+		}
+		finally
+		{
+			empty.close();
+		}
+
+		if(failures > 0)
+		{
+			System.out.println(failures + " farm checks failed");
+			System.exit(1);
+		}
+		System.out.println("farm checks passed");
+	}
+
+	private static void waitForWorkers(EvaluationFarm farm, int n) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		while(farm.getWorkerCount() < n)
+		{
+			if(System.nanoTime() > deadline)
+				throw new IllegalStateException("only " + farm.getWorkerCount() + " of " + n + " workers connected");
+			Thread.sleep(50);
+		}
+	}
+
+	private static void check(boolean ok, String message)
+	{
+		if(!ok)
+		{
+			System.out.println("FAILED: " + message);
+			failures++;
+		}
+	}
+}
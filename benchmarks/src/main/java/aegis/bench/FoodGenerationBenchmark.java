@@ -0,0 +1,62 @@
+package aegis.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import aegis.core.Aegis;
+import aegis.experiments.FoodExperiment;
+
+/**
+ * Wall time of one headless FoodExperiment generation: issuing every brain,
+ * simulating it and reproducing.
+ *
+ * @author Prad
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@State(Scope.Thread)
+public class FoodGenerationBenchmark
+{
+	@Param({"50", "200"})
+	int populationSize;
+
+	@Param({"30", "100"})
+	int worldSize;
+
+	private FoodExperiment experiment;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Aegis.headless = true;
+		experiment = new FoodExperiment(new String[] {
+				"pop=" + populationSize, "w=" + worldSize, "h=" + worldSize, "gen=1"});
+	}
+
+	@TearDown(Level.Iteration)
+	public void clearLogs()
+	{
+		experiment.getContext().clearLogs();
+	}
+
+	@Benchmark
+	public void generation()
+	{
+		//with gen=1 each run() evaluates exactly one more generation
+		experiment.run();
+	}
+}
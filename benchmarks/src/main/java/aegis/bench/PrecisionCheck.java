@@ -0,0 +1,266 @@
+package aegis.bench;
+
+import java.util.Random;
+
+import aegis.core.Aegis;
+import aegis.core.Critter;
+import aegis.core.CritterPipeline;
+import aegis.core.Stage;
+import aegis.experiments.FoodExperiment;
+import braincraft.Activation;
+import braincraft.Brain;
+import braincraft.BraincraftContext;
+import braincraft.BrainCompiler;
+import braincraft.CompiledBrain;
+import braincraft.TribePopulation;
+
+/**
+ * Bounds how far compiled brains in float precision drift from double precision, and exits with
+ * status 1 if they drift further than BrainCompiler documents. For every activation function it
+ * evolves XOR networks and runs FoodExperiment, compiles each brain in both precisions, pumps both
+ * with the inputs the task gives, and compares every output:
+ * - no output may land on the other side of 0.5, where XOR and the actuators decide
+ * - no output may differ by more than the activation's bound
+ * STEP jumps where a sum crosses 0, so it is only reported.
+ *
+ * Not a JMH benchmark, it checks results rather than timing them.
+ *
+ * <pre>
+ *   gradle :benchmarks:precisionCheck
+ * </pre>
+ *
+ * @author Prad
+ */
+public final class PrecisionCheck
+{
+	private static final int XOR_GENERATIONS = 150;
+	private static final int XOR_POPULATION = 20;
+	private static final String[] FOOD_ARGS = {"hl", "pop=40", "gen=10"};
+	private static final long SEED = 5;
+
+	private static final BrainCompiler compiler = new BrainCompiler();
+	private static int failures = 0;
+
+	private PrecisionCheck()
+	{
+	}
+
+	public static void main(String[] args)
+	{
+		Aegis.headless = true;
+		for(Activation act : Activation.values())
+		{
+			check("XOR ", act, xor(act));
+			check("FOOD", act, food(act));
+		}
+
+		if(failures > 0)
+		{
+			System.out.println(failures + " precision checks failed");
+			System.exit(1);
+		}
+		System.out.println("precision checks passed");
+	}
+
+	/**
+	 * Largest difference allowed between a float and a double output, as documented in BrainCompiler
+	 */
+	private static double bound(Activation act)
+	{
+		switch(act)
+		{
+		case STEP:
+			return Double.POSITIVE_INFINITY;
+		case TANH:
+			return 2e-5;
+		case RELU:
+			return 2e-6;
+		default:
+			return 1e-6;
+		}
+	}
+
+	private static void check(String task, Activation act, Divergence d)
+	{
+		boolean ok = d.max <= bound(act) && (act == Activation.STEP || d.flips == 0);
+		System.out.println(String.format("%s %-12s maxDiff=%.3g flips=%d/%d%s", task, act, d.max, d.flips,
+				d.outputs, ok ? "" : "  FAILED, bound " + bound(act)));
+		if(!ok)
+			failures++;
+	}
+
+	/**
+	 * Evolves XOR networks, comparing both precisions on the four XOR inputs
+	 */
+	private static Divergence xor(Activation act)
+	{
+		TribePopulation pop = new TribePopulation(new BraincraftContext(SEED), XOR_POPULATION, 2, 1);
+		pop.activation = act;
+		Divergence d = new Divergence();
+		for(int i=0; i<XOR_GENERATIONS * XOR_POPULATION; i++)
+		{
+			Brain b = pop.getBrain();
+			Twins twins = new Twins(b, 1);
+			int fitness = 0;
+			for(int x=0; x<2; x++)
+			{
+				for(int y=0; y<2; y++)
+				{
+					double[] out = twins.pump(new double[] {x, y}, 4, 0.0, d);
+					if((out[0] >= 0.5) == ((x ^ y) == 1))
+						fitness++;
+					twins.clearActivity();
+				}
+			}
+			pop.reportFitness(b, (double) fitness);
+		}
+		return d;
+	}
+
+	/**
+	 * Runs FoodExperiment, comparing both precisions on every tick's sensor inputs
+	 */
+	private static Divergence food(Activation act)
+	{
+		String[] args = new String[FOOD_ARGS.length + 2];
+		System.arraycopy(FOOD_ARGS, 0, args, 0, FOOD_ARGS.length);
+		args[FOOD_ARGS.length] = "act=" + act.name().toLowerCase();
+		args[FOOD_ARGS.length + 1] = "seed=" + SEED;
+		FoodCheck e = new FoodCheck(args);
+		e.run();
+		return e.divergence;
+	}
+
+	/**
+	 * Largest difference seen between float and double outputs
+	 */
+	private static class Divergence
+	{
+		double max = 0;
+		long flips = 0;
+		long outputs = 0;
+
+		void compare(double[] exact, double[] single)
+		{
+			for(int i=0; i<exact.length; i++)
+			{
+				outputs++;
+				max = Math.max(max, Math.abs(exact[i] - single[i]));
+				if((exact[i] < 0.5) != (single[i] < 0.5))
+					flips++;
+			}
+		}
+	}
+
+	/**
+	 * A brain compiled in double and in float precision, pumped together
+	 */
+	private static class Twins
+	{
+		final CompiledBrain exact;
+		final CompiledBrain single;
+		final double[] exactOut;
+		final double[] singleOut;
+
+		Twins(Brain b, int outputs)
+		{
+			boolean was = b.isFloatPrecision();
+			b.setFloatPrecision(false);
+			exact = compiler.compile(b);
+			b.setFloatPrecision(true);
+			single = compiler.compile(b);
+			b.setFloatPrecision(was);
+			exactOut = new double[outputs];
+			singleOut = new double[outputs];
+		}
+
+		/**
+		 * Pumps both and compares their outputs
+		 * @return the double precision outputs
+		 */
+		double[] pump(double[] in, int pumps, double epsilon, Divergence d)
+		{
+			exact.pumpUntilStable(in, exactOut, pumps, epsilon);
+			single.pumpUntilStable(in, singleOut, pumps, epsilon);
+			d.compare(exactOut, singleOut);
+			return exactOut;
+		}
+
+		void clearActivity()
+		{
+			exact.clearActivity();
+			single.clearActivity();
+		}
+	}
+
+	/**
+	 * FoodExperiment whose critters sense through a pipeline that also pumps twins of their brain
+	 */
+	private static class FoodCheck extends FoodExperiment
+	{
+		final Divergence divergence = new Divergence();
+
+		FoodCheck(String[] args)
+		{
+			super(args);
+		}
+
+		@Override
+		protected double evaluate(Brain b, Random r, Stage stage, CritterPipeline pipeline)
+		{
+			return super.evaluate(b, r, stage, new TwinPipeline(pipeline, new Twins(b, pipeline.numOutputs()), divergence));
+		}
+	}
+
+	/**
+	 * Passes everything on to the experiment's pipeline, pumping the twins with each tick's inputs
+	 */
+	private static class TwinPipeline extends CritterPipeline
+	{
+		private final CritterPipeline pipeline;
+		private final Twins twins;
+		private final Divergence divergence;
+
+		TwinPipeline(CritterPipeline pipeline, Twins twins, Divergence divergence)
+		{
+			super(pipeline.getStage());
+			this.pipeline = pipeline;
+			this.twins = twins;
+			this.divergence = divergence;
+			pumps = pipeline.pumps;
+			epsilon = pipeline.epsilon;
+			threshold = pipeline.threshold;
+		}
+
+		@Override
+		public int getReward(byte type)
+		{
+			return pipeline.getReward(type);
+		}
+
+		@Override
+		public int numInputs()
+		{
+			return pipeline.numInputs();
+		}
+
+		@Override
+		public int numOutputs()
+		{
+			return pipeline.numOutputs();
+		}
+
+		@Override
+		public void sense(Critter c, double[] in)
+		{
+			pipeline.sense(c, in);
+			twins.pump(in, pumps, epsilon, divergence);
+		}
+
+		@Override
+		public void actuate(Critter c, double[] out)
+		{
+			pipeline.actuate(c, out);
+		}
+	}
+}
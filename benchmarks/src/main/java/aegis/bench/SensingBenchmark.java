@@ -0,0 +1,166 @@
+package aegis.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import aegis.actors.Food;
+import aegis.actors.FoodCritter;
+import aegis.actors.Lava;
+import aegis.core.Aegis;
+import aegis.core.CellType;
+import aegis.core.Direction;
+import aegis.core.SmellSensor;
+import aegis.core.Stage;
+import aegis.core.VisionSensor;
+
+/**
+ * Compares the critter sensing path (NeighborTable + cell type array) against
+ * the old Stage.get(x,y,dir) + instanceof path it replaced, and shows what
+ * 8-ray VisionSensor sensing and SpatialIndex-backed SmellSensor sensing cost next to them.
+ *
+ * @author Prad
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SensingBenchmark
+{
+	private static final int SAMPLES = 1024;
+
+	@Param({"30", "300"})
+	int size;
+
+	private Stage stage;
+	private ProbeCritter critter;
+	private VisionSensor vision;
+	private double[] visionInputs;
+	private SmellSensor smell;
+	private double[] smellInputs;
+	private int[] xs;
+	private int[] ys;
+	private Direction[] dirs;
+
+	@Setup
+	public void setup()
+	{
+		Aegis.headless = true;
+
+		Random r = new Random(42);
+		stage = new Stage(size, size);
+		int actors = size * size / 3;
+		for (int i = 0; i < actors; i++)
+		{
+			stage.addRandomUnsafe(new Food(), r);
+			stage.addRandomUnsafe(new Lava(), r);
+		}
+
+		critter = new ProbeCritter(stage);
+		vision = new VisionSensor(stage, 20, CellType.FOOD, CellType.LAVA);
+		visionInputs = new double[vision.size()];
+		smell = new SmellSensor(stage, CellType.FOOD);
+		smellInputs = new double[smell.size()];
+		xs = new int[SAMPLES];
+		ys = new int[SAMPLES];
+		dirs = new Direction[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			xs[i] = r.nextInt(size);
+			ys[i] = r.nextInt(size);
+			dirs[i] = Direction.values()[r.nextInt(8)];
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void instanceofSensing(Blackhole bh)
+	{
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			critter.moveTo(xs[i], ys[i], dirs[i]);
+			bh.consume(critter.legacyInputs());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void tableSensing(Blackhole bh)
+	{
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			critter.moveTo(xs[i], ys[i], dirs[i]);
+			bh.consume(critter.inputs());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void visionSensing(Blackhole bh)
+	{
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			critter.moveTo(xs[i], ys[i], dirs[i]);
+			vision.sense(critter, visionInputs, 0);
+			bh.consume(visionInputs);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void smellSensing(Blackhole bh)
+	{
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			critter.moveTo(xs[i], ys[i], dirs[i]);
+			smell.sense(critter, smellInputs, 0);
+			bh.consume(smellInputs);
+		}
+	}
+
+	/**
+	 * Exposes both sensing paths of a FoodCritter for the same position and heading
+	 */
+	static class ProbeCritter extends FoodCritter
+	{
+		ProbeCritter(Stage s)
+		{
+			super(null, s);
+		}
+
+		void moveTo(int px, int py, Direction d)
+		{
+			x = px;
+			y = py;
+			dir = d;
+		}
+
+		double[] inputs()
+		{
+			return getBrainInputs();
+		}
+
+		/**
+		 * FoodCritter.getBrainInputs as it was before sensing went through the NeighborTable
+		 */
+		double[] legacyInputs()
+		{
+			double in[] = new double[3];
+
+			in[0] = (stage.get(x,y,dir.getLeft()) instanceof Food) ? 1.0 : 0.0;
+			in[1] = (stage.get(x,y,dir) instanceof Food) ? 1.0 : 0.0;
+			in[2] = (stage.get(x,y,dir.getRight()) instanceof Food) ? 1.0 : 0.0;
+
+			return in;
+		}
+	}
+}
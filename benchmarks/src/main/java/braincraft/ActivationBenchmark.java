@@ -0,0 +1,49 @@
+package braincraft;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of one activation function call, over node sums spread the way
+ * evolved weights produce them. SIGMOID is the original Math.pow version.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ActivationBenchmark {
+	private static final int SUMS = 1024;
+
+	@Param({ "SIGMOID", "EXP_SIGMOID", "FAST_SIGMOID", "TANH", "RELU", "STEP" })
+	Activation activation;
+
+	private double[] sums;
+
+	@Setup
+	public void setup() {
+		Random r = new Random(1);
+		sums = new double[SUMS];
+		for (int i = 0; i < SUMS; i++)
+			sums[i] = r.nextGaussian() * 2;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SUMS)
+	public double apply() {
+		double total = 0;
+		for (int i = 0; i < SUMS; i++)
+			total += activation.apply(sums[i], -4.9);
+		return total;
+	}
+}
@@ -0,0 +1,78 @@
+package braincraft;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One pump of a whole population of 3-input/3-output FoodExperiment Brains
+ * with the initial fully connected topology: each Brain's pumpNet in turn,
+ * against a BrainBatch with the scalar and the SIMD kernel. Divide the time by
+ * brains for the cost per Brain.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BatchBenchmark {
+	@Param({ "8", "64", "512" })
+	int brains;
+
+	private List<Brain> population;
+	private BrainBatch scalar;
+	private BrainBatch vector;
+	private double[][] inputs;
+	private double[][] outputs;
+
+	@Setup
+	public void setup() {
+		TribePopulation pop = Genomes.population(1, 3, 3);
+		population = new ArrayList<Brain>();
+		for (int i = 0; i < brains; i++)
+			population.add(new DNA(pop, true).DNAtoBrain());
+		scalar = new BrainBatch(population, false);
+		vector = new BrainBatch(population, true);
+		if (!vector.isVectorized())
+			throw new IllegalStateException("Vector API not available");
+
+		Random r = new Random(1);
+		inputs = new double[brains][3];
+		outputs = new double[brains][3];
+		for (double[] in : inputs) {
+			for (int i = 0; i < in.length; i++)
+				in[i] = r.nextInt(2);
+		}
+	}
+
+	@Benchmark
+	public double[][] pumpEach() {
+		for (int i = 0; i < brains; i++)
+			outputs[i] = population.get(i).pumpNet(inputs[i]);
+		return outputs;
+	}
+
+	@Benchmark
+	public double[][] batchScalar() {
+		scalar.pumpNet(inputs, outputs);
+		return outputs;
+	}
+
+	@Benchmark
+	public double[][] batchVector() {
+		vector.pumpNet(inputs, outputs);
+		return outputs;
+	}
+}
@@ -0,0 +1,62 @@
+package braincraft;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of one Brain.pumpNet call for networks grown to different sizes from
+ * the 3-input/3-output FoodExperiment topology, and of settling a network the
+ * way a Critter does: five recurrent pumps against one feed-forward pass.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BrainBenchmark {
+	@Param({ "0", "10", "50" })
+	int hiddenNodes;
+
+	private Brain brain;
+	private Brain recurrentBrain;
+	private Brain feedForwardBrain;
+	private double[] inputs;
+
+	@Setup
+	public void setup() {
+		TribePopulation pop = Genomes.population(1, 3, 3);
+		brain = Genomes.grow(pop, hiddenNodes, hiddenNodes * 2).DNAtoBrain();
+		// no extra links, so the network stays acyclic and can be sorted
+		DNA acyclic = Genomes.grow(pop, hiddenNodes, 0);
+		recurrentBrain = acyclic.DNAtoBrain();
+		feedForwardBrain = acyclic.DNAtoBrain();
+		feedForwardBrain.setFeedForward(true);
+		inputs = new double[] { 1.0, 0.0, 1.0 };
+	}
+
+	@Benchmark
+	public double[] pumpNet() {
+		return brain.pumpNet(inputs);
+	}
+
+	@Benchmark
+	public double[] settleRecurrent() {
+		double[] out = null;
+		for (int i = 0; i < 5; i++)
+			out = recurrentBrain.pumpNet(inputs);
+		return out;
+	}
+
+	@Benchmark
+	public double[] settleFeedForward() {
+		return feedForwardBrain.pumpNet(inputs);
+	}
+}
@@ -0,0 +1,65 @@
+package braincraft;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One pumpNet call of the same grown network interpreted by Brain and compiled
+ * by BrainCompiler, and the cost of compiling it with and without a cache hit.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CompilerBenchmark {
+	@Param({ "0", "10", "50" })
+	int hiddenNodes;
+
+	private Brain brain;
+	private CompiledBrain compiled;
+	private BrainCompiler compiler;
+	private BrainCompiler uncached;
+	private double[] inputs;
+
+	@Setup
+	public void setup() {
+		TribePopulation pop = Genomes.population(1, 3, 3);
+		DNA d = Genomes.grow(pop, hiddenNodes, hiddenNodes * 2);
+		brain = d.DNAtoBrain();
+		compiler = new BrainCompiler();
+		uncached = new BrainCompiler(0);
+		compiled = compiler.compile(d.DNAtoBrain());
+		if (!compiled.isCompiled())
+			throw new IllegalStateException("Brain was not compiled");
+		inputs = new double[] { 1.0, 0.0, 1.0 };
+	}
+
+	@Benchmark
+	public double[] interpreted() {
+		return brain.pumpNet(inputs);
+	}
+
+	@Benchmark
+	public double[] compiled() {
+		return compiled.pumpNet(inputs);
+	}
+
+	@Benchmark
+	public CompiledBrain compileCached() {
+		return compiler.compile(brain);
+	}
+
+	@Benchmark
+	public CompiledBrain compileUncached() {
+		return uncached.compile(brain);
+	}
+}
@@ -0,0 +1,62 @@
+package braincraft;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Crossover and the mutation operators that don't change genome structure.
+ * Population mutation rates are zeroed so NEATcross measures crossover alone.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class DNABenchmark {
+	@Param({ "0", "10", "50" })
+	int hiddenNodes;
+
+	private TribePopulation pop;
+	private DNA mother;
+	private DNA father;
+	private DNA scratch;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		Braincraft.clearLogs();
+		pop = Genomes.population(2, 3, 3);
+		mother = Genomes.grow(pop, hiddenNodes, hiddenNodes * 2);
+		mother.fitness = 1.0;
+		father = Genomes.copy(pop, mother);
+		father.mutateWeights();
+		father.fitness = 0.5;
+		scratch = Genomes.copy(pop, mother);
+		Genomes.disableMutations(pop);
+	}
+
+	@Benchmark
+	public DNA NEATcross() {
+		return mother.NEATcross(father);
+	}
+
+	@Benchmark
+	public DNA mutateWeights() {
+		scratch.mutateWeights();
+		return scratch;
+	}
+
+	@Benchmark
+	public DNA mutateDisableLink() {
+		scratch.mutateDisableLink();
+		return scratch;
+	}
+}
@@ -0,0 +1,63 @@
+package braincraft;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mutation operators that add structure. Each one registers new nodes or
+ * innovations with the Population, which makes later calls slower, so every
+ * iteration starts from a fresh Population and runs a fixed batch of
+ * copy-then-mutate operations. Scores are per batch of 1000; compare against
+ * copy to see the cost of the mutation itself.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = 1000)
+@Measurement(iterations = 20, batchSize = 1000)
+@State(Scope.Thread)
+public class DNAStructureBenchmark {
+	@Param({ "0", "10", "50" })
+	int hiddenNodes;
+
+	private TribePopulation pop;
+	private DNA parent;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		Braincraft.clearLogs();
+		pop = Genomes.population(1, 3, 3);
+		parent = Genomes.grow(pop, hiddenNodes, hiddenNodes * 2);
+	}
+
+	@Benchmark
+	public DNA copy() {
+		return Genomes.copy(pop, parent);
+	}
+
+	@Benchmark
+	public DNA copyAndMutateAddLink() {
+		DNA d = Genomes.copy(pop, parent);
+		d.mutateAddLink();
+		return d;
+	}
+
+	@Benchmark
+	public DNA copyAndMutateAddNode() {
+		DNA d = Genomes.copy(pop, parent);
+		d.mutateAddNode();
+		return d;
+	}
+}
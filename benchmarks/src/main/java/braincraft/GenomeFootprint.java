@@ -0,0 +1,133 @@
+package braincraft;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+/**
+ * Heap footprint of a TribePopulation's genomes. For each population size it
+ * breeds a few generations with random fitness, then reports the live heap
+ * after a full collection, the genes the unevaluated DNA hold, how many
+ * distinct Gene objects back them, and the bytes allocated breeding the last
+ * generation. Each size is bred twice: with Braincraft's default weight
+ * mutation rate, which rewrites most weights of most offspring, and with the
+ * rate the Aegis experiments use, then once more at that rate with the
+ * genomes packed off the heap into a GenomeStore. Off-heap rows also report
+ * the direct memory the store holds; their Genes are made on demand, so
+ * distinct Genes are not counted.
+ *
+ * Not a JMH benchmark: JMH times operations, this measures what stays on the
+ * heap.
+ *
+ * <pre>
+ *   gradle :benchmarks:footprint
+ *   gradle :benchmarks:footprint -PfootprintArgs="1000 10000"
+ * </pre>
+ *
+ * @author Chris Donahue
+ */
+public final class GenomeFootprint {
+	private static final int INPUTS = 8;
+	private static final int OUTPUTS = 4;
+	private static final int GENERATIONS = 5;
+	private static final double AEGIS_WEIGHT_MUTATION_RATE = 0.2;
+
+	private GenomeFootprint() {
+	}
+
+	public static void main(String[] args) {
+		int[] sizes = { 1000, 10000, 100000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		System.out.println("population\twmr\toffHeap\tliveMB\tdirectMB"
+				+ "\tbytesPerDNA\tgenesPerDNA\tdistinctGenes"
+				+ "\tallocatedMBPerGeneration");
+		double defaultRate = new BraincraftContext().weightMutationRate;
+		for (int size : sizes) {
+			measure(size, defaultRate, false);
+			measure(size, AEGIS_WEIGHT_MUTATION_RATE, false);
+			measure(size, AEGIS_WEIGHT_MUTATION_RATE, true);
+		}
+	}
+
+	/**
+	 * Breeds a population and prints one row about it
+	 */
+	private static void measure(int size, double weightMutationRate,
+			boolean offHeap) {
+		long empty = liveBytes();
+
+		BraincraftContext context = new BraincraftContext(42);
+		context.weightMutationRate = weightMutationRate;
+		context.offHeapGenomes = offHeap;
+		TribePopulation pop = new TribePopulation(context, size, INPUTS,
+				OUTPUTS);
+		Random random = new Random(42);
+		long allocated = 0;
+		for (int g = 0; g < GENERATIONS; g++) {
+			evaluate(pop, random);
+			// The first Brain of the next generation breeds it
+			long before = allocatedBytes();
+			Brain first = pop.getBrain();
+			allocated = allocatedBytes() - before;
+			pop.reportFitness(first, random.nextDouble() * 10);
+			context.clearLogs();
+		}
+
+		long live = liveBytes() - empty;
+		long genes = 0;
+		IdentityHashMap<Gene, Boolean> distinct = new IdentityHashMap<Gene, Boolean>();
+		for (DNA d : pop.unevaluated) {
+			genes += d.numGenes();
+			if (!offHeap)
+				for (Gene g : d.getGenes())
+					distinct.put(g, Boolean.TRUE);
+		}
+		int dna = pop.unevaluated.size();
+		long direct = pop.getGenomeStore().getReservedBytes();
+
+		System.out.println(size + "\t" + weightMutationRate + "\t" + offHeap
+				+ "\t" + String.format("%.1f", live / 1e6) + "\t"
+				+ String.format("%.1f", direct / 1e6) + "\t" + live / size
+				+ "\t" + String.format("%.1f", (double) genes / dna) + "\t"
+				+ (offHeap ? "-" : String.valueOf(distinct.size())) + "\t"
+				+ String.format("%.1f", allocated / 1e6));
+	}
+
+	/**
+	 * Reports a random fitness for every Brain left in the generation
+	 */
+	private static void evaluate(Population pop, Random random) {
+		while (pop.brainsAvailable() > 0) {
+			Brain b = pop.getBrain();
+			pop.reportFitness(b, random.nextDouble() * 10);
+		}
+	}
+
+	/**
+	 * Heap in use after a full collection
+	 */
+	private static long liveBytes() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Bytes this thread has allocated so far, 0 if the JVM can't tell
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+}
@@ -0,0 +1,86 @@
+package braincraft;
+
+/**
+ * Builds populations and genomes of a given size for the Braincraft benchmarks.
+ * Lives in the braincraft package so benchmarks can reach DNA and Tribe directly.
+ * 
+ * @author Chris Donahue
+ */
+final class Genomes {
+	private Genomes() {
+	}
+
+	/**
+	 * Makes a TribePopulation without console logging
+	 * 
+	 * @param size
+	 *            population size
+	 * @param in
+	 *            number of inputs
+	 * @param out
+	 *            number of outputs
+	 * @return a new TribePopulation
+	 */
+	static TribePopulation population(int size, int in, int out) {
+		Braincraft.logToSystemOut = false;
+		Braincraft.gatherStats = false;
+		return new TribePopulation(size, in, out);
+	}
+
+	/**
+	 * Makes a fully connected DNA and grows it by node and link mutations
+	 * 
+	 * @param p
+	 *            Population the DNA belongs to
+	 * @param hiddenNodes
+	 *            number of node mutations to apply
+	 * @param extraLinks
+	 *            number of link mutations to apply
+	 * @return the grown DNA
+	 */
+	static DNA grow(Population p, int hiddenNodes, int extraLinks) {
+		DNA d = new DNA(p, true);
+		for (int i = 0; i < hiddenNodes; i++)
+			d.mutateAddNode();
+		for (int i = 0; i < extraLinks; i++)
+			d.mutateAddLink();
+		return d;
+	}
+
+	/**
+	 * Makes a pointer-independent copy of a DNA the same way NEATcross
+	 * copies genes, without any crossover or mutation.
+	 * 
+	 * @param p
+	 *            Population the copy belongs to
+	 * @param d
+	 *            DNA to copy
+	 * @return the copy
+	 */
+	static DNA copy(Population p, DNA d) {
+		DNA c = new DNA(p, false);
+		for (Integer i : d.getInnovations()) {
+			Gene g = d.getGene(i);
+			if (!c.hasNode(g.start))
+				c.submitNewNode(d.getNode(g.start));
+			if (!c.hasNode(g.end))
+				c.submitNewNode(d.getNode(g.end));
+			c.submitNewGene(g);
+		}
+		c.fitness = d.fitness;
+		return c;
+	}
+
+	/**
+	 * Turns off every mutation so NEATcross measures crossover alone
+	 * 
+	 * @param p
+	 *            Population to change
+	 */
+	static void disableMutations(Population p) {
+		p.weightMutationRate = 0;
+		p.linkMutationRate = 0;
+		p.nodeMutationRate = 0;
+		p.linkDisableRate = 0;
+	}
+}
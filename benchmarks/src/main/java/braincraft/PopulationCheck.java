@@ -0,0 +1,189 @@
+package braincraft;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Checks how Population.evaluateGeneration() tests a generation, and exits
+ * with status 1 if anything is wrong:
+ * 1. a fitness function that throws leaves the Brains it failed on to be
+ * tested by the next call, and the generation still finishes
+ * 2. an Executor that rejects a task does the same for the Brains it never
+ * ran
+ * 3. with elitism and deterministicFitness on, elites are not tested again:
+ * each generation calls the fitness function once per Brain that is not an
+ * elite, and with deterministicFitness off once per Brain. XOR scores a
+ * genome the same every time, so both breed the same generations.
+ *
+ * Not a JMH benchmark, it checks behaviour rather than timing it.
+ *
+ * <pre>
+ *   gradle :benchmarks:populationCheck
+ * </pre>
+ *
+ * @author Chris Donahue
+ */
+public final class PopulationCheck {
+	private static final int POPULATION = 30;
+	private static final long SEED = 17;
+	private static final int ELITE_POPULATION = 150;
+	private static final int ELITE_GENERATIONS = 30;
+
+	private static int failures = 0;
+
+	private PopulationCheck() {
+	}
+
+	public static void main(String[] args) {
+		throwingFitness();
+		rejectingExecutor();
+		double[] tested = elites(false);
+		double[] carried = elites(true);
+		check(Arrays.equals(tested, carried),
+				"carrying elites over bred different generations than testing them again");
+
+		if (failures > 0) {
+			System.out.println(failures + " population checks failed");
+			System.exit(1);
+		}
+		System.out.println("population checks passed");
+	}
+
+	/**
+	 * 1. the fitness function throws on the fifth Brain of a generation
+	 */
+	private static void throwingFitness() {
+		TribePopulation pop = newPopulation();
+		final int[] calls = { 0 };
+		FitnessFunction failing = new FitnessFunction() {
+			public double evaluate(Brain b) {
+				if (++calls[0] == 5)
+					throw new IllegalStateException("fitness failed");
+				return b.ID % 7;
+			}
+		};
+		try {
+			pop.evaluateGeneration(failing, Evaluators.sequential());
+			check(false, "a throwing fitness function did not throw");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		int generation = pop.currentGeneration();
+		int retested = pop.evaluateGeneration(constant(), Evaluators.sequential());
+		check(retested == 1, "after a throw, " + retested
+				+ " Brains were tested instead of the 1 that failed");
+		check(pop.currentGeneration() == generation + 1,
+				"the generation did not finish after the failed Brain was tested");
+		int next = pop.evaluateGeneration(constant(), Evaluators.sequential());
+		check(next == POPULATION, "the next generation tested " + next
+				+ " of " + POPULATION + " Brains");
+	}
+
+	/**
+	 * 2. the Executor rejects every task after the third
+	 */
+	private static void rejectingExecutor() {
+		TribePopulation pop = newPopulation();
+		Executor rejecting = new Executor() {
+			private int tasks = 0;
+
+			public void execute(Runnable task) {
+				if (++tasks > 3)
+					throw new RejectedExecutionException("executor full");
+				task.run();
+			}
+		};
+		try {
+			pop.evaluateGeneration(constant(), rejecting);
+			check(false, "a rejecting Executor did not throw");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		int generation = pop.currentGeneration();
+		int retested = pop.evaluateGeneration(constant(), Evaluators.sequential());
+		check(retested == POPULATION - 3, "after a rejection, " + retested
+				+ " Brains were tested instead of " + (POPULATION - 3));
+		check(pop.currentGeneration() == generation + 1,
+				"the generation did not finish after the rejected Brains were tested");
+	}
+
+	/**
+	 * 3. counts fitness calls per generation of XOR with elitism on
+	 * 
+	 * @return the average fitness of each generation
+	 */
+	private static double[] elites(boolean deterministic) {
+		BraincraftContext context = new BraincraftContext(SEED);
+		TribePopulation pop = new TribePopulation(context, ELITE_POPULATION,
+				2, 1);
+		pop.elitism = 2;
+		pop.deterministicFitness = deterministic;
+		final int[] calls = { 0 };
+		FitnessFunction xor = new FitnessFunction() {
+			public double evaluate(Brain b) {
+				calls[0]++;
+				return xor(b);
+			}
+		};
+		double[] averages = new double[ELITE_GENERATIONS];
+		long carried = 0;
+		for (int g = 0; g < ELITE_GENERATIONS; g++) {
+			calls[0] = 0;
+			pop.evaluateGeneration(xor, Evaluators.sequential());
+			GenerationMetrics m = pop.getMetrics().getLatest();
+			averages[g] = m.getAverageFitness();
+			long elites = m.getCount(Metrics.Counter.ELITES);
+			int expected = deterministic ? ELITE_POPULATION - (int) elites
+					: ELITE_POPULATION;
+			check(calls[0] == expected, "generation " + (g + 1) + " with "
+					+ elites + " elites called the fitness function "
+					+ calls[0] + " times instead of " + expected
+					+ (deterministic ? "" : " without deterministicFitness"));
+			carried += elites;
+		}
+		check(carried > 0, "no elites were carried over in "
+				+ ELITE_GENERATIONS + " generations");
+		System.out.println("elites with deterministicFitness "
+				+ (deterministic ? "on" : "off") + ": " + carried
+				+ " carried over in " + ELITE_GENERATIONS + " generations");
+		return averages;
+	}
+
+	/**
+	 * Scores a Brain on the four XOR cases
+	 */
+	private static double xor(Brain b) {
+		int fitness = 0;
+		for (int x = 0; x < 2; x++) {
+			for (int y = 0; y < 2; y++) {
+				double[] out = new double[1];
+				b.pumpUntilStable(new double[] { x, y }, out, 4, 0.0);
+				if ((out[0] >= 0.5) == ((x ^ y) == 1))
+					fitness++;
+				b.clearActivity();
+			}
+		}
+		return fitness;
+	}
+
+	private static TribePopulation newPopulation() {
+		BraincraftContext context = new BraincraftContext(SEED);
+		return new TribePopulation(context, POPULATION, 2, 1);
+	}
+
+	private static FitnessFunction constant() {
+		return new FitnessFunction() {
+			public double evaluate(Brain b) {
+				return 1;
+			}
+		};
+	}
+
+	private static void check(boolean ok, String message) {
+		if (!ok) {
+			System.out.println("FAILED: " + message);
+			failures++;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package braincraft;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one generation turnover of a TribePopulation: fitness sharing,
+ * culling, crossover and speciation, triggered by the first getBrain() of a
+ * new generation. The previous generation is evaluated with random fitness
+ * before each measured call.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 30)
+@State(Scope.Thread)
+public class RepopulateBenchmark {
+	@Param({ "50", "200", "1000" })
+	int populationSize;
+
+	private TribePopulation pop;
+	private Random random;
+	private Brain first;
+
+	@Setup(Level.Trial)
+	public void setupPopulation() {
+		random = new Random(42);
+		pop = Genomes.population(populationSize, 3, 3);
+	}
+
+	@Setup(Level.Iteration)
+	public void evaluateGeneration() {
+		Braincraft.clearLogs();
+		if (first != null)
+			pop.reportFitness(first, random.nextDouble() * 10);
+		while (pop.brainsAvailable() > 0) {
+			Brain b = pop.getBrain();
+			pop.reportFitness(b, random.nextDouble() * 10);
+		}
+	}
+
+	@Benchmark
+	public Brain repopulate() {
+		first = pop.getBrain();
+		return first;
+	}
+}
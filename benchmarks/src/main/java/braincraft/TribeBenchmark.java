@@ -0,0 +1,46 @@
+package braincraft;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of Tribe.isCompatible between a representative and a structurally
+ * different relative of it.
+ * 
+ * @author Chris Donahue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TribeBenchmark {
+	@Param({ "0", "10", "50" })
+	int hiddenNodes;
+
+	private Tribe tribe;
+	private DNA other;
+
+	@Setup
+	public void setup() {
+		TribePopulation pop = Genomes.population(1, 3, 3);
+		DNA rep = Genomes.grow(pop, hiddenNodes, hiddenNodes * 2);
+		other = Genomes.copy(pop, rep);
+		other.mutateAddNode();
+		other.mutateAddLink();
+		other.mutateWeights();
+		tribe = new Tribe(pop, rep);
+		Braincraft.clearLogs();
+	}
+
+	@Benchmark
+	public boolean isCompatible() {
+		return tribe.isCompatible(other);
+	}
+}
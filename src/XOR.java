@@ -1,5 +1,7 @@
 import braincraft.Brain;
 import braincraft.Braincraft;
+import braincraft.Evaluators;
+import braincraft.FitnessFunction;
 import braincraft.TribePopulation;
 
 /**
@@ -10,6 +12,10 @@ import braincraft.TribePopulation;
  *         XOR gate (a more difficult task than an AND gate and will sometimes fail)
  */
 public class XOR {
+	/**
+	 * The first Brain found that solves XOR
+	 */
+	private Brain solution;
 
 	public static void main(String[] args) {
 		new XOR();
@@ -22,23 +28,28 @@ public class XOR {
 		Braincraft.logToSystemOut = true;
 		
 		TribePopulation pop = new TribePopulation(20, 2, 1);
+		// XOR always scores a network the same, so each network is only tested
+		// once however many copies of it are bred
+		pop.memoizeFitness = true;
 
-		// Loop to acquire and test Brains.
-		double fitness = 0;
-		int counter = 0;
-		while (fitness < 4 && counter < 20000) {
-			Brain b = pop.getBrain();
-			fitness = evaluateBrain(b);
-			pop.reportFitness(b, fitness);
-
-			if (fitness == 4) {
-				b.saveText("xornetwork.txt");
-				pop.killPopulation("XOR network found and saved.");
+		// Test whole generations until a Brain solves XOR.
+		FitnessFunction xor = new FitnessFunction() {
+			public double evaluate(Brain b) {
+				double fitness = evaluateBrain(b);
+				if (fitness == 4 && solution == null)
+					solution = b;
+				return fitness;
 			}
-			counter++;
+		};
+		int generation = 0;
+		while (solution == null && generation < 1000) {
+			pop.evaluateGeneration(xor, Evaluators.sequential());
+			generation++;
 		}
-		if (counter == 20000)
-		{
+		if (solution != null) {
+			solution.saveText("xornetwork.txt");
+			pop.killPopulation("XOR network found and saved.");
+		} else {
 			pop.killPopulation("XOR network not produced in 20,000 trials.");
 		}
 
@@ -65,10 +76,8 @@ public class XOR {
 				arr[0] = x;
 				arr[1] = y;
 
-				double[] output = null;
-				for (int i = 0; i < 4; i++) {
-					output = b.pumpNet(arr);
-				}
+				double[] output = new double[1];
+				b.pumpUntilStable(arr, output, 4, 0.0);
 
 				boolean result = true;
 				if (output[0] < 0.5) {
@@ -8,155 +8,102 @@ import java.awt.GraphicsEnvironment;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 
-import aegis.core.Actor;
+import aegis.core.Actuator;
+import aegis.core.AdjacentSensor;
 import aegis.core.Aegis;
+import aegis.core.CellType;
+import aegis.core.Critter;
+import aegis.core.CritterPipeline;
 import aegis.core.Direction;
 import aegis.core.Stage;
 import braincraft.Brain;
 
-public class FoodCritter extends Actor
+/**
+ * Critter that senses food in the three cells in front of it, can turn left, move forward
+ * and turn right, and scores a point for every food it walks onto.
+ * 
+ * @author Prad
+ */
+public class FoodCritter extends Critter
 {
-	//stage
-	protected Stage stage;
-	//brain
-	protected Brain brain;
-	//direction
-	protected Direction dir;
-	//food eaten
-	protected int score;
-	
-	BufferedImage image;
-	Graphics2D g;
+	//one image per direction, drawn once and shared by all critters
+	//so a captured frame can hold on to them without them changing
+	static BufferedImage[] images;
 	
 	public FoodCritter(Brain b, Stage s)
 	{
-		brain = b;
-		stage = s;
-		dir = Direction.NORTH;
-		score=0;
-		
-		if(!Aegis.headless)
-		{
-			//set up image
-			GraphicsDevice gd = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
-			image = gd.getDefaultConfiguration().createCompatibleImage(Stage.CELL_SIZE, Stage.CELL_SIZE);
-			g = (Graphics2D) image.getGraphics();
-			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-			g.setStroke(new BasicStroke(3, BasicStroke.JOIN_MITER, BasicStroke.JOIN_MITER));
-
-			updateImage();
-		}
+		this(b, createPipeline(s));
 	}
 	
-	public void updateImage()
-	{
-		int size = (int)(Stage.CELL_SIZE * .75) ;
-		
-		g.setColor(Color.BLACK);
-		g.fillRect(0, 0, Stage.CELL_SIZE, Stage.CELL_SIZE);
-		
-		g.setColor(Color.CYAN);
-		g.fillOval((Stage.CELL_SIZE - size)/2, (Stage.CELL_SIZE - size)/2, size, size);
-		
-		g.setColor(Color.RED);
-		g.drawLine(Stage.CELL_SIZE/2, Stage.CELL_SIZE/2, 
-				Stage.CELL_SIZE/2 + dir.getX() * (int)(Stage.CELL_SIZE * .45),
-				Stage.CELL_SIZE/2 + dir.getY() * (int)(Stage.CELL_SIZE * .45));
-	}
-	
-	@Override
-	public BufferedImage getImage()
-	{
-		return image;
-	}
-	
-	@Override
-	public void act() 
+	public FoodCritter(Brain b, CritterPipeline p)
 	{
-		double in[]	 = getBrainInputs();
+		super(b, p);
 		
-		double out[]= new double[3];
-		for (int i = 0; i < 5; i++)
+		//making graphics objects in headless mode throws errors
+		if(!Aegis.headless && images == null)
 		{
-			out = brain.pumpNet(in);
+			BufferedImage[] imgs = new BufferedImage[Direction.values().length];
+			for(Direction d : Direction.values())
+				imgs[d.ordinal()] = makeImage(d);
+			images = imgs;
 		}
-		
-		useBrainOutputs(out);
-		
-		if(!Aegis.headless)
-			updateImage();
-	}
-	
-	/**
-	 * Gets data from the stage and converts it into inputs for the brain.
-	 * @return inputs for the brain
-	 */
-	protected double[] getBrainInputs()
-	{
-		double in[] = new double[3];
-		
-		in[0] = (stage.get(x,y,dir.getLeft()) instanceof Food) ? 1.0 : 0.0;
-		in[1] = (stage.get(x,y,dir) instanceof Food) ? 1.0 : 0.0;
-		in[2] = (stage.get(x,y,dir.getRight()) instanceof Food) ? 1.0 : 0.0;
-		
-		return in;
 	}
 	
 	/**
-	 * Takes the outputs of the brain and applies them to the simulation world.
-	 * @param out 
+	 * Sets up what a FoodCritter senses and does: 3 food inputs, 3 outputs
+	 * @param s
+	 * @return
 	 */
-	protected void useBrainOutputs(double[] out)
+	public static CritterPipeline createPipeline(Stage s)
 	{
-		if(out[0] > .5)
-			turnLeft();
+		CritterPipeline p = new CritterPipeline(s);
+		p.addSensor(new AdjacentSensor(s, CellType.FOOD));
 		
-		if(out[1] > .5)
-			moveForward();
+		p.addActuator(Actuator.TURN_LEFT);
+		p.addActuator(Actuator.MOVE_FORWARD);
+		p.addActuator(Actuator.TURN_RIGHT);
 		
-		if(out[2] > .5)
-			turnRight();
+		p.setReward(CellType.FOOD, 1);
+		return p;
 	}
 	
-	protected void moveForward()
+	private static BufferedImage makeImage(Direction d)
 	{
-		int dx = x + dir.getX();
-		int dy = y + dir.getY();
+		//set up image
+		GraphicsDevice gd = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+		BufferedImage image = gd.getDefaultConfiguration().createCompatibleImage(Stage.CELL_SIZE, Stage.CELL_SIZE);
+		Graphics2D g = (Graphics2D) image.getGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setStroke(new BasicStroke(3, BasicStroke.JOIN_MITER, BasicStroke.JOIN_MITER));
 		
-		Actor a = stage.remove(x, y);
+		int size = (int)(Stage.CELL_SIZE * .75) ;
 		
-		if(dx < 0)
-			x = stage.getWidth() - 1;
-		else if (dx >= stage.getWidth())
-			x = 0;
-		else 
-			x = dx;
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, Stage.CELL_SIZE, Stage.CELL_SIZE);
 		
-		if(dy < 0)
-			y = stage.getHeight() - 1;
-		else if (dy >= stage.getHeight())
-			y = 0;
-		else 
-			y = dy;
+		g.setColor(Color.CYAN);
+		g.fillOval((Stage.CELL_SIZE - size)/2, (Stage.CELL_SIZE - size)/2, size, size);
 		
-		if(stage.get(x, y) instanceof Food)
-			score++;
+		g.setColor(Color.RED);
+		g.drawLine(Stage.CELL_SIZE/2, Stage.CELL_SIZE/2, 
+				Stage.CELL_SIZE/2 + d.getX() * (int)(Stage.CELL_SIZE * .45),
+				Stage.CELL_SIZE/2 + d.getY() * (int)(Stage.CELL_SIZE * .45));
 		
-		stage.add(x, y, a);
+		return image;
 	}
 	
-	protected void turnLeft()
-	{
-		dir = dir.getLeft();
-	}
-
-	protected void turnRight()
+	@Override
+	public BufferedImage getImage()
 	{
-		dir = dir.getRight();
+		if(images == null)
+			return null;
+		
+		return images[dir.ordinal()];
 	}
 	
-	public int fitness()
+	@Override
+	public byte getCellType()
 	{
-		return score;
+		return CellType.CRITTER;
 	}
 }
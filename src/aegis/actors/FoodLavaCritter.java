@@ -1,80 +1,39 @@
 package aegis.actors;
 
-import aegis.core.Actor;
+import aegis.core.AdjacentSensor;
+import aegis.core.CellType;
+import aegis.core.CritterPipeline;
 import aegis.core.Stage;
 import braincraft.Brain;
 
+/**
+ * FoodCritter that also senses lava in front of it and loses a point for walking onto it.
+ * 
+ * @author Prad
+ */
 public class FoodLavaCritter extends FoodCritter
 {
 	public FoodLavaCritter(Brain b, Stage s)
 	{
-		super(b, s);
+		this(b, createPipeline(s));
 	}
 	
-	/**
-	 * Gets data from the stage and converts it into inputs for the brain.
-	 * @return inputs for the brain
-	 */
-	@Override
-	protected double[] getBrainInputs()
+	public FoodLavaCritter(Brain b, CritterPipeline p)
 	{
-		double in[] = new double[6];
-		
-		in[0] = (stage.get(x,y,dir.getLeft()) instanceof Food) ? 1.0 : 0.0;
-		in[1] = (stage.get(x,y,dir) instanceof Food) ? 1.0 : 0.0;
-		in[2] = (stage.get(x,y,dir.getRight()) instanceof Food) ? 1.0 : 0.0;
-		
-		in[3] = (stage.get(x,y,dir.getLeft()) instanceof Lava) ? 1.0 : 0.0;
-		in[4] = (stage.get(x,y,dir) instanceof Lava) ? 1.0 : 0.0;
-		in[5] = (stage.get(x,y,dir.getRight()) instanceof Lava) ? 1.0 : 0.0;
-		
-		return in;
+		super(b, p);
 	}
 	
 	/**
-	 * Takes the outputs of the brain and applies them to the simulation world.
-	 * @param out 
+	 * Sets up what a FoodLavaCritter senses and does: 3 food inputs, 3 lava inputs, 3 outputs
+	 * @param s
+	 * @return
 	 */
-	@Override
-	protected void useBrainOutputs(double[] out)
-	{
-		if(out[0] > .5)
-			turnLeft();
-		
-		if(out[1] > .5)
-			moveForward();
-		
-		if(out[2] > .5)
-			turnRight();
-	}
-	
-	@Override
-	protected void moveForward()
+	public static CritterPipeline createPipeline(Stage s)
 	{
-		int dx = x + dir.getX();
-		int dy = y + dir.getY();
-		
-		Actor a = stage.remove(x, y);
-		
-		if(dx < 0)
-			x = stage.getWidth() - 1;
-		else if (dx >= stage.getWidth())
-			x = 0;
-		else 
-			x = dx;
-		
-		if(dy < 0)
-			y = stage.getHeight() - 1;
-		else if (dy >= stage.getHeight())
-			y = 0;
-		else 
-			y = dy;
-		
-		if(stage.get(x, y) instanceof Food)
-			score++;
-		else if(stage.get(x, y) instanceof Lava)
-			score--;
+		CritterPipeline p = FoodCritter.createPipeline(s);
+		p.addSensor(new AdjacentSensor(s, CellType.LAVA));
 		
-		stage.add(x, y, a);
+		p.setReward(CellType.LAVA, -1);
+		return p;
 	}
 }
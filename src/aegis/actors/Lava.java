@@ -10,6 +10,7 @@ import java.awt.image.BufferedImage;
 
 import aegis.core.Actor;
 import aegis.core.Aegis;
+import aegis.core.CellType;
 import aegis.core.Stage;
 
 /**
@@ -55,5 +56,11 @@ public class Lava extends Actor
 	{
 		return image;
 	}
+	
+	@Override
+	public byte getCellType()
+	{
+		return CellType.LAVA;
+	}
 
 }
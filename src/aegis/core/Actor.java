@@ -18,4 +18,13 @@ public abstract class Actor
 	public abstract void act();
 	public abstract BufferedImage getImage();
 	
+	/**
+	 * What this actor looks like to sensors, one of the CellType codes
+	 * @return
+	 */
+	public byte getCellType()
+	{
+		return CellType.OTHER;
+	}
+	
 }
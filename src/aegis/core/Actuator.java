@@ -0,0 +1,27 @@
+package aegis.core;
+
+/**
+ * Enum for the things a critter can do with one brain output.
+ * An actuator fires when its output is above the pipeline's threshold.
+ * 
+ * @author Prad
+ */
+public enum Actuator
+{
+	TURN_LEFT
+	{
+		public void apply(Critter c) {c.turnLeft();}
+	},
+	
+	MOVE_FORWARD
+	{
+		public void apply(Critter c) {c.moveForward();}
+	},
+	
+	TURN_RIGHT
+	{
+		public void apply(Critter c) {c.turnRight();}
+	};
+	
+	public abstract void apply(Critter c);
+}
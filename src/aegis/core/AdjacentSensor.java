@@ -0,0 +1,65 @@
+package aegis.core;
+
+/**
+ * Senses one type of Actor in the three cells in front of a critter (left, forward, right).
+ * Reads neighbor indices from the Stage's NeighborTable and cell types from its primitive
+ * cell array, then turns the type into a brain input with a lookup instead of a branch.
+ * 
+ * A CritterPipeline does not call this sensor per tick, it folds its three reads
+ * into the pipeline's own flat read table.
+ * 
+ * @author Prad
+ */
+public class AdjacentSensor implements Sensor
+{
+	//left, forward and right as offsets from the facing direction's ordinal
+	static final int[] RELATIVE_DIRECTIONS = {NeighborTable.DIRECTIONS - 1, 0, 1};
+	
+	private final NeighborTable neighbors;
+	private final byte[] cells;
+	private final byte type;
+	private final double[] indicator;
+	
+	/**
+	 * @param s stage to sense
+	 * @param t the CellType this sensor reports as 1.0
+	 */
+	public AdjacentSensor(Stage s, byte t)
+	{
+		neighbors = s.getNeighborTable();
+		cells = s.getCells();
+		type = t;
+		indicator = CellType.indicator(t);
+	}
+	
+	@Override
+	public int size()
+	{
+		return RELATIVE_DIRECTIONS.length;
+	}
+	
+	@Override
+	public void sense(Critter c, double[] in, int offset)
+	{
+		sense(c.stage.indexOf(c.x, c.y), c.dir.ordinal(), in, offset);
+	}
+	
+	/**
+	 * Writes the left, forward and right readings into in[offset], in[offset+1] and in[offset+2]
+	 * @param cell index of the sensing cell, from Stage.indexOf(x,y)
+	 * @param dir ordinal of the direction being faced
+	 * @param in
+	 * @param offset
+	 */
+	public void sense(int cell, int dir, double[] in, int offset)
+	{
+		in[offset] = indicator[cells[neighbors.get(cell, NeighborTable.left(dir))]];
+		in[offset + 1] = indicator[cells[neighbors.get(cell, dir)]];
+		in[offset + 2] = indicator[cells[neighbors.get(cell, NeighborTable.right(dir))]];
+	}
+	
+	byte getType()
+	{
+		return type;
+	}
+}
@@ -2,6 +2,7 @@ package aegis.core;
 
 import aegis.experiments.FoodExperiment;
 import aegis.experiments.FoodLavaExperiment;
+import aegis.experiments.FoodVisionExperiment;
 
 /**
  * 
@@ -37,16 +38,20 @@ public class Aegis
 	 * "exp=1 n=1 w=30 h=30 s=10 nmr=.02 lmr=.04 wmr=.2 ldr=0 gen=100"
 	 * 
 	 * All parameters:
-	 * "exp=1 n=1 w=30 h=30 s=10 nmr=.02 lmr=.04 wmr=.2 ldr=0 gen=100 hl seq log debug "
+	 * "exp=1 n=1 w=30 h=30 s=10 nmr=.02 lmr=.04 wmr=.2 ldr=0 gen=100 hl seq log debug ff "
 	 * 
 	 * Parameters:
-	 * exp=1	 : the number of the experiment to run
+	 * exp=1	 : the number of the experiment to run (1 food, 2 food and lava, 3 food with vision)
 	 * n=1       : number of times to execute experiment
+	 * jobs=8    : threads to run trials on, the number of cores by default
+	 * et=1      : threads each trial may use to evaluate brains, fewer trials run at once to make room
+	 * farm=4    : evaluates brains in 4 worker processes over a local socket instead, see EvaluationFarm
+	 * results=f : appends every trial's results and a summary to a file as JSON lines
 	 * w=30      : width of environment in cells 
 	 * h=30      : height of environment incells
 	 * s=15      : size of each cell in pixels
 	 * hl        : enables headless mode - turns off graphics
-	 * seq       : run the experiments one after another instead of concurrently
+	 * seq       : run the experiments one after another instead of concurrently, same as jobs=1
 	 * log       : enables logging
 	 * debug     : enables debug logging
 	 * nmr=.02   : mutation rate of nodes in the evolved neural networks
@@ -55,12 +60,24 @@ public class Aegis
 	 * ldr=0     : rate of links between nodes being disabled in the evolved neural networks
 	 * pop=50    : number of brains to evaluate per generation
 	 * gen=100   : number of generations to run the experiment
+	 * elite=1   : copies each tribe's fittest brain unchanged into the next generation
+	 * vr=20     : how far critters can see in experiment 3
+	 * seed=1    : makes the run repeatable, trial i uses seed + i
+	 * ff        : evaluates acyclic brains in one pass instead of pumping them
+	 * offheap   : keeps each generation's genomes in direct memory, for very large populations
+	 * det       : treats a brain's fitness as fixed, so elites keep their fitness instead of being tested again
+	 * act=sigmoid : activation function of brain nodes (sigmoid, exp_sigmoid, fast_sigmoid, tanh, relu, step)
 	 * 
+	 * To measure throughput instead of watching evolution, see Throughput.
+	 * To sweep mutation rates and other parameters in one JVM, see ParameterSweep.
+	 * To profile with Flight Recorder, record with the settings in jfr/aegis.jfc.
 	 */
 	public static void main(String[] args)
 	{	
 		int experiment = 1;
 		int trials = 1;
+		int jobs = Runtime.getRuntime().availableProcessors();
+		String resultsFile = null;
 		boolean sequential = false;
 		
 		//assigns program parameters to variables
@@ -75,6 +92,10 @@ public class Aegis
 					experiment = Integer.parseInt(st[1]);
 				else if(st[0].equals("n"))
 					trials = Integer.parseInt(st[1]);
+				else if(st[0].equals("jobs"))
+					jobs = Integer.parseInt(st[1]);
+				else if(st[0].equals("results"))
+					resultsFile = st[1];
 				
 			}
 			//boolean parameters
@@ -91,38 +112,27 @@ public class Aegis
 			}
 		}		
 		
-		for(int i=0; i<trials; i++)
-		{
-			Experiment e=null;
-			
-			switch(experiment)
-			{
-			case 1: e = new FoodExperiment(args);
-			break;
-			
-			case 2: e = new FoodLavaExperiment(args);
-			break;
-			}
-			
-			if(sequential)
-				e.run();
-			else
-				new ConcurrentRunner(e).start();
-		}
+		//runs the trials on a pool sized to the machine instead of a thread each
+		TrialScheduler scheduler = new TrialScheduler(experiment, trials, sequential ? 1 : jobs, args);
+		scheduler.setResultsFile(resultsFile);
+		scheduler.run();
 	}
 	
-	private static class ConcurrentRunner extends Thread
+	/**
+	 * Makes the experiment with the given number
+	 * @param experiment
+	 * @param args
+	 * @return the experiment, or null if there is no experiment with that number
+	 */
+	public static Experiment createExperiment(int experiment, String[] args)
 	{
-		private Experiment e;
-		public ConcurrentRunner(Experiment e)
+		switch(experiment)
 		{
-			this.e = e;
-		}
-		
-		@Override
-		public void run()
-		{
-			e.run();
+		case 1: return new FoodExperiment(args);
+		case 2: return new FoodLavaExperiment(args);
+		case 3: return new FoodVisionExperiment(args);
 		}
+		return null;
 	}
+
 }
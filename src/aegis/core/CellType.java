@@ -0,0 +1,40 @@
+package aegis.core;
+
+/**
+ * Primitive codes for what occupies a cell.
+ * Stage keeps one of these per cell next to the Actor grid so sensors can read
+ * the world from a byte array instead of calling instanceof on Actors.
+ * 
+ * @author Prad
+ */
+public final class CellType
+{
+	public static final byte EMPTY = 0;
+	public static final byte OTHER = 1;
+	public static final byte FOOD = 2;
+	public static final byte LAVA = 3;
+	public static final byte CRITTER = 4;
+	
+	/**
+	 * Number of cell types, the size of lookup tables indexed by cell type
+	 */
+	public static final int COUNT = 5;
+	
+	private CellType()
+	{
+		
+	}
+	
+	/**
+	 * Makes a lookup table that is 1.0 for the given type and 0.0 for all others.
+	 * Reading it with a cell type turns a type test into an array load.
+	 * @param type
+	 * @return
+	 */
+	public static double[] indicator(byte type)
+	{
+		double[] table = new double[COUNT];
+		table[type] = 1.0;
+		return table;
+	}
+}
@@ -0,0 +1,97 @@
+package aegis.core;
+
+import braincraft.Brain;
+
+/**
+ * Superclass for actors driven by a Brain.
+ * Each tick the critter's CritterPipeline fills in the brain inputs, the brain is pumped,
+ * and the pipeline turns the outputs into actions.
+ * 
+ * @author Prad
+ */
+public abstract class Critter extends Actor
+{
+	//stage
+	protected Stage stage;
+	//brain
+	protected Brain brain;
+	//what the critter senses and how it acts
+	protected CritterPipeline pipeline;
+	//direction
+	protected Direction dir;
+	//score earned by moving onto cells
+	protected int score;
+	
+	//brain inputs and outputs, reused every tick
+	private double[] in;
+	private double[] out;
+	
+	public Critter(Brain b, CritterPipeline p)
+	{
+		brain = b;
+		pipeline = p;
+		stage = p.getStage();
+		dir = Direction.NORTH;
+		score = 0;
+		in = new double[p.numInputs()];
+		out = new double[p.numOutputs()];
+	}
+	
+	@Override
+	public void act() 
+	{
+		double in[] = getBrainInputs();
+		
+		//stops as soon as the brain settles, a feed-forward brain settles in one pump
+		brain.pumpUntilStable(in, out, pipeline.pumps, pipeline.epsilon);
+		
+		useBrainOutputs(out);
+	}
+	
+	/**
+	 * Gets data from the stage and converts it into inputs for the brain.
+	 * @return inputs for the brain
+	 */
+	protected double[] getBrainInputs()
+	{
+		pipeline.sense(this, in);
+		return in;
+	}
+	
+	/**
+	 * Takes the outputs of the brain and applies them to the simulation world.
+	 * @param out 
+	 */
+	protected void useBrainOutputs(double[] out)
+	{
+		pipeline.actuate(this, out);
+	}
+	
+	/**
+	 * Moves one cell in the direction being faced, wrapping around the stage.
+	 * Whatever was there is replaced and the pipeline's reward for it is added to the score.
+	 */
+	protected void moveForward()
+	{
+		int target = stage.getNeighborTable().get(stage.indexOf(x, y), dir.ordinal());
+		
+		stage.remove(x, y);
+		score += pipeline.getReward(stage.getCellType(target));
+		stage.add(stage.xOf(target), stage.yOf(target), this);
+	}
+	
+	protected void turnLeft()
+	{
+		dir = dir.getLeft();
+	}
+
+	protected void turnRight()
+	{
+		dir = dir.getRight();
+	}
+	
+	public int fitness()
+	{
+		return score;
+	}
+}
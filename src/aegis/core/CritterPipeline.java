@@ -0,0 +1,204 @@
+package aegis.core;
+
+import java.util.ArrayList;
+
+/**
+ * Declares what a kind of critter senses and what its brain outputs do,
+ * so new experiments can be set up without writing a new critter subclass.
+ * 
+ * Sensors fill brain inputs in the order they are added, actuators take brain outputs in
+ * the order they are added. Rewards say how the score changes when moving onto a cell type.
+ * 
+ * The first call to sense() compiles the pipeline: every AdjacentSensor becomes entries in one
+ * flat table of (input, relative direction, indicator) reads that is walked in a single loop
+ * each tick. Other sensors are called in order after that. The pipeline can't be changed once compiled.
+ * 
+ * One pipeline can be shared by every critter on its Stage.
+ * 
+ * @author Prad
+ */
+public class CritterPipeline
+{
+	//most times the brain is pumped each tick
+	public int pumps = 5;
+	//pumping stops early once no node output changes by more than this, 0 gives the same result as always pumping
+	public double epsilon = 0;
+	//an actuator fires when its output is above this
+	public double threshold = .5;
+	
+	private final Stage stage;
+	private final NeighborTable neighbors;
+	private final byte[] cells;
+	
+	private final ArrayList<Sensor> sensors = new ArrayList<Sensor>();
+	private final ArrayList<Actuator> actuatorList = new ArrayList<Actuator>();
+	private final int[] rewards = new int[CellType.COUNT];
+	
+	//compiled form
+	private volatile boolean compiled = false;
+	private int[] readInput;
+	private int[] readDirection;
+	private double[] readIndicator;
+	private Sensor[] others;
+	private int[] otherOffsets;
+	private Actuator[] actuators;
+	
+	public CritterPipeline(Stage s)
+	{
+		stage = s;
+		neighbors = s.getNeighborTable();
+		cells = s.getCells();
+	}
+	
+	public void addSensor(Sensor s)
+	{
+		checkNotCompiled();
+		sensors.add(s);
+	}
+	
+	public void addActuator(Actuator a)
+	{
+		checkNotCompiled();
+		actuatorList.add(a);
+	}
+	
+	/**
+	 * Sets how much the score changes when a critter moves onto a cell of this type
+	 * @param type
+	 * @param reward
+	 */
+	public void setReward(byte type, int reward)
+	{
+		rewards[type] = reward;
+	}
+	
+	public int getReward(byte type)
+	{
+		return rewards[type];
+	}
+	
+	public Stage getStage()
+	{
+		return stage;
+	}
+	
+	/**
+	 * Number of brain inputs the sensors fill
+	 * @return
+	 */
+	public int numInputs()
+	{
+		int n = 0;
+		for(Sensor s : sensors)
+			n += s.size();
+		return n;
+	}
+	
+	/**
+	 * Number of brain outputs the actuators take
+	 * @return
+	 */
+	public int numOutputs()
+	{
+		return actuatorList.size();
+	}
+	
+	/**
+	 * Fills in the brain inputs for a critter
+	 * @param c
+	 * @param in array of at least numInputs()
+	 */
+	public void sense(Critter c, double[] in)
+	{
+		if(!compiled)
+			compile();
+		
+		int cell = stage.indexOf(c.x, c.y);
+		int dir = c.dir.ordinal();
+		
+		for(int k = 0; k < readInput.length; k++)
+		{
+			int target = neighbors.get(cell, (dir + readDirection[k]) & (NeighborTable.DIRECTIONS - 1));
+			in[readInput[k]] = readIndicator[k * CellType.COUNT + cells[target]];
+		}
+		
+		for(int k = 0; k < others.length; k++)
+			others[k].sense(c, in, otherOffsets[k]);
+	}
+	
+	/**
+	 * Applies brain outputs to a critter, in actuator order
+	 * @param c
+	 * @param out
+	 */
+	public void actuate(Critter c, double[] out)
+	{
+		if(!compiled)
+			compile();
+		
+		for(int k = 0; k < actuators.length; k++)
+		{
+			if(out[k] > threshold)
+				actuators[k].apply(c);
+		}
+	}
+	
+	/**
+	 * Flattens the declared sensors into read tables
+	 */
+	private synchronized void compile()
+	{
+		if(compiled)
+			return;
+		
+		ArrayList<Integer> inputs = new ArrayList<Integer>();
+		ArrayList<Integer> directions = new ArrayList<Integer>();
+		ArrayList<Byte> types = new ArrayList<Byte>();
+		ArrayList<Sensor> rest = new ArrayList<Sensor>();
+		ArrayList<Integer> restOffsets = new ArrayList<Integer>();
+		
+		int offset = 0;
+		for(Sensor s : sensors)
+		{
+			if(s instanceof AdjacentSensor)
+			{
+				for(int k = 0; k < AdjacentSensor.RELATIVE_DIRECTIONS.length; k++)
+				{
+					inputs.add(offset + k);
+					directions.add(AdjacentSensor.RELATIVE_DIRECTIONS[k]);
+					types.add(((AdjacentSensor) s).getType());
+				}
+			}
+			else
+			{
+				rest.add(s);
+				restOffsets.add(offset);
+			}
+			offset += s.size();
+		}
+		
+		readInput = new int[inputs.size()];
+		readDirection = new int[inputs.size()];
+		readIndicator = new double[inputs.size() * CellType.COUNT];
+		for(int k = 0; k < readInput.length; k++)
+		{
+			readInput[k] = inputs.get(k);
+			readDirection[k] = directions.get(k);
+			readIndicator[k * CellType.COUNT + types.get(k)] = 1.0;
+		}
+		
+		others = rest.toArray(new Sensor[rest.size()]);
+		otherOffsets = new int[restOffsets.size()];
+		for(int k = 0; k < otherOffsets.length; k++)
+			otherOffsets[k] = restOffsets.get(k);
+		
+		actuators = actuatorList.toArray(new Actuator[actuatorList.size()]);
+		compiled = true;
+	}
+	
+	private void checkNotCompiled()
+	{
+		if(compiled)
+			throw new IllegalStateException("CritterPipeline can't be changed after it is used");
+	}
+}
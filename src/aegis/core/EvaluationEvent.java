@@ -0,0 +1,30 @@
+package aegis.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for simulating one brain, so CPU samples can be matched to evaluations.
+ * Costs next to nothing unless a recording has it enabled.
+ * @author Prad
+ */
+@Name("aegis.Evaluation")
+@Label("Evaluation")
+@Category({"Aegis", "Simulation"})
+@Description("Simulating one critter with one brain")
+public class EvaluationEvent extends jdk.jfr.Event
+{
+	@Label("Experiment")
+	public String experiment;
+
+	@Label("Brain")
+	public int brainID;
+
+	@Label("Ticks")
+	public int ticks;
+
+	@Label("Fitness")
+	public double fitness;
+}
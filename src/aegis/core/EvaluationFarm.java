@@ -0,0 +1,779 @@
+package aegis.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+
+import braincraft.Brain;
+import braincraft.FitnessFunction;
+import braincraft.Population;
+
+/**
+ * Evaluates brains in worker processes over local sockets, so simulations aren't limited to one JVM's heap.
+ *
+ * Workers (see EvaluationWorker) connect to the farm, are told which experiment to build, and are then
+ * sent batches of brains in the binary genome format with a seed for each world. They send fitnesses
+ * back as each batch finishes. Each worker has at most a window of batches in flight, and only a
+ * bounded number of brains wait to be sent, so a slow farm holds back whoever is submitting brains.
+ * If a worker dies the brains it was holding are sent to another one. Once every worker that connected
+ * has died, brains waiting to be sent fail instead. Neither waiting for room to submit a brain nor
+ * waiting for its fitness lasts longer than the timeout, whether or not any worker ever connected.
+ *
+ * Addresses are "host:port" for TCP or "unix:/path" for a Unix-domain socket.
+ *
+ * @author Prad
+ */
+public class EvaluationFarm implements FitnessFunction
+{
+	//protocol
+	static final int MAGIC = 0x41454646;
+	static final int VERSION = 1;
+	static final byte BATCH = 1;
+	static final byte RESULTS = 2;
+	static final byte SHUTDOWN = 3;
+
+	//a brain sent this many times without an answer is taken to be crashing its workers
+	private static final int MAX_ATTEMPTS = 3;
+	//how long to wait for a brain's fitness unless told otherwise
+	private static final long DEFAULT_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+	private final ServerSocketChannel server;
+	private final String address;
+	private final Class<? extends Experiment> experiment;
+	private final String[] workerArgs;
+	private final int batchSize;
+	private final int window;
+	private final int queued;
+
+	//brains waiting to be sent, brains sent again go to the front
+	private final LinkedBlockingDeque<Task> pending = new LinkedBlockingDeque<Task>();
+	//backpressure, one permit per brain submitted and not yet answered
+	private final Semaphore capacity;
+	private final List<WorkerLink> workers = new ArrayList<WorkerLink>();
+	private final AtomicLong nextTask = new AtomicLong();
+	private final AtomicLong reissued = new AtomicLong();
+	private volatile boolean closed = false;
+	private volatile long seed = 0;
+	private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+	/**
+	 * Starts a farm listening for workers
+	 * @param address "host:port", "host:0" for any free port, or "unix:/path"
+	 * @param experiment experiment workers build, it needs a constructor taking the parameters
+	 * @param workerArgs parameters workers build the experiment with
+	 * @param batchSize most brains sent to a worker at once
+	 * @param window most batches a worker holds at once
+	 * @param queued most brains submitted and not yet answered before submitting blocks
+	 * @throws IOException if the address can't be listened on
+	 */
+	public <E extends Experiment & FarmExperiment> EvaluationFarm(String address, Class<E> experiment, String[] workerArgs, int batchSize, int window, int queued)
+			throws IOException
+	{
+		this.experiment = experiment;
+		this.workerArgs = workerArgs;
+		this.batchSize = Math.max(1, batchSize);
+		this.window = Math.max(1, window);
+		this.queued = Math.max(1, queued);
+		capacity = new Semaphore(this.queued);
+
+		SocketAddress a = parseAddress(address);
+		if(a instanceof UnixDomainSocketAddress)
+		{
+			Files.deleteIfExists(((UnixDomainSocketAddress) a).getPath());
+			server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			server.bind(a);
+			this.address = address;
+		}
+		else
+		{
+			server = ServerSocketChannel.open();
+			server.bind(a);
+			InetSocketAddress bound = (InetSocketAddress) server.getLocalAddress();
+			this.address = bound.getHostString() + ":" + bound.getPort();
+		}
+
+		Thread acceptor = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				accept();
+			}
+		}, "farm-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Starts a farm on a Unix-domain socket in the temp directory, with batches of 8, 2 batches per worker
+	 * and up to 1024 brains queued
+	 * @param experiment experiment workers build, it needs a constructor taking the parameters
+	 * @param workerArgs parameters workers build the experiment with
+	 * @throws IOException if the socket can't be made
+	 */
+	public <E extends Experiment & FarmExperiment> EvaluationFarm(Class<E> experiment, String[] workerArgs) throws IOException
+	{
+		this("unix:" + new File(System.getProperty("java.io.tmpdir"), "aegis-farm-" + ProcessHandle.current().pid()
+				+ "-" + System.nanoTime() + ".sock").getPath(), experiment, workerArgs, 8, 2, 1024);
+	}
+
+	/**
+	 * The address workers connect to, with the real port if any port was asked for
+	 * @return
+	 */
+	public String getAddress()
+	{
+		return address;
+	}
+
+	/**
+	 * Seeds the worlds brains are evaluated in, each brain's world comes from this and its ID
+	 * @param seed
+	 */
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets how long to wait for room to submit a brain, and for its fitness, before giving up on it,
+	 * 10 minutes by default
+	 * @param millis
+	 */
+	public void setTimeout(long millis)
+	{
+		timeoutMillis = millis;
+	}
+
+	/**
+	 * Number of workers connected and alive
+	 * @return
+	 */
+	public synchronized int getWorkerCount()
+	{
+		int n = 0;
+		for(WorkerLink w : workers)
+			if(!w.dead)
+				n++;
+		return n;
+	}
+
+	/**
+	 * Number of times a brain had to be sent again because its worker died
+	 * @return
+	 */
+	public long getReissued()
+	{
+		return reissued.get();
+	}
+
+	/**
+	 * Starts workers as child processes of this JVM, with the same classpath and the vector module brains
+	 * may use
+	 * @param n number of workers
+	 * @param jvmArgs extra arguments for each worker JVM, such as -Xmx
+	 * @return the worker processes
+	 * @throws IOException if a worker can't be started
+	 */
+	public List<Process> launchLocalWorkers(int n, String... jvmArgs) throws IOException
+	{
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Process> processes = new ArrayList<Process>();
+		for(int i=0; i<n; i++)
+		{
+			List<String> command = new ArrayList<String>();
+			command.add(java);
+			command.add("--add-modules");
+			command.add("jdk.incubator.vector");
+			for(String a : jvmArgs)
+				command.add(a);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(EvaluationWorker.class.getName());
+			command.add(address);
+			processes.add(new ProcessBuilder(command).inheritIO().start());
+		}
+		return processes;
+	}
+
+	/**
+	 * Queues a brain to be evaluated, waiting first if too many brains are already queued
+	 * @param b the brain
+	 * @param seed seed for the brain's world
+	 * @return the brain's fitness, once a worker has evaluated it. Fails if there was no room for the
+	 * brain within the timeout.
+	 */
+	public CompletableFuture<Double> submit(Brain b, long seed)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			b.writeBinary(new DataOutputStream(bytes));
+		}
+		catch (IOException e)
+		{
+			//writing to memory doesn't fail
+			throw new IllegalStateException(e);
+		}
+
+		try
+		{
+			if(!capacity.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+				return CompletableFuture.failedFuture(new IllegalStateException("no room to queue brain "
+						+ b.getID() + " after " + timeoutMillis + "ms, " + queued + " brains are waiting"));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(new IllegalStateException("interrupted queueing brain " + b.getID()));
+		}
+		final Task task = new Task(nextTask.getAndIncrement(), seed, bytes.toByteArray());
+		task.result.whenComplete(new BiConsumer<Double, Throwable>()
+		{
+			@Override
+			public void accept(Double fitness, Throwable t)
+			{
+				capacity.release();
+			}
+		});
+		if(closed)
+			task.result.completeExceptionally(new IllegalStateException("farm is closed"));
+		else
+		{
+			pending.addLast(task);
+			//the last worker may have died while this was being queued
+			if(noWorkersLeft())
+				failPending("no workers left");
+		}
+		return task.result;
+	}
+
+	/**
+	 * Evaluates a brain on a worker and waits for its fitness
+	 */
+	@Override
+	public double evaluate(Brain b)
+	{
+		try
+		{
+			return submit(b, seed ^ b.getID()).get(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			throw new IllegalStateException("no fitness for brain " + b.getID() + " after " + timeoutMillis + "ms");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted waiting for brain " + b.getID());
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("brain " + b.getID() + " couldn't be evaluated", e.getCause());
+		}
+	}
+
+	/**
+	 * Evaluates the rest of a population's generation on the workers, as many brains in flight at once
+	 * as may be queued. Brains are submitted from the calling thread, which collects the oldest fitness
+	 * whenever the queue is full and the rest once every brain is submitted, so no thread waits on each
+	 * brain and the queue's backpressure can't hold up its own collector. Fitnesses are reported in the
+	 * order the brains were issued, so the next generation is bred the same whichever order workers
+	 * answer in.
+	 * @param p the population
+	 * @param evaluated told each brain's fitness just before it is reported, may be null
+	 * @return the number of brains evaluated
+	 * @throws IllegalStateException if a brain can't be evaluated, after which no fitness is reported
+	 * and the generation's brains still queued are dropped
+	 */
+	public int evaluateGeneration(Population p, ObjDoubleConsumer<Brain> evaluated)
+	{
+		List<Brain> brains = new ArrayList<Brain>();
+		Brain b;
+		while((b = p.getBrain()) != null)
+			brains.add(b);
+
+		//each wait is bounded, and the brains are evaluated together, so a hung farm fails after one timeout
+		List<CompletableFuture<Double>> results = new ArrayList<CompletableFuture<Double>>();
+		double[] fitness = new double[brains.size()];
+		int collected = 0;
+		try
+		{
+			for(Brain brain : brains)
+			{
+				if(results.size() - collected >= queued)
+				{
+					fitness[collected] = collect(brains.get(collected), results.get(collected));
+					collected++;
+				}
+				results.add(submit(brain, seed ^ brain.getID()));
+			}
+			for(; collected<fitness.length; collected++)
+				fitness[collected] = collect(brains.get(collected), results.get(collected));
+		}
+		catch (IllegalStateException e)
+		{
+			//nobody will collect the rest, so stop them taking up the queue and the workers
+			for(CompletableFuture<Double> result : results)
+				result.completeExceptionally(new IllegalStateException("generation abandoned"));
+			throw e;
+		}
+
+		for(int i=0; i<fitness.length; i++)
+		{
+			if(evaluated != null)
+				evaluated.accept(brains.get(i), fitness[i]);
+			p.reportFitness(brains.get(i), fitness[i]);
+		}
+		return brains.size();
+	}
+
+	/**
+	 * Waits for a submitted brain's fitness, at most the timeout
+	 */
+	private double collect(Brain b, CompletableFuture<Double> result)
+	{
+		try
+		{
+			return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted waiting for brain " + b.getID());
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("brain " + b.getID() + " couldn't be evaluated", e.getCause());
+		}
+		catch (TimeoutException e)
+		{
+			throw new IllegalStateException("no fitness for brain " + b.getID() + " after " + timeoutMillis + "ms");
+		}
+	}
+
+	/**
+	 * Tells workers to exit and stops listening. Brains not yet evaluated fail.
+	 */
+	public void close()
+	{
+		closed = true;
+		try
+		{
+			server.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		deleteSocketFile();
+
+		List<WorkerLink> links;
+		synchronized(this)
+		{
+			links = new ArrayList<WorkerLink>(workers);
+		}
+		for(WorkerLink w : links)
+			w.shutdown();
+
+		failPending("farm is closed");
+	}
+
+	/**
+	 * Whether workers have connected and every one of them has died since
+	 */
+	private synchronized boolean noWorkersLeft()
+	{
+		return !workers.isEmpty() && getWorkerCount() == 0;
+	}
+
+	/**
+	 * Fails every brain waiting to be sent
+	 */
+	private void failPending(String reason)
+	{
+		Task t;
+		while((t = pending.pollFirst()) != null)
+			t.result.completeExceptionally(new IllegalStateException(reason));
+	}
+
+	private void deleteSocketFile()
+	{
+		if(address.startsWith("unix:"))
+		{
+			try
+			{
+				Files.deleteIfExists(Path.of(address.substring(5)));
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Accepts workers until closed
+	 */
+	private void accept()
+	{
+		while(!closed)
+		{
+			try
+			{
+				SocketChannel channel = server.accept();
+				WorkerLink w = new WorkerLink(channel);
+				synchronized(this)
+				{
+					workers.add(w);
+				}
+				w.start();
+			}
+			catch (IOException e)
+			{
+				if(!closed)
+					e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Puts a dead worker's brains back at the front of the queue, or fails every waiting brain if no worker
+	 * is left to send them to
+	 */
+	private void reissue(List<Task> tasks)
+	{
+		for(int i=tasks.size()-1; i>=0; i--)
+		{
+			Task t = tasks.get(i);
+			if(t.result.isDone())
+				continue;
+			if(closed)
+				t.result.completeExceptionally(new IllegalStateException("farm is closed"));
+			else if(t.attempts >= MAX_ATTEMPTS)
+				t.result.completeExceptionally(new IllegalStateException("brain crashed " + t.attempts + " workers"));
+			else
+			{
+				reissued.incrementAndGet();
+				pending.addFirst(t);
+			}
+		}
+		if(noWorkersLeft())
+			failPending("no workers left");
+	}
+
+	/**
+	 * Parses "host:port" or "unix:/path"
+	 * @param address
+	 * @return
+	 */
+	static SocketAddress parseAddress(String address)
+	{
+		if(address.startsWith("unix:"))
+			return UnixDomainSocketAddress.of(address.substring(5));
+		int colon = address.lastIndexOf(':');
+		return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+	}
+
+	/**
+	 * Reads from a channel. Unlike Channels.newInputStream, a read that is waiting doesn't stop
+	 * another thread writing to the same channel.
+	 * @param channel
+	 * @return
+	 */
+	static InputStream inputStream(final SocketChannel channel)
+	{
+		return new InputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				byte[] b = new byte[1];
+				return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				if(len == 0)
+					return 0;
+				return channel.read(ByteBuffer.wrap(b, off, len));
+			}
+		};
+	}
+
+	/**
+	 * Writes to a channel, see inputStream
+	 * @param channel
+	 * @return
+	 */
+	static OutputStream outputStream(final SocketChannel channel)
+	{
+		return new OutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException
+			{
+				write(new byte[] {(byte) b}, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException
+			{
+				ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+			}
+		};
+	}
+
+	/**
+	 * A brain waiting for its fitness
+	 */
+	private static class Task
+	{
+		final long id;
+		final long seed;
+		final byte[] genome;
+		final CompletableFuture<Double> result = new CompletableFuture<Double>();
+		//times sent to a worker
+		int attempts = 0;
+
+		Task(long id, long seed, byte[] genome)
+		{
+			this.id = id;
+			this.seed = seed;
+			this.genome = genome;
+		}
+	}
+
+	/**
+	 * One connected worker, with a thread sending it batches and one reading its results
+	 */
+	private class WorkerLink
+	{
+		private final SocketChannel channel;
+		private final DataOutputStream out;
+		private final DataInputStream in;
+		//batches the worker may still be sent
+		private final Semaphore slots;
+		//brains the worker holds, by task id
+		private final Map<Long, Task> outstanding = new HashMap<Long, Task>();
+		private Thread sender;
+		private Thread receiver;
+		volatile boolean dead = false;
+
+		WorkerLink(SocketChannel channel) throws IOException
+		{
+			this.channel = channel;
+			out = new DataOutputStream(new BufferedOutputStream(outputStream(channel)));
+			in = new DataInputStream(new BufferedInputStream(inputStream(channel)));
+			slots = new Semaphore(window);
+
+			//tells the worker what to build
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeUTF(experiment.getName());
+			out.writeInt(workerArgs.length);
+			for(String a : workerArgs)
+				out.writeUTF(a);
+			out.flush();
+		}
+
+		void start()
+		{
+			sender = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					send();
+				}
+			}, "farm-sender");
+			receiver = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					receive();
+				}
+			}, "farm-receiver");
+			sender.setDaemon(true);
+			receiver.setDaemon(true);
+			sender.start();
+			receiver.start();
+		}
+
+		/**
+		 * Sends batches while the worker has room for them
+		 */
+		private void send()
+		{
+			List<Task> batch = new ArrayList<Task>();
+			try
+			{
+				while(!dead)
+				{
+					slots.acquire();
+					batch.add(pending.takeFirst());
+					pending.drainTo(batch, batchSize - 1);
+					//brains already failed or abandoned aren't worth sending
+					for(Iterator<Task> it = batch.iterator(); it.hasNext();)
+						if(it.next().result.isDone())
+							it.remove();
+					if(batch.isEmpty())
+					{
+						slots.release();
+						continue;
+					}
+
+					synchronized(outstanding)
+					{
+						if(dead)
+							break;
+						for(Task t : batch)
+						{
+							t.attempts++;
+							outstanding.put(t.id, t);
+						}
+					}
+					//once outstanding, the brains are sent elsewhere by die() if the worker dies
+					List<Task> sending = batch;
+					batch = new ArrayList<Task>();
+
+					synchronized(out)
+					{
+						out.writeByte(BATCH);
+						out.writeInt(sending.size());
+						for(Task t : sending)
+						{
+							out.writeLong(t.id);
+							out.writeLong(t.seed);
+							out.writeInt(t.genome.length);
+							out.write(t.genome);
+						}
+						out.flush();
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				//shut down or died
+			}
+			catch (IOException e)
+			{
+				die();
+			}
+			//brains taken but never made outstanding
+			reissue(batch);
+		}
+
+		/**
+		 * Reads results until the worker dies or the farm closes
+		 */
+		private void receive()
+		{
+			try
+			{
+				while(true)
+				{
+					if(in.readByte() != RESULTS)
+						throw new IOException("worker sent an unknown message");
+					int n = in.readInt();
+					for(int i=0; i<n; i++)
+					{
+						long id = in.readLong();
+						double fitness = in.readDouble();
+						Task t;
+						synchronized(outstanding)
+						{
+							t = outstanding.remove(id);
+						}
+						if(t != null)
+							t.result.complete(fitness);
+					}
+					slots.release();
+				}
+			}
+			catch (IOException e)
+			{
+				die();
+			}
+		}
+
+		/**
+		 * Closes the connection and sends the worker's brains elsewhere
+		 */
+		private void die()
+		{
+			List<Task> lost;
+			synchronized(outstanding)
+			{
+				if(dead)
+					return;
+				dead = true;
+				lost = new ArrayList<Task>(outstanding.values());
+				outstanding.clear();
+			}
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				//already gone
+			}
+			sender.interrupt();
+			reissue(lost);
+		}
+
+		/**
+		 * Asks the worker to exit
+		 */
+		void shutdown()
+		{
+			try
+			{
+				synchronized(out)
+				{
+					out.writeByte(SHUTDOWN);
+					out.flush();
+				}
+			}
+			catch (IOException e)
+			{
+				//already gone
+			}
+			die();
+		}
+	}
+}
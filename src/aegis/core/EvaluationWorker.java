@@ -0,0 +1,122 @@
+package aegis.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+
+import braincraft.Brain;
+
+/**
+ * Worker process for an EvaluationFarm.
+ * Connects to the farm, builds the experiment it is told to, then evaluates each batch of brains
+ * it is sent and answers with their fitnesses, until the farm shuts it down or goes away.
+ *
+ * Usually started by EvaluationFarm.launchLocalWorkers, but can be run by hand:
+ * java aegis.core.EvaluationWorker unix:/tmp/farm.sock
+ *
+ * @author Prad
+ */
+public class EvaluationWorker
+{
+	/**
+	 * Worker driver
+	 * @param args the farm's address, "host:port" or "unix:/path"
+	 */
+	public static void main(String[] args)
+	{
+		//workers never draw
+		Aegis.headless = true;
+
+		if(args.length < 1)
+		{
+			System.out.println("Usage: EvaluationWorker host:port | unix:/path");
+			return;
+		}
+
+		try
+		{
+			run(EvaluationFarm.parseAddress(args[0]));
+		}
+		catch (EOFException e)
+		{
+			//the farm went away
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Evaluates batches until shut down
+	 */
+	private static void run(SocketAddress address) throws IOException
+	{
+		SocketChannel channel = address instanceof UnixDomainSocketAddress
+				? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+		channel.connect(address);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(EvaluationFarm.inputStream(channel)));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(EvaluationFarm.outputStream(channel)));
+
+		//what to build
+		if(in.readInt() != EvaluationFarm.MAGIC || in.readByte() != EvaluationFarm.VERSION)
+			throw new IOException("not an evaluation farm");
+		String experiment = in.readUTF();
+		String[] experimentArgs = new String[in.readInt()];
+		for(int i=0; i<experimentArgs.length; i++)
+			experimentArgs[i] = in.readUTF();
+		FarmExperiment e;
+		try
+		{
+			Class<?> c = Class.forName(experiment);
+			if(!FarmExperiment.class.isAssignableFrom(c))
+				throw new IOException(experiment + " can't evaluate brains for a farm");
+			e = (FarmExperiment) c.getConstructor(String[].class).newInstance((Object) experimentArgs);
+		}
+		catch (ReflectiveOperationException x)
+		{
+			throw new IOException("can't build experiment " + experiment, x);
+		}
+
+		while(true)
+		{
+			byte message = in.readByte();
+			if(message == EvaluationFarm.SHUTDOWN)
+				break;
+			if(message != EvaluationFarm.BATCH)
+				throw new IOException("farm sent an unknown message");
+
+			int n = in.readInt();
+			long[] ids = new long[n];
+			double[] fitness = new double[n];
+			for(int i=0; i<n; i++)
+			{
+				ids[i] = in.readLong();
+				long seed = in.readLong();
+				byte[] genome = new byte[in.readInt()];
+				in.readFully(genome);
+				Brain b = Brain.readBinary(new DataInputStream(new ByteArrayInputStream(genome)));
+				fitness[i] = e.evaluate(b, seed);
+			}
+
+			out.writeByte(EvaluationFarm.RESULTS);
+			out.writeInt(n);
+			for(int i=0; i<n; i++)
+			{
+				out.writeLong(ids[i]);
+				out.writeDouble(fitness[i]);
+			}
+			out.flush();
+		}
+		channel.close();
+	}
+}
@@ -6,6 +6,10 @@ import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.util.Random;
 
+import braincraft.Activation;
+import braincraft.BraincraftContext;
+import braincraft.Population;
+
 /**
  * Superclass of all experiments. Provides utility methods to reduce boilerplate in creating future experiments.
  * @author Prad
@@ -33,9 +37,34 @@ public class Experiment
 	
 	protected int popSize = 50;
 	protected int generations = 100;
+	//evaluate acyclic brains in one pass instead of pumping them
+	protected boolean feedForward = false;
+	//function brain nodes use, see braincraft.Activation
+	protected Activation activation = Activation.SIGMOID;
+	
+	//seeds the worlds each brain is tested in, random unless seed= is given
+	protected Random random;
+	//this run's braincraft state, so concurrent experiments share nothing
+	protected BraincraftContext context;
+	//the population being evolved, made by subclasses
+	protected Population pop;
+	//threads each trial may use to evaluate brains, see TrialScheduler
+	protected int evaluatorThreads = 1;
+	//worker processes to evaluate brains in, none evaluates them here, see EvaluationFarm
+	protected int farmWorkers = 0;
+	//the parameters this experiment was made with
+	protected String[] args;
+	
+	//work done so far, for throughput measurements
+	protected long evaluations = 0;
+	protected long ticksSimulated = 0;
 	
 	public Experiment(String[] args)
 	{
+		this.args = args;
+		random = new Random();
+		context = new BraincraftContext();
+		
 		//assigns program parameters to variables
 		for(String s: args)
 		{
@@ -62,7 +91,28 @@ public class Experiment
 					popSize = Integer.parseInt(st[1]);
 				else if(st[0].equals("gen"))
 					generations = Integer.parseInt(st[1]);
+				else if(st[0].equals("et"))
+					evaluatorThreads = Integer.parseInt(st[1]);
+				else if(st[0].equals("farm"))
+					farmWorkers = Integer.parseInt(st[1]);
+				else if(st[0].equals("elite"))
+					context.elitism = Integer.parseInt(st[1]);
+				else if(st[0].equals("act"))
+					activation = Activation.valueOf(st[1].toUpperCase());
+				else if(st[0].equals("seed"))
+				{
+					long seed = Long.parseLong(st[1]);
+					random = new Random(seed);
+					context.setSeed(seed);
+				}
 			}
+			//boolean parameters
+			else if(s.equals("ff"))
+				feedForward = true;
+			else if(s.equals("offheap"))
+				context.offHeapGenomes = true;
+			else if(s.equals("det"))
+				context.deterministicFitness = true;
 		}		
 		
 		stage = new Stage(width,height);
@@ -100,6 +150,42 @@ public class Experiment
 		}
 	}
 	
+	/**
+	 * The braincraft state of this run, with its logs and statistics
+	 * @return
+	 */
+	public BraincraftContext getContext()
+	{
+		return context;
+	}
+	
+	/**
+	 * The population being evolved
+	 * @return
+	 */
+	public Population getPopulation()
+	{
+		return pop;
+	}
+	
+	/**
+	 * Number of brains simulated so far
+	 * @return
+	 */
+	public long getEvaluations()
+	{
+		return evaluations;
+	}
+	
+	/**
+	 * Number of simulation ticks run so far, over all brains
+	 * @return
+	 */
+	public long getTicksSimulated()
+	{
+		return ticksSimulated;
+	}
+	
 	public void log(String s)
 	{
 		if(Aegis.logging)
@@ -0,0 +1,20 @@
+package aegis.core;
+
+import braincraft.Brain;
+
+/**
+ * An experiment that can evaluate brains in the worker processes of an EvaluationFarm.
+ * Implementations need a public constructor taking the experiment's parameters, which workers build them with.
+ *
+ * @author Prad
+ */
+public interface FarmExperiment
+{
+	/**
+	 * Evaluates one brain in a world made from a seed, the same world whichever worker runs it
+	 * @param b the brain
+	 * @param seed seed for the brain's world
+	 * @return the brain's fitness
+	 */
+	public double evaluate(Brain b, long seed);
+}
@@ -0,0 +1,69 @@
+package aegis.core;
+
+/**
+ * Precomputed toroidal neighbors for every cell of a Stage.
+ * Entry (cell * 8 + direction) holds the index of the cell one step away in that direction,
+ * wrapped the same way Stage.get(x,y,dir) wraps, so sensing needs no wrap branches per tick.
+ * 
+ * Cells are indexed the same way as Stage.indexOf(x,y).
+ * Directions are indexed by Direction.ordinal(), INVALID is not included.
+ * 
+ * @author Prad
+ */
+public class NeighborTable
+{
+	public static final int DIRECTIONS = 8;
+	
+	private final int[] table;
+	
+	public NeighborTable(int w, int h)
+	{
+		table = new int[w * h * DIRECTIONS];
+		
+		Direction[] dirs = Direction.values();
+		for (int x = 0; x < w; x++)
+		{
+			for (int y = 0; y < h; y++)
+			{
+				int base = (x * h + y) * DIRECTIONS;
+				for (int d = 0; d < DIRECTIONS; d++)
+				{
+					int nx = (x + dirs[d].getX() + w) % w;
+					int ny = (y + dirs[d].getY() + h) % h;
+					table[base + d] = nx * h + ny;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Index of the cell one step from cell in direction dir
+	 * @param cell
+	 * @param dir Direction ordinal
+	 * @return
+	 */
+	public int get(int cell, int dir)
+	{
+		return table[cell * DIRECTIONS + dir];
+	}
+	
+	/**
+	 * Ordinal of the direction to the left of dir
+	 * @param dir
+	 * @return
+	 */
+	public static int left(int dir)
+	{
+		return (dir + DIRECTIONS - 1) & (DIRECTIONS - 1);
+	}
+	
+	/**
+	 * Ordinal of the direction to the right of dir
+	 * @param dir
+	 * @return
+	 */
+	public static int right(int dir)
+	{
+		return (dir + 1) & (DIRECTIONS - 1);
+	}
+}
@@ -0,0 +1,417 @@
+package aegis.core;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sweeps an experiment's evolution parameters in one JVM.
+ * Every run gets its own experiment and braincraft context, and all runs share a TrialScheduler,
+ * so a sweep pays JVM startup and JIT warmup once instead of once per run.
+ *
+ * Streams one tab separated row per run as runs finish, then a table of every design point
+ * sorted by mean best fitness.
+ *
+ * @author Prad
+ */
+public class ParameterSweep
+{
+	//parameters that can be swept, and which of them are whole numbers
+	private static final String[] SWEEPABLE = {"nmr", "lmr", "wmr", "ldr", "pop", "gen"};
+	private static final String[] WHOLE = {"pop", "gen"};
+
+	/**
+	 * Sweep driver
+	 *
+	 * @param args
+	 *
+	 * Default parameters:
+	 * "exp=1 design=grid reps=1 seed=1"
+	 *
+	 * Parameters:
+	 * exp=1             : the number of the experiment to run
+	 * nmr=.01:.05:5     : sweeps a parameter from .01 to .05 in 5 levels, for nmr, lmr, wmr, ldr, pop and gen
+	 * lmr=.02,.04,.08   : sweeps a parameter over a list of values
+	 * design=grid       : grid tries every combination of levels, random and lhs (latin hypercube) draw samples= points
+	 * samples=20        : design points to draw for random and lhs designs
+	 * reps=1            : runs of each design point, with different seeds
+	 * jobs=8            : threads to run on, the number of cores by default
+	 * seed=1            : seeds the design, run i uses seed + i
+	 * results=file.tsv  : also append the rows to a file
+	 *
+	 * Everything else (w, h, et, act, a single nmr value, ...) is passed on to every run.
+	 */
+	public static void main(String[] args)
+	{
+		//no windows for hundreds of runs
+		Aegis.headless = true;
+
+		int experiment = 1;
+		String design = "grid";
+		int samples = 20;
+		int reps = 1;
+		int jobs = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		String resultsFile = null;
+		List<Factor> factors = new ArrayList<Factor>();
+		List<String> passOn = new ArrayList<String>();
+
+		for(String s: args)
+		{
+			String[] st = s.split("=");
+			if(st[0].equals("exp"))
+				experiment = Integer.parseInt(st[1]);
+			else if(st[0].equals("design"))
+				design = st[1];
+			else if(st[0].equals("samples"))
+				samples = Integer.parseInt(st[1]);
+			else if(st[0].equals("reps"))
+				reps = Integer.parseInt(st[1]);
+			else if(st[0].equals("jobs"))
+				jobs = Integer.parseInt(st[1]);
+			else if(st[0].equals("seed"))
+				seed = Long.parseLong(st[1]);
+			else if(st[0].equals("results"))
+				resultsFile = st[1];
+			else if(st.length > 1 && isSweepable(st[0]) && (st[1].contains(":") || st[1].contains(",")))
+			{
+				try
+				{
+					factors.add(new Factor(st[0], st[1]));
+				}
+				catch (IllegalArgumentException e)
+				{
+					System.out.println("Can't sweep " + s + ": " + e.getMessage());
+					return;
+				}
+			}
+			else
+				passOn.add(s);
+		}
+
+		Random random = new Random(seed);
+		List<double[]> points;
+		if(design.equals("grid"))
+			points = grid(factors);
+		else if(design.equals("random"))
+			points = randomDesign(factors, samples, random);
+		else if(design.equals("lhs"))
+			points = latinHypercube(factors, samples, random);
+		else
+		{
+			System.out.println("Unknown design " + design + ", use grid, random or lhs");
+			return;
+		}
+
+		run(experiment, factors, points, reps, jobs, seed, passOn, resultsFile);
+	}
+
+	/**
+	 * Runs every design point reps times and prints the results
+	 */
+	private static void run(int experiment, List<Factor> factors, List<double[]> points, int reps, int jobs,
+			long seed, List<String> passOn, String resultsFile)
+	{
+		//run i is design point i / reps
+		List<String[]> runArgs = new ArrayList<String[]>();
+		for(double[] point : points)
+		{
+			for(int r=0; r<reps; r++)
+			{
+				List<String> a = new ArrayList<String>(passOn);
+				for(int f=0; f<factors.size(); f++)
+					a.add(factors.get(f).name + "=" + factors.get(f).format(point[f]));
+				a.add("seed=" + (seed + runArgs.size()));
+				runArgs.add(a.toArray(new String[a.size()]));
+			}
+		}
+
+		PrintStream file = null;
+		if(resultsFile != null)
+		{
+			try
+			{
+				file = new PrintStream(new FileOutputStream(resultsFile, true));
+			}
+			catch (FileNotFoundException e)
+			{
+				e.printStackTrace();
+			}
+		}
+
+		System.out.println("Sweeping " + points.size() + " design points x " + reps + " reps = " + runArgs.size() + " runs");
+		Scheduler scheduler = new Scheduler(experiment, runArgs, jobs, factors, points, reps, file);
+		scheduler.printRow(scheduler.header());
+		List<TrialScheduler.TrialResult> results = scheduler.run();
+
+		if(file != null)
+			file.close();
+
+		printTable(factors, points, reps, results);
+	}
+
+	/**
+	 * Prints each design point's best fitness over its reps, best first
+	 */
+	private static void printTable(List<Factor> factors, List<double[]> points, int reps,
+			List<TrialScheduler.TrialResult> results)
+	{
+		final double[] mean = new double[points.size()];
+		double[] best = new double[points.size()];
+		int[] count = new int[points.size()];
+		for(int i=0; i<points.size(); i++)
+			best[i] = Double.NEGATIVE_INFINITY;
+		for(TrialScheduler.TrialResult r : results)
+		{
+			int point = r.trial / reps;
+			mean[point] += r.bestEverFitness;
+			best[point] = Math.max(best[point], r.bestEverFitness);
+			count[point]++;
+		}
+
+		List<Integer> order = new ArrayList<Integer>();
+		for(int i=0; i<points.size(); i++)
+		{
+			if(count[i] > 0)
+			{
+				mean[i] /= count[i];
+				order.add(i);
+			}
+		}
+		Collections.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				return Double.compare(mean[b], mean[a]);
+			}
+		});
+
+		StringBuilder header = new StringBuilder("point");
+		for(Factor f : factors)
+			header.append('\t').append(f.name);
+		header.append("\truns\tmeanBest\tbest");
+		System.out.println();
+		System.out.println(header);
+		for(int i : order)
+		{
+			StringBuilder row = new StringBuilder(String.valueOf(i));
+			for(int f=0; f<factors.size(); f++)
+				row.append('\t').append(factors.get(f).format(points.get(i)[f]));
+			row.append('\t').append(count[i]).append('\t').append(mean[i]).append('\t').append(best[i]);
+			System.out.println(row);
+		}
+	}
+
+	/**
+	 * Every combination of every factor's levels
+	 */
+	private static List<double[]> grid(List<Factor> factors)
+	{
+		List<double[]> points = new ArrayList<double[]>();
+		points.add(new double[factors.size()]);
+		for(int f=0; f<factors.size(); f++)
+		{
+			List<double[]> next = new ArrayList<double[]>();
+			for(double[] point : points)
+			{
+				for(double level : factors.get(f).levels)
+				{
+					double[] p = point.clone();
+					p[f] = level;
+					next.add(p);
+				}
+			}
+			points = next;
+		}
+		return points;
+	}
+
+	/**
+	 * Points drawn uniformly from each factor's range
+	 */
+	private static List<double[]> randomDesign(List<Factor> factors, int samples, Random random)
+	{
+		List<double[]> points = new ArrayList<double[]>();
+		for(int i=0; i<samples; i++)
+		{
+			double[] p = new double[factors.size()];
+			for(int f=0; f<factors.size(); f++)
+				p[f] = factors.get(f).at(random.nextDouble());
+			points.add(p);
+		}
+		return points;
+	}
+
+	/**
+	 * Points that split each factor's range into samples strata and put exactly one point in each,
+	 * so every factor is covered evenly with far fewer runs than a grid
+	 */
+	private static List<double[]> latinHypercube(List<Factor> factors, int samples, Random random)
+	{
+		List<double[]> points = new ArrayList<double[]>();
+		for(int i=0; i<samples; i++)
+			points.add(new double[factors.size()]);
+
+		for(int f=0; f<factors.size(); f++)
+		{
+			List<Integer> strata = new ArrayList<Integer>();
+			for(int i=0; i<samples; i++)
+				strata.add(i);
+			Collections.shuffle(strata, random);
+			for(int i=0; i<samples; i++)
+				points.get(i)[f] = factors.get(f).at((strata.get(i) + random.nextDouble()) / samples);
+		}
+		return points;
+	}
+
+	private static boolean isSweepable(String name)
+	{
+		for(String s : SWEEPABLE)
+			if(s.equals(name))
+				return true;
+		return false;
+	}
+
+	/**
+	 * A swept parameter
+	 */
+	private static class Factor
+	{
+		final String name;
+		final boolean whole;
+		//levels for a grid, min and max come from them
+		final double[] levels;
+		//true for a list of values, which random designs pick from instead of drawing between
+		final boolean list;
+
+		/**
+		 * @param name parameter name
+		 * @param spec min:max:levels, min:max (2 levels) or a comma separated list
+		 * @throws IllegalArgumentException if the spec gives no levels, or a single level for a range
+		 * with distinct ends
+		 */
+		Factor(String name, String spec)
+		{
+			this.name = name;
+			boolean w = false;
+			for(String s : WHOLE)
+				if(s.equals(name))
+					w = true;
+			whole = w;
+
+			if(spec.contains(","))
+			{
+				String[] values = spec.split(",");
+				levels = new double[values.length];
+				for(int i=0; i<values.length; i++)
+					levels[i] = Double.parseDouble(values[i]);
+				list = true;
+			}
+			else
+			{
+				String[] range = spec.split(":");
+				if(range.length < 2 || range.length > 3)
+					throw new IllegalArgumentException("expected min:max or min:max:levels");
+				double min = Double.parseDouble(range[0]);
+				double max = Double.parseDouble(range[1]);
+				int n = range.length > 2 ? Integer.parseInt(range[2]) : 2;
+				if(n < 1)
+					throw new IllegalArgumentException("a range needs at least one level, not " + n);
+				if(n == 1 && min != max)
+					throw new IllegalArgumentException("a range from " + min + " to " + max + " needs at least two levels");
+				levels = new double[n];
+				for(int i=0; i<n; i++)
+					levels[i] = n == 1 ? min : min + (max - min) * i / (n - 1);
+				list = false;
+			}
+			if(levels.length < 1)
+				throw new IllegalArgumentException("a factor needs at least one level");
+		}
+
+		/**
+		 * The value a fraction of the way through the factor's range
+		 * @param u between 0 and 1
+		 * @return
+		 */
+		double at(double u)
+		{
+			if(list)
+				return levels[Math.min(levels.length - 1, (int)(u * levels.length))];
+			double min = levels[0];
+			double max = levels[levels.length - 1];
+			return min + (max - min) * u;
+		}
+
+		/**
+		 * The value as the experiment parses it
+		 * @param value
+		 * @return
+		 */
+		String format(double value)
+		{
+			if(whole)
+				return String.valueOf(Math.round(value));
+			return String.valueOf(value);
+		}
+	}
+
+	/**
+	 * Streams a row for each run as it finishes
+	 */
+	private static class Scheduler extends TrialScheduler
+	{
+		private final List<Factor> factors;
+		private final List<double[]> points;
+		private final int reps;
+		private final PrintStream file;
+
+		Scheduler(int experiment, List<String[]> runArgs, int cores, List<Factor> factors, List<double[]> points,
+				int reps, PrintStream file)
+		{
+			super(experiment, runArgs, cores);
+			this.factors = factors;
+			this.points = points;
+			this.reps = reps;
+			this.file = file;
+		}
+
+		String header()
+		{
+			StringBuilder row = new StringBuilder("run\tpoint\tseed");
+			for(Factor f : factors)
+				row.append('\t').append(f.name);
+			row.append("\tgenerations\tevaluations\tseconds\taverageFitness\tbestFitness\tbestEverFitness");
+			return row.toString();
+		}
+
+		@Override
+		protected void trialFinished(TrialResult r)
+		{
+			double[] point = points.get(r.trial / reps);
+			StringBuilder row = new StringBuilder();
+			row.append(r.trial).append('\t').append(r.trial / reps).append('\t').append(r.seed);
+			for(int f=0; f<factors.size(); f++)
+				row.append('\t').append(factors.get(f).format(point[f]));
+			row.append('\t').append(r.generations).append('\t').append(r.evaluations);
+			row.append('\t').append(String.format("%.3f", r.seconds));
+			row.append('\t').append(r.averageFitness).append('\t').append(r.bestFitness).append('\t').append(r.bestEverFitness);
+			printRow(row.toString());
+		}
+
+		synchronized void printRow(String row)
+		{
+			System.out.println(row);
+			if(file != null)
+			{
+				file.println(row);
+				file.flush();
+			}
+		}
+	}
+}
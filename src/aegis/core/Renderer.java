@@ -12,12 +12,21 @@ import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JFrame;
 import javax.swing.Timer;
 
 /**
- * Renders the environment in a window
+ * Renders the environment in a window.
+ * 
+ * The simulation never waits on the renderer. Each tick it offers the Stage to capture(),
+ * which copies it into a triple buffer only when the last frame has been drawn.
+ * The Swing thread then draws whatever frame is newest.
+ * 
+ * In slow motion mode one whole evaluation is recorded and replayed one tick per frame,
+ * while evolution keeps going at full speed in the background.
  * 
  * @author Prad
  */
@@ -36,6 +45,16 @@ public class Renderer extends JFrame implements KeyListener
 	public boolean drawStage = true;
 	public boolean drawHUD = true;
 	public boolean drawGrid = true;
+	public volatile boolean slowMotion = false;
+	
+	//frames handed over from the simulation thread
+	private SnapshotBuffer snapshots;
+	
+	//ticks of the evaluation being recorded, only touched by the simulation thread
+	private ArrayList<StageSnapshot> recording;
+	//finished recording being replayed, set by the simulation thread and cleared by the Swing thread
+	private volatile List<StageSnapshot> replay;
+	private int replayFrame;
 	
 	private BufferedImage buffer;
 	private Graphics2D graphic;
@@ -79,6 +98,8 @@ public class Renderer extends JFrame implements KeyListener
 		
 		backgroundColor = Color.BLACK;
 		
+		snapshots = new SnapshotBuffer(st.getWidth(), st.getHeight());
+		
 		addKeyListener(this);
 		renderers++;
 	}
@@ -103,6 +124,46 @@ public class Renderer extends JFrame implements KeyListener
 		renderTimer.start();
 	}
 	
+	/**
+	 * Called by the simulation thread after every tick.
+	 * Copies the stage only if the renderer has room for a new frame, so it never slows the simulation down.
+	 * 
+	 * @param st
+	 * @param tick the tick number within the current evaluation, 0 starts a new one
+	 */
+	public void capture(Stage st, int tick)
+	{
+		if(!drawStage)
+			return;
+		
+		if(slowMotion && replay == null)
+		{
+			if(tick == 0)
+				recording = new ArrayList<StageSnapshot>();
+			if(recording != null)
+				recording.add(st.snapshot(tick));
+		}
+		else if(snapshots.wantsFrame())
+		{
+			st.capture(snapshots.getBack(), tick);
+			snapshots.publish();
+		}
+	}
+	
+	/**
+	 * Called by the simulation thread when an evaluation is over.
+	 * Hands a finished slow motion recording to the Swing thread.
+	 */
+	public void endEvaluation()
+	{
+		if(recording != null)
+		{
+			replayFrame = 0;
+			replay = recording;
+			recording = null;
+		}
+	}
+	
 	/**
 	 * Draws images on the screen every frame
 	 */
@@ -112,7 +173,19 @@ public class Renderer extends JFrame implements KeyListener
 		graphic.fillRect(0, 0, width, height);
 		
 		if(drawStage)
-			stage.draw(graphic);
+		{
+			List<StageSnapshot> r = replay;
+			if(r != null)
+			{
+				//one recorded tick per frame, same pace as watching live used to be
+				r.get(replayFrame).draw(graphic);
+				replayFrame++;
+				if(replayFrame >= r.size())
+					replay = null;
+			}
+			else
+				snapshots.acquire().draw(graphic);
+		}
 		
 		if(drawGrid)
 			stage.drawGrid(graphic);
@@ -141,6 +214,10 @@ public class Renderer extends JFrame implements KeyListener
 		{
 			drawGrid = !drawGrid;
 		}
+		else if(e.getKeyCode() == KeyEvent.VK_R)
+		{
+			slowMotion = !slowMotion;
+		}
 	}
 	
 	/**
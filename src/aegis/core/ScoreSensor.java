@@ -0,0 +1,31 @@
+package aegis.core;
+
+/**
+ * Lets a critter feel its own score, scaled into a brain input.
+ * 
+ * @author Prad
+ */
+public class ScoreSensor implements Sensor
+{
+	private final double scale;
+	
+	/**
+	 * @param sc input = score * sc
+	 */
+	public ScoreSensor(double sc)
+	{
+		scale = sc;
+	}
+	
+	@Override
+	public int size()
+	{
+		return 1;
+	}
+	
+	@Override
+	public void sense(Critter c, double[] in, int offset)
+	{
+		in[offset] = c.score * scale;
+	}
+}
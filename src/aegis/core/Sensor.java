@@ -0,0 +1,24 @@
+package aegis.core;
+
+/**
+ * Something a critter can perceive, turned into a fixed number of brain inputs.
+ * Sensors are added to a CritterPipeline, which decides where their inputs go.
+ * 
+ * @author Prad
+ */
+public interface Sensor
+{
+	/**
+	 * Number of brain inputs this sensor fills
+	 * @return
+	 */
+	public int size();
+	
+	/**
+	 * Writes this sensor's readings for a critter into in[offset] to in[offset + size() - 1]
+	 * @param c
+	 * @param in
+	 * @param offset
+	 */
+	public void sense(Critter c, double[] in, int offset);
+}
@@ -0,0 +1,62 @@
+package aegis.core;
+
+/**
+ * Smells the nearest cell of one type anywhere on the Stage, using the Stage's SpatialIndex.
+ * 
+ * Fills 3 inputs: how strong the smell is, 1 / (1 + distance), and which way it comes from,
+ * as the cosine of the angle to the facing direction and the cosine of the angle to the
+ * critter's right. All three are 0 when there is nothing of that type on the stage.
+ * 
+ * @author Prad
+ */
+public class SmellSensor implements Sensor
+{
+	private final SpatialIndex index;
+	private final int width;
+	private final int height;
+	private final byte type;
+	
+	/**
+	 * @param s stage to smell
+	 * @param t the CellType to smell
+	 */
+	public SmellSensor(Stage s, byte t)
+	{
+		index = s.getSpatialIndex();
+		width = s.getWidth();
+		height = s.getHeight();
+		type = t;
+	}
+	
+	@Override
+	public int size()
+	{
+		return 3;
+	}
+	
+	@Override
+	public void sense(Critter c, double[] in, int offset)
+	{
+		int target = index.nearest(type, c.x, c.y);
+		if(target < 0)
+		{
+			in[offset] = 0.0;
+			in[offset + 1] = 0.0;
+			in[offset + 2] = 0.0;
+			return;
+		}
+		
+		int dx = SpatialIndex.wrappedDelta(c.x, target / height, width);
+		int dy = SpatialIndex.wrappedDelta(c.y, target % height, height);
+		double dist = Math.sqrt(dx * dx + dy * dy);
+		
+		int fx = c.dir.getX();
+		int fy = c.dir.getY();
+		double norm = dist * Math.sqrt(fx * fx + fy * fy);
+		
+		in[offset] = 1.0 / (1.0 + dist);
+		//right of (fx,fy) is (-fy,fx) with y pointing down
+		in[offset + 1] = (dx * fx + dy * fy) / norm;
+		in[offset + 2] = (dx * -fy + dy * fx) / norm;
+	}
+}
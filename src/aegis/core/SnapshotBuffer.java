@@ -0,0 +1,74 @@
+package aegis.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer of StageSnapshots between one simulation thread (writer)
+ * and the Swing thread (reader).
+ *
+ * The writer fills the back slot and publishes it by swapping it with the middle slot.
+ * The reader swaps the middle slot into the front only when something new was published.
+ * Neither side ever waits on the other, and the reader always sees a whole frame.
+ *
+ * @author Prad
+ */
+public class SnapshotBuffer
+{
+	//set on the middle index when it holds a frame the reader has not picked up yet
+	private static final int FRESH = 4;
+	private static final int INDEX = 3;
+
+	private final StageSnapshot[] slots = new StageSnapshot[3];
+
+	//owned by the writer
+	private int back = 0;
+	//owned by the reader
+	private int front = 1;
+	//shared
+	private final AtomicInteger middle = new AtomicInteger(2);
+
+	public SnapshotBuffer(int w, int h)
+	{
+		for(int i=0; i<slots.length; i++)
+			slots[i] = new StageSnapshot(w, h);
+	}
+
+	/**
+	 * Whether the reader has picked up the last published frame.
+	 * The writer can skip capturing while this is false, since the frame would be dropped anyway.
+	 * @return
+	 */
+	public boolean wantsFrame()
+	{
+		return (middle.get() & FRESH) == 0;
+	}
+
+	/**
+	 * Writer side: the snapshot to fill in before calling publish()
+	 * @return
+	 */
+	public StageSnapshot getBack()
+	{
+		return slots[back];
+	}
+
+	/**
+	 * Writer side: hands the back snapshot to the reader
+	 */
+	public void publish()
+	{
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Reader side: the most recently published snapshot
+	 * @return
+	 */
+	public StageSnapshot acquire()
+	{
+		if((middle.get() & FRESH) != 0)
+			front = middle.getAndSet(front) & INDEX;
+
+		return slots[front];
+	}
+}
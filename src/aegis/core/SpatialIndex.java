@@ -0,0 +1,210 @@
+package aegis.core;
+
+import java.util.Arrays;
+
+/**
+ * Answers "where is the nearest X" on a Stage without scanning the whole grid.
+ * 
+ * The stage is split into square buckets, and for every CellType the index counts how many
+ * cells of that type each bucket holds. Stage updates the counts whenever a cell changes.
+ * A query looks at buckets in rings around the query point, scanning only buckets that
+ * hold the type, and stops once no unvisited ring can hold anything closer than the best hit.
+ * 
+ * Distances are Euclidean on the torus, so they wrap the same way Stage.get(x,y,dir) does.
+ * 
+ * @author Prad
+ */
+public class SpatialIndex
+{
+	public static final int DEFAULT_BUCKET_SIZE = 8;
+	
+	private final int width;
+	private final int height;
+	private final int bucketSize;
+	//buckets across and down, the last one in each axis may be narrower
+	private final int bucketsX;
+	private final int bucketsY;
+	//how much narrower the last bucket is than the rest, on the worse axis
+	private final int slack;
+	
+	private final byte[] cells;
+	//cell index -> bucket index
+	private final int[] bucketOf;
+	//type * buckets + bucket -> number of cells of that type in the bucket
+	private final int[] counts;
+	
+	/**
+	 * @param w
+	 * @param h
+	 * @param b width and height of a bucket in cells
+	 * @param c the Stage's cell type array, read when scanning a bucket
+	 */
+	SpatialIndex(int w, int h, int b, byte[] c)
+	{
+		width = w;
+		height = h;
+		bucketSize = b;
+		bucketsX = (w + b - 1) / b;
+		bucketsY = (h + b - 1) / b;
+		slack = Math.max(bucketsX * b - w, bucketsY * b - h);
+		cells = c;
+		
+		bucketOf = new int[w * h];
+		for (int x = 0; x < w; x++)
+			for (int y = 0; y < h; y++)
+				bucketOf[x * h + y] = (x / b) * bucketsY + (y / b);
+		
+		counts = new int[CellType.COUNT * bucketsX * bucketsY];
+		clear();
+	}
+	
+	/**
+	 * Records that a cell changed from one type to another
+	 * @param cell
+	 * @param oldType
+	 * @param newType
+	 */
+	void update(int cell, byte oldType, byte newType)
+	{
+		int bucket = bucketOf[cell];
+		int buckets = bucketsX * bucketsY;
+		counts[oldType * buckets + bucket]--;
+		counts[newType * buckets + bucket]++;
+	}
+	
+	/**
+	 * Forgets everything, for when the stage is cleared
+	 */
+	void clear()
+	{
+		Arrays.fill(counts, 0);
+		//every cell is empty again
+		int buckets = bucketsX * bucketsY;
+		for (int cell = 0; cell < bucketOf.length; cell++)
+			counts[CellType.EMPTY * buckets + bucketOf[cell]]++;
+	}
+	
+	/**
+	 * Number of cells of a type on the whole stage
+	 * @param type
+	 * @return
+	 */
+	public int count(byte type)
+	{
+		int buckets = bucketsX * bucketsY;
+		int n = 0;
+		for (int b = 0; b < buckets; b++)
+			n += counts[type * buckets + b];
+		return n;
+	}
+	
+	/**
+	 * Finds the closest cell of a type to (x,y), not counting (x,y) itself
+	 * @param type
+	 * @param x
+	 * @param y
+	 * @return cell index of the closest match, or -1 if there is none
+	 */
+	public int nearest(byte type, int x, int y)
+	{
+		int buckets = bucketsX * bucketsY;
+		int typeBase = type * buckets;
+		int homeX = x / bucketSize;
+		int homeY = y / bucketSize;
+		
+		//offsets that reach every bucket exactly once around the torus
+		int loX = -((bucketsX - 1) / 2);
+		int hiX = bucketsX / 2;
+		int loY = -((bucketsY - 1) / 2);
+		int hiY = bucketsY / 2;
+		int maxRing = Math.max(Math.max(-loX, hiX), Math.max(-loY, hiY));
+		
+		int best = -1;
+		int bestDist = Integer.MAX_VALUE;
+		
+		for (int ring = 0; ring <= maxRing; ring++)
+		{
+			//closest any cell in this ring can be
+			int bound = Math.max(0, (ring - 1) * bucketSize - slack + 1);
+			if (bound * bound > bestDist)
+				break;
+			
+			for (int ox = Math.max(loX, -ring); ox <= Math.min(hiX, ring); ox++)
+			{
+				for (int oy = Math.max(loY, -ring); oy <= Math.min(hiY, ring); oy++)
+				{
+					//only the edge of the ring, the inside was done already
+					if (Math.abs(ox) != ring && Math.abs(oy) != ring)
+						continue;
+					
+					int bx = (homeX + ox + bucketsX) % bucketsX;
+					int by = (homeY + oy + bucketsY) % bucketsY;
+					if (counts[typeBase + bx * bucketsY + by] == 0)
+						continue;
+					
+					int x1 = Math.min(width, (bx + 1) * bucketSize);
+					int y1 = Math.min(height, (by + 1) * bucketSize);
+					
+					//skip buckets that can't hold anything closer than what was found
+					int gx = gap(x, bx * bucketSize, x1 - 1, width);
+					int gy = gap(y, by * bucketSize, y1 - 1, height);
+					if (gx * gx + gy * gy >= bestDist)
+						continue;
+					
+					for (int cx = bx * bucketSize; cx < x1; cx++)
+					{
+						int ddx = wrappedDelta(x, cx, width);
+						int colBase = cx * height;
+						for (int cy = by * bucketSize; cy < y1; cy++)
+						{
+							if (cells[colBase + cy] != type || (cx == x && cy == y))
+								continue;
+							
+							int ddy = wrappedDelta(y, cy, height);
+							int dist = ddx * ddx + ddy * ddy;
+							if (dist < bestDist)
+							{
+								bestDist = dist;
+								best = colBase + cy;
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Distance from a to the nearest point of [lo,hi] on a ring of the given size
+	 * @param a
+	 * @param lo
+	 * @param hi
+	 * @param size
+	 * @return
+	 */
+	private static int gap(int a, int lo, int hi, int size)
+	{
+		if (a >= lo && a <= hi)
+			return 0;
+		return Math.min(Math.abs(wrappedDelta(a, lo, size)), Math.abs(wrappedDelta(a, hi, size)));
+	}
+	
+	/**
+	 * Shortest signed distance from a to b on a ring of the given size
+	 * @param a
+	 * @param b
+	 * @param size
+	 * @return
+	 */
+	public static int wrappedDelta(int a, int b, int size)
+	{
+		int d = b - a;
+		if (d > size / 2)
+			d -= size;
+		else if (d < -(size - 1) / 2)
+			d += size;
+		return d;
+	}
+}
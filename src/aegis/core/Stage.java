@@ -3,6 +3,7 @@ package aegis.core;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -20,6 +21,11 @@ public class Stage
 	private final int height_pixels;
 	
 	private Actor[][] grid;
+	//CellType of every cell, indexed by indexOf(x,y), kept in step with grid
+	private final byte[] cells;
+	private final NeighborTable neighbors;
+	//where each type is, kept in step with cells
+	private final SpatialIndex spatialIndex;
 	
 	private Color gridColor;
 	private BasicStroke gridStroke;
@@ -32,6 +38,9 @@ public class Stage
 		height_pixels=height_cells*CELL_SIZE;
 		
 		grid = new Actor[w][h];
+		cells = new byte[w*h];
+		neighbors = new NeighborTable(w, h);
+		spatialIndex = new SpatialIndex(w, h, SpatialIndex.DEFAULT_BUCKET_SIZE, cells);
 		gridColor= Color.GRAY;
 		gridStroke= new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);//default stroke
 	}
@@ -56,6 +65,28 @@ public class Stage
 		}
 	}
 	
+	/**
+	 * Copies the grid into a snapshot so it can be drawn from another thread
+	 * @param s
+	 * @param tick
+	 */
+	public void capture(StageSnapshot s, int tick)
+	{
+		s.copyFrom(grid, tick);
+	}
+
+	/**
+	 * Makes a new snapshot of the grid
+	 * @param tick
+	 * @return
+	 */
+	public StageSnapshot snapshot(int tick)
+	{
+		StageSnapshot s = new StageSnapshot(width_cells, height_cells);
+		s.copyFrom(grid, tick);
+		return s;
+	}
+
 	public void drawGrid(Graphics2D g)
 	{
 		//draw grid
@@ -77,6 +108,7 @@ public class Stage
 	public void add(int x, int y, Actor a) 
 	{
 		grid[x][y]=a;
+		setCell(indexOf(x,y), a.getCellType());
 		a.x=x;
 		a.y=y;
 	}
@@ -99,6 +131,7 @@ public class Stage
 		while(grid[rx][ry]!=null);
 		
 		grid[rx][ry]=a;
+		setCell(indexOf(rx,ry), a.getCellType());
 		a.x=rx;
 		a.y=ry;
 	}
@@ -112,6 +145,7 @@ public class Stage
 		int rx = r.nextInt(width_cells); 
 		int ry = r.nextInt(height_cells); 
 		grid[rx][ry]=a;
+		setCell(indexOf(rx,ry), a.getCellType());
 		
 		a.x=rx;
 		a.y=ry;
@@ -165,9 +199,86 @@ public class Stage
 	{
 		Actor a = grid[x][y];
 		grid[x][y] = null;
+		setCell(indexOf(x,y), CellType.EMPTY);
 		return a;
 	}	
 	
+	/**
+	 * Index of (x,y) in the cell type array and the NeighborTable
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int indexOf(int x, int y)
+	{
+		return x * height_cells + y;
+	}
+	
+	/**
+	 * x coordinate of a cell index
+	 * @param index
+	 * @return
+	 */
+	public int xOf(int index)
+	{
+		return index / height_cells;
+	}
+	
+	/**
+	 * y coordinate of a cell index
+	 * @param index
+	 * @return
+	 */
+	public int yOf(int index)
+	{
+		return index % height_cells;
+	}
+	
+	/**
+	 * Gets the CellType of what is at a cell index
+	 * @param index
+	 * @return
+	 */
+	public byte getCellType(int index)
+	{
+		return cells[index];
+	}
+	
+	/**
+	 * The live cell type array, for sensors that read many cells per tick.
+	 * Stays the same array for the life of the Stage.
+	 * @return
+	 */
+	public byte[] getCells()
+	{
+		return cells;
+	}
+	
+	public NeighborTable getNeighborTable()
+	{
+		return neighbors;
+	}
+	
+	/**
+	 * Index for nearest-of-type queries, always up to date with the grid
+	 * @return
+	 */
+	public SpatialIndex getSpatialIndex()
+	{
+		return spatialIndex;
+	}
+	
+	/**
+	 * Changes a cell's type and keeps the spatial index in step
+	 * @param i
+	 * @param type
+	 */
+	private void setCell(int i, byte type)
+	{
+		spatialIndex.update(i, cells[i], type);
+		cells[i] = type;
+	}
+	
 	public int getWidth()
 	{
 		return width_cells;
@@ -181,5 +292,7 @@ public class Stage
 	public void clear()
 	{
 		grid = new Actor[width_cells][height_cells];
+		Arrays.fill(cells, CellType.EMPTY);
+		spatialIndex.clear();
 	}
 }
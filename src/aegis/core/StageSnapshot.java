@@ -0,0 +1,75 @@
+package aegis.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A copy of what the Stage looked like at one tick of a simulation.
+ * Filled in by the simulation thread and drawn by the Renderer, so the
+ * Swing thread never has to read the live grid.
+ *
+ * Actor images are never redrawn once created, so holding on to them
+ * is enough to freeze a frame.
+ *
+ * @author Prad
+ */
+public class StageSnapshot
+{
+	private final int width_cells;
+	private final int height_cells;
+
+	private final BufferedImage[][] images;
+
+	//tick of the evaluation this frame was taken at
+	private int tick;
+
+	public StageSnapshot(int w, int h)
+	{
+		width_cells = w;
+		height_cells = h;
+		images = new BufferedImage[w][h];
+	}
+
+	/**
+	 * Overwrites this snapshot with the contents of a grid
+	 * @param grid
+	 * @param t
+	 */
+	void copyFrom(Actor[][] grid, int t)
+	{
+		for (int i = 0; i < width_cells; i++)
+		{
+			for (int j = 0; j < height_cells; j++)
+			{
+				Actor a = grid[i][j];
+				images[i][j] = (a == null) ? null : a.getImage();
+			}
+		}
+		tick = t;
+	}
+
+	/**
+	 * Draws the captured actors the same way Stage.draw() does
+	 * @param g
+	 */
+	public void draw(Graphics2D g)
+	{
+		for (int i = 0; i < width_cells; i++)
+		{
+			for (int j = 0; j < height_cells; j++)
+			{
+				BufferedImage img = images[i][j];
+				if(img != null)
+				{
+					g.drawImage(img, i*Stage.CELL_SIZE, j*Stage.CELL_SIZE, Color.BLACK, null);
+				}
+			}
+		}
+	}
+
+	public int getTick()
+	{
+		return tick;
+	}
+}
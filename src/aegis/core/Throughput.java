@@ -0,0 +1,298 @@
+package aegis.core;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+
+/**
+ * Headless throughput benchmark for whole experiments, run next to Aegis.main.
+ * Measures how many brains and ticks per second a machine gets through, so builds and
+ * hardware can be compared by the same numbers used for sizing.
+ *
+ * Prints one JSON object per line, one line per thread count.
+ *
+ * @author Prad
+ */
+public class Throughput
+{
+	/**
+	 * Benchmark driver
+	 *
+	 * @param args
+	 *
+	 * Default parameters:
+	 * "exp=1 gen=20 warmup=3 threads=1 seed=1"
+	 *
+	 * Parameters:
+	 * exp=1          : the number of the experiment to run
+	 * gen=20         : number of generations to measure
+	 * warmup=3       : generations to run first without measuring, so the JIT settles
+	 * threads=1,2,4  : thread counts to try, each thread runs its own copy of the experiment
+	 * seed=1         : seed for the first thread, thread i uses seed + i
+	 * out=file.json  : also append the results to a file
+	 *
+	 * Everything else (w, h, pop, nmr, ...) is passed on to the experiment.
+	 */
+	public static void main(String[] args)
+	{
+		//images can't be made without a display, and timing them isn't the point
+		Aegis.headless = true;
+
+		int experiment = 1;
+		int generations = 20;
+		int warmup = 3;
+		long seed = 1;
+		int[] threadCounts = {1};
+		String outFile = null;
+		List<String> passOn = new ArrayList<String>();
+
+		for(String s: args)
+		{
+			String[] st = s.split("=");
+			if(st[0].equals("exp"))
+				experiment = Integer.parseInt(st[1]);
+			else if(st[0].equals("gen"))
+				generations = Integer.parseInt(st[1]);
+			else if(st[0].equals("warmup"))
+				warmup = Integer.parseInt(st[1]);
+			else if(st[0].equals("seed"))
+				seed = Long.parseLong(st[1]);
+			else if(st[0].equals("out"))
+				outFile = st[1];
+			else if(st[0].equals("threads"))
+			{
+				String[] counts = st[1].split(",");
+				threadCounts = new int[counts.length];
+				for(int i=0; i<counts.length; i++)
+					threadCounts[i] = Integer.parseInt(counts[i]);
+			}
+			else
+				passOn.add(s);
+		}
+
+		PrintStream file = null;
+		if(outFile != null)
+		{
+			try
+			{
+				file = new PrintStream(new FileOutputStream(outFile, true));
+			}
+			catch (FileNotFoundException e)
+			{
+				e.printStackTrace();
+			}
+		}
+
+		for(int threads : threadCounts)
+		{
+			String result = run(experiment, threads, generations, warmup, seed, passOn);
+			System.out.println(result);
+			if(file != null)
+				file.println(result);
+		}
+
+		if(file != null)
+			file.close();
+	}
+
+	/**
+	 * Runs one copy of the experiment per thread and measures them together
+	 * @return the results as one line of JSON
+	 */
+	private static String run(int experiment, int threads, int generations, int warmup, long seed, List<String> passOn)
+	{
+		final CyclicBarrier start = new CyclicBarrier(threads + 1);
+		Worker[] workers = new Worker[threads];
+		for(int i=0; i<threads; i++)
+		{
+			List<String> a = new ArrayList<String>(passOn);
+			//each run() of the experiment is then exactly one generation
+			a.add("gen=1");
+			a.add("seed=" + (seed + i));
+			Experiment e = Aegis.createExperiment(experiment, a.toArray(new String[a.size()]));
+			workers[i] = new Worker(e, generations, warmup, start);
+			workers[i].start();
+		}
+
+		//wait for every thread to finish warming up
+		try
+		{
+			start.await();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (BrokenBarrierException e)
+		{
+			e.printStackTrace();
+		}
+
+		long gcStart = gcMillis();
+		long gcCountStart = gcCount();
+		long wallStart = System.nanoTime();
+
+		for(Worker w : workers)
+		{
+			try
+			{
+				w.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		long wall = System.nanoTime() - wallStart;
+		long gc = gcMillis() - gcStart;
+		long gcCount = gcCount() - gcCountStart;
+
+		long evaluations = 0;
+		long ticks = 0;
+		long allocated = 0;
+		double[] genMillis = new double[threads * generations];
+		for(int i=0; i<threads; i++)
+		{
+			evaluations += workers[i].evaluations;
+			ticks += workers[i].ticks;
+			allocated += workers[i].allocated;
+			System.arraycopy(workers[i].genMillis, 0, genMillis, i * generations, generations);
+		}
+		Arrays.sort(genMillis);
+		double seconds = wall / 1e9;
+
+		for(Worker w : workers)
+			w.e.getContext().clearLogs();
+
+		StringBuilder json = new StringBuilder("{");
+		json.append("\"experiment\":").append(experiment);
+		json.append(",\"threads\":").append(threads);
+		json.append(",\"generations\":").append(generations);
+		json.append(",\"warmup\":").append(warmup);
+		json.append(",\"seed\":").append(seed);
+		json.append(",\"wallSeconds\":").append(seconds);
+		json.append(",\"evaluations\":").append(evaluations);
+		json.append(",\"evaluationsPerSecond\":").append(evaluations / seconds);
+		json.append(",\"ticks\":").append(ticks);
+		json.append(",\"ticksPerSecond\":").append(ticks / seconds);
+		json.append(",\"generationMillis\":{");
+		json.append("\"p50\":").append(percentile(genMillis, 50));
+		json.append(",\"p90\":").append(percentile(genMillis, 90));
+		json.append(",\"p99\":").append(percentile(genMillis, 99));
+		json.append(",\"max\":").append(genMillis.length == 0 ? 0 : genMillis[genMillis.length - 1]);
+		json.append("}");
+		json.append(",\"allocatedBytes\":").append(allocated);
+		json.append(",\"allocatedBytesPerSecond\":").append(allocated / seconds);
+		json.append(",\"gcMillis\":").append(gc);
+		json.append(",\"gcCount\":").append(gcCount);
+		json.append("}");
+		return json.toString();
+	}
+
+	/**
+	 * Nearest-rank percentile of sorted values
+	 */
+	private static double percentile(double[] sorted, int p)
+	{
+		if(sorted.length == 0)
+			return 0;
+		int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static long gcMillis()
+	{
+		long total = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionTime());
+		return total;
+	}
+
+	private static long gcCount()
+	{
+		long total = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionCount());
+		return total;
+	}
+
+	/**
+	 * Bytes allocated by the current thread so far, or 0 if the JVM can't tell
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+
+	/**
+	 * Runs one experiment generation by generation and times each one
+	 */
+	private static class Worker extends Thread
+	{
+		private final Experiment e;
+		private final int generations;
+		private final int warmup;
+		private final CyclicBarrier start;
+
+		double[] genMillis;
+		long evaluations;
+		long ticks;
+		long allocated;
+
+		Worker(Experiment e, int generations, int warmup, CyclicBarrier start)
+		{
+			this.e = e;
+			this.generations = generations;
+			this.warmup = warmup;
+			this.start = start;
+			genMillis = new double[generations];
+		}
+
+		@Override
+		public void run()
+		{
+			for(int i=0; i<warmup; i++)
+				e.run();
+
+			try
+			{
+				start.await();
+			}
+			catch (InterruptedException ex)
+			{
+				return;
+			}
+			catch (BrokenBarrierException ex)
+			{
+				return;
+			}
+
+			long evalStart = e.getEvaluations();
+			long tickStart = e.getTicksSimulated();
+			long allocStart = allocatedBytes();
+
+			for(int i=0; i<generations; i++)
+			{
+				long t = System.nanoTime();
+				e.run();
+				genMillis[i] = (System.nanoTime() - t) / 1e6;
+			}
+
+			allocated = allocatedBytes() - allocStart;
+			evaluations = e.getEvaluations() - evalStart;
+			ticks = e.getTicksSimulated() - tickStart;
+		}
+	}
+}
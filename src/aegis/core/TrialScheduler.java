@@ -0,0 +1,344 @@
+package aegis.core;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import braincraft.GenerationMetrics;
+import braincraft.MetricsListener;
+
+/**
+ * Runs many trials of an experiment on a bounded work-stealing pool.
+ * At most cores / evaluator threads trials run at once, so trials that evaluate brains on several
+ * threads of their own still fit the machine. Prints a line as each trial finishes and can write
+ * every trial's results, plus a summary, to a file as JSON lines.
+ *
+ * When a seed is given trial i uses seed + i, so trials differ but the whole sweep can be repeated.
+ *
+ * @author Prad
+ */
+public class TrialScheduler
+{
+	private final int experiment;
+	private final int trials;
+	private final int parallelism;
+	private final int evaluatorThreads;
+	//parameters of each trial
+	private final List<String[]> trialArgs;
+
+	private String resultsFile;
+	private final AtomicInteger finished = new AtomicInteger();
+	private long startNanos;
+
+	/**
+	 * Makes a scheduler for trials of one experiment
+	 * @param experiment number of the experiment, see Aegis.createExperiment
+	 * @param trials number of trials to run
+	 * @param cores threads to use in total, trials x evaluator threads stays within it
+	 * @param args parameters for every trial, et= sets the evaluator threads per trial
+	 */
+	public TrialScheduler(int experiment, int trials, int cores, String[] args)
+	{
+		this(experiment, seededArgs(trials, args), cores);
+	}
+
+	/**
+	 * Makes a scheduler for trials of one experiment that each have their own parameters
+	 * @param experiment number of the experiment, see Aegis.createExperiment
+	 * @param trialArgs parameters of each trial, et= is read from the first
+	 * @param cores threads to use in total, trials x evaluator threads stays within it
+	 */
+	public TrialScheduler(int experiment, List<String[]> trialArgs, int cores)
+	{
+		this.experiment = experiment;
+		this.trials = trialArgs.size();
+		this.trialArgs = trialArgs;
+
+		String et = trials > 0 ? valueOf(trialArgs.get(0), "et") : null;
+		evaluatorThreads = Math.max(1, Math.min(et == null ? 1 : Integer.parseInt(et), cores));
+		parallelism = Math.max(1, Math.min(trials, cores / evaluatorThreads));
+	}
+
+	/**
+	 * Also writes each trial's results and a summary to a file, one JSON object per line
+	 * @param file file to append to
+	 */
+	public void setResultsFile(String file)
+	{
+		resultsFile = file;
+	}
+
+	/**
+	 * Number of trials run at once
+	 * @return
+	 */
+	public int getParallelism()
+	{
+		return parallelism;
+	}
+
+	/**
+	 * Runs every trial and waits for them to finish
+	 * @return the results of each trial that finished, in trial order
+	 */
+	public List<TrialResult> run()
+	{
+		startNanos = System.nanoTime();
+		System.out.println("Running " + trials + " trials of experiment " + experiment + ", " + parallelism
+				+ " at a time with " + evaluatorThreads + " evaluator thread(s) each");
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		List<Future<TrialResult>> futures = new ArrayList<Future<TrialResult>>();
+		for(int i=0; i<trials; i++)
+		{
+			final int trial = i;
+			futures.add(pool.submit(new Callable<TrialResult>()
+			{
+				@Override
+				public TrialResult call()
+				{
+					return runTrial(trial);
+				}
+			}));
+		}
+
+		List<TrialResult> results = new ArrayList<TrialResult>();
+		for(int i=0; i<trials; i++)
+		{
+			try
+			{
+				results.add(futures.get(i).get());
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (ExecutionException e)
+			{
+				System.out.println("Trial " + i + " failed: " + e.getCause());
+			}
+		}
+		pool.shutdown();
+
+		double wall = (System.nanoTime() - startNanos) / 1e9;
+		String summary = summary(results, wall);
+		System.out.println(summary);
+		writeResults(results, summary);
+		return results;
+	}
+
+	/**
+	 * Makes and runs one trial
+	 */
+	private TrialResult runTrial(int trial)
+	{
+		String[] args = trialArgs.get(trial);
+		String seed = valueOf(args, "seed");
+
+		final TrialResult result = new TrialResult(trial, seed == null ? null : Long.valueOf(seed));
+		long start = System.nanoTime();
+		Experiment e = Aegis.createExperiment(experiment, args);
+		e.getPopulation().getMetrics().addListener(new MetricsListener()
+		{
+			@Override
+			public void generationFinished(GenerationMetrics m)
+			{
+				result.generations++;
+				result.averageFitness = m.getAverageFitness();
+				result.bestFitness = m.getBestFitness();
+				result.bestEverFitness = Math.max(result.bestEverFitness, m.getBestFitness());
+			}
+		});
+		e.run();
+		result.seconds = (System.nanoTime() - start) / 1e9;
+		result.evaluations = e.getEvaluations();
+		result.ticks = e.getTicksSimulated();
+
+		//progress, with a guess at the time left from the average pace so far
+		int done = finished.incrementAndGet();
+		double elapsed = (System.nanoTime() - startNanos) / 1e9;
+		double left = elapsed / done * (trials - done);
+		System.out.println("[" + done + "/" + trials + "] trial " + trial + " finished in "
+				+ String.format("%.1f", result.seconds) + "s, best fitness "
+				+ (result.generations > 0 ? String.valueOf(result.bestEverFitness) : "none")
+				+ ", about " + String.format("%.0f", left) + "s left");
+		trialFinished(result);
+		return result;
+	}
+
+	/**
+	 * Called on the trial's thread as each trial finishes, for subclasses that stream results
+	 * @param result what the trial achieved
+	 */
+	protected void trialFinished(TrialResult result)
+	{
+
+	}
+
+	/**
+	 * Copies the parameters for each trial, giving trial i seed + i if a seed is given
+	 */
+	private static List<String[]> seededArgs(int trials, String[] args)
+	{
+		String seed = valueOf(args, "seed");
+		List<String[]> list = new ArrayList<String[]>();
+		for(int i=0; i<trials; i++)
+		{
+			String[] a = args;
+			if(seed != null)
+			{
+				a = new String[args.length + 1];
+				System.arraycopy(args, 0, a, 0, args.length);
+				//later parameters win, so this overrides the given seed
+				a[args.length] = "seed=" + (Long.parseLong(seed) + i);
+			}
+			list.add(a);
+		}
+		return list;
+	}
+
+	/**
+	 * The value of the last parameter with a name, as experiments read them
+	 * @return the value, or null if it isn't given
+	 */
+	static String valueOf(String[] args, String name)
+	{
+		String value = null;
+		for(String a : args)
+		{
+			String[] st = a.split("=");
+			if(st.length > 1 && st[0].equals(name))
+				value = st[1];
+		}
+		return value;
+	}
+
+	/**
+	 * Sums up the whole run as one line of JSON
+	 */
+	private String summary(List<TrialResult> results, double wall)
+	{
+		double sum = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		long evaluations = 0;
+		//trials that finished no generation have no fitness to sum up
+		int scored = 0;
+		for(TrialResult r : results)
+		{
+			evaluations += r.evaluations;
+			if(r.generations == 0)
+				continue;
+			scored++;
+			sum += r.bestEverFitness;
+			min = Math.min(min, r.bestEverFitness);
+			max = Math.max(max, r.bestEverFitness);
+		}
+
+		StringBuilder json = new StringBuilder("{");
+		json.append("\"experiment\":").append(experiment);
+		json.append(",\"trials\":").append(trials);
+		json.append(",\"finished\":").append(results.size());
+		json.append(",\"parallelism\":").append(parallelism);
+		json.append(",\"evaluatorThreads\":").append(evaluatorThreads);
+		json.append(",\"wallSeconds\":").append(wall);
+		json.append(",\"evaluationsPerSecond\":").append(jsonNumber(evaluations / wall));
+		if(scored > 0)
+		{
+			json.append(",\"bestFitness\":{");
+			json.append("\"mean\":").append(sum / scored);
+			json.append(",\"min\":").append(min);
+			json.append(",\"max\":").append(max);
+			json.append("}");
+		}
+		json.append("}");
+		return json.toString();
+	}
+
+	/**
+	 * A number as JSON, which has no infinities or NaN, so those are null
+	 */
+	static String jsonNumber(double value)
+	{
+		if(Double.isNaN(value) || Double.isInfinite(value))
+			return "null";
+		return String.valueOf(value);
+	}
+
+	/**
+	 * Appends every trial and the summary to the results file, if there is one
+	 */
+	private void writeResults(List<TrialResult> results, String summary)
+	{
+		if(resultsFile == null)
+			return;
+
+		try
+		{
+			PrintStream file = new PrintStream(new FileOutputStream(resultsFile, true));
+			for(TrialResult r : results)
+				file.println(r.toJson());
+			file.println(summary);
+			file.close();
+		}
+		catch (FileNotFoundException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * What one trial achieved
+	 */
+	public static class TrialResult
+	{
+		public final int trial;
+		//null if the trial was not seeded
+		public final Long seed;
+		public int generations;
+		public long evaluations;
+		public long ticks;
+		public double seconds;
+		//of the last generation
+		public double averageFitness;
+		public double bestFitness;
+		//of any generation
+		public double bestEverFitness = Double.NEGATIVE_INFINITY;
+
+		TrialResult(int trial, Long seed)
+		{
+			this.trial = trial;
+			this.seed = seed;
+		}
+
+		/**
+		 * The result as one line of JSON, with null fitnesses if no generation finished
+		 * @return
+		 */
+		public String toJson()
+		{
+			StringBuilder json = new StringBuilder("{");
+			json.append("\"trial\":").append(trial);
+			if(seed != null)
+				json.append(",\"seed\":").append(seed);
+			json.append(",\"generations\":").append(generations);
+			json.append(",\"evaluations\":").append(evaluations);
+			json.append(",\"ticks\":").append(ticks);
+			json.append(",\"seconds\":").append(seconds);
+			boolean scored = generations > 0;
+			json.append(",\"averageFitness\":").append(scored ? jsonNumber(averageFitness) : "null");
+			json.append(",\"bestFitness\":").append(scored ? jsonNumber(bestFitness) : "null");
+			json.append(",\"bestEverFitness\":").append(scored ? jsonNumber(bestEverFitness) : "null");
+			json.append("}");
+			return json.toString();
+		}
+	}
+}
@@ -3,14 +3,24 @@ package aegis.experiments;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.function.ObjDoubleConsumer;
 
 import aegis.actors.Food;
 import aegis.actors.FoodCritter;
+import aegis.core.CritterPipeline;
+import aegis.core.EvaluationFarm;
+import aegis.core.EvaluationEvent;
 import aegis.core.Experiment;
+import aegis.core.FarmExperiment;
+import aegis.core.Stage;
 import braincraft.Brain;
-import braincraft.Braincraft;
-import braincraft.Population;
+import braincraft.Evaluators;
+import braincraft.FitnessFunction;
 import braincraft.TribePopulation;
 
 /**
@@ -18,13 +28,34 @@ import braincraft.TribePopulation;
  * @author Prad
  *
  */
-public class FoodExperiment extends Experiment
+public class FoodExperiment extends Experiment implements FarmExperiment
 {
-	Population pop;
+	//what the critters sense and do, shared by every critter on the stage
+	CritterPipeline pipeline;
 	int maxFitness=0;
 	int lastFitness=0;
 	int avgFitness=0;
 	int lastPopAvgFitness=0;
+	
+	//how long each critter gets to live
+	protected int ticks = 100;
+	
+	//seeds the worlds of one generation when brains are evaluated on several threads
+	private long generationSeed;
+	//evaluator threads, kept between calls to run() and left to time out when idle
+	private ExecutorService evaluatorPool;
+	//worker processes brains are sent to when farm= is given
+	private EvaluationFarm farm;
+	//a stage and pipeline for each evaluator thread, so critters on different threads never meet
+	private final ThreadLocal<Lane> lanes = new ThreadLocal<Lane>()
+	{
+		@Override
+		protected Lane initialValue()
+		{
+			Stage s = new Stage(width, height);
+			return new Lane(s, createPipeline(s));
+		}
+	};
 
 	Font font;
 
@@ -37,11 +68,14 @@ public class FoodExperiment extends Experiment
 
 		font = new Font(Font.SANS_SERIF, Font.BOLD, 12);
 
-		pop = new TribePopulation(popSize, 3, 3);
+		pipeline = FoodCritter.createPipeline(stage);
+		pop = new TribePopulation(context, popSize, pipeline.numInputs(), pipeline.numOutputs());
 		pop.nodeMutationRate = nodeMutationRate;
 		pop.linkMutationRate = linkMutationRate;
 		pop.weightMutationRate = weightMutationRate;
 		pop.linkDisableRate = linkDisableRate;
+		pop.feedForward = feedForward;
+		pop.activation = activation;
 
 	}
 
@@ -65,23 +99,101 @@ public class FoodExperiment extends Experiment
 
 	}
 
+	/**
+	 * Sets up what the critters sense and do on a stage, subclasses with other critters override this
+	 * @param s
+	 * @return
+	 */
+	protected CritterPipeline createPipeline(Stage s)
+	{
+		return FoodCritter.createPipeline(s);
+	}
+
 	@Override
 	public void run() 
 	{
 		super.run();
-		//Braincraft.gatherStats = true;
+		//context.gatherStats = true;
+
+		if(farmWorkers > 0)
+		{
+			runOnFarm();
+			return;
+		}
+		
+		//the renderer draws the one main stage, so only headless runs use several threads
+		final boolean parallel = evaluatorThreads > 1 && renderer == null;
+		if(parallel && evaluatorPool == null)
+			evaluatorPool = Evaluators.forkJoin(evaluatorThreads);
+		//the evaluator threads sit idle while the next generation is bred, so they build its brains meanwhile
+		if(parallel)
+			pop.prebuildBrains(evaluatorPool);
+		FitnessFunction fitness = new FitnessFunction()
+		{
+			@Override
+			public double evaluate(Brain b)
+			{
+				if(!parallel)
+					return FoodExperiment.this.evaluate(b);
+				
+				//seeds come from the brain rather than the order brains finish in, so seed= still repeats
+				Lane lane = lanes.get();
+				return FoodExperiment.this.evaluate(b, new Random(generationSeed ^ b.getID()), lane.stage, lane.pipeline);
+			}
+		};
 
 		//runs the brain evolution for a number of generations
 		//calls evaluate(b) with each of the brains that it generates in the process 
-		double fitness = 0;
-		int counter = 0;
-		while (counter < generations * popSize) {
-			Brain b = pop.getBrain();
-			fitness = evaluate(b);
-			pop.reportFitness(b, fitness);
-			counter++;
+		for(int g=0; g<generations; g++)
+		{
+			if(parallel)
+			{
+				generationSeed = random.nextLong();
+				pop.evaluateGeneration(fitness, evaluatorPool);
+			}
+			else
+				pop.evaluateGeneration(fitness, Evaluators.sequential());
 		}
-		//Braincraft.writeStats("stats.txt");
+		//context.writeStats("stats.txt");
+	}
+	
+	/**
+	 * Runs the evolution with every brain evaluated in worker processes, in the same worlds et= would use
+	 */
+	private void runOnFarm()
+	{
+		//workers build this experiment with the same parameters, but mustn't start farms of their own
+		List<String> workerArgs = new ArrayList<String>();
+		for(String a : args)
+			if(!a.startsWith("farm="))
+				workerArgs.add(a);
+		
+		try
+		{
+			farm = new EvaluationFarm(getClass(), workerArgs.toArray(new String[workerArgs.size()]));
+			farm.launchLocalWorkers(farmWorkers);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+		
+		ObjDoubleConsumer<Brain> evaluated = new ObjDoubleConsumer<Brain>()
+		{
+			@Override
+			public void accept(Brain b, double fitness)
+			{
+				recordFitness((int) fitness);
+			}
+		};
+		for(int g=0; g<generations; g++)
+		{
+			generationSeed = random.nextLong();
+			farm.setSeed(generationSeed);
+			farm.evaluateGeneration(pop, evaluated);
+		}
+		farm.close();
 	}
 
 	//critter number
@@ -99,10 +211,37 @@ public class FoodExperiment extends Experiment
 	 */
 	public double evaluate(Brain b)
 	{
-		int seed = new Random().nextInt();
+		int seed = random.nextInt();
 		Random r = new Random(seed);
+		return evaluate(b, r, stage, pipeline);
+	}
+
+	/**
+	 * Runs one critter in a world made from a seed, for workers of an EvaluationFarm
+	 */
+	@Override
+	public double evaluate(Brain b, long seed)
+	{
+		return evaluate(b, new Random(seed), stage, pipeline);
+	}
 
-		return runSimulation(b, r);
+	/**
+	 * Runs one critter on the given stage, safe to call from several threads with different stages
+	 */
+	protected double evaluate(Brain b, Random r, Stage stage, CritterPipeline pipeline)
+	{
+		EvaluationEvent event = new EvaluationEvent();
+		event.begin();
+		int fitness = runSimulation(b, r, stage, pipeline);
+		if(event.shouldCommit())
+		{
+			event.experiment = getClass().getSimpleName();
+			event.brainID = b.getID();
+			event.ticks = ticks;
+			event.fitness = fitness;
+			event.commit();
+		}
+		return fitness;
 	}
 
 	/**
@@ -110,9 +249,11 @@ public class FoodExperiment extends Experiment
 	 * 
 	 * @param b
 	 * @param r
+	 * @param stage stage to run on, the experiment's own one or an evaluator thread's
+	 * @param pipeline the critters' pipeline for that stage
 	 * @return
 	 */
-	protected int runSimulation(Brain b, Random r)
+	protected int runSimulation(Brain b, Random r, Stage stage, CritterPipeline pipeline)
 	{
 		stage.clear();
 
@@ -124,29 +265,39 @@ public class FoodExperiment extends Experiment
 		}
 
 		//create critter
-		FoodCritter c = new FoodCritter(b, stage);
+		FoodCritter c = new FoodCritter(b, pipeline);
 		stage.addRandomUnsafe(c, r);
 
 		//go around for a while
-		for (int i = 0; i < 100; i++)
+		for (int i = 0; i < ticks; i++)
 		{
 			c.act();
 
-			if(renderer != null && renderer.drawStage)
+			if(renderer != null)
 			{
 				lastFitness=c.fitness();
-
-				try
-				{
-					//makes the thread sleep so we can see what's going on
-					Thread.sleep(50);
-				} catch (InterruptedException e)
-				{
-					e.printStackTrace();
-				}
+				
+				//hands the frame to the renderer without waiting for it
+				renderer.capture(stage, i);
 			}
 		}
-
+		
+		if(renderer != null)
+			renderer.endEvaluation();
+		
+		recordFitness(c.fitness());
+		return c.fitness();
+	}
+	
+	/**
+	 * Counts a finished critter towards the stats, synchronized since critters may finish on several threads
+	 * @param fitness
+	 */
+	protected synchronized void recordFitness(int fitness)
+	{
+		evaluations++;
+		ticksSimulated += ticks;
+		
 		//reset population counter and calculate population stats
 		if(cpopNum == popSize)
 		{
@@ -158,18 +309,31 @@ public class FoodExperiment extends Experiment
 			cpopNum++;
 
 		//store max fitness
-		if(c.fitness() > maxFitness)
-			maxFitness = c.fitness();
+		if(fitness > maxFitness)
+			maxFitness = fitness;
 
-		lastFitness = c.fitness();
-		fitTotal += c.fitness();
+		lastFitness = fitness;
+		fitTotal += fitness;
 		avgFitness = fitTotal/cpopNum;
 
 		cn++;
 		
-		log(cn + ", " + c.fitness() + ", " + maxFitness + ", " + lastPopAvgFitness);
-
-		return c.fitness();
+		log(cn + ", " + fitness + ", " + maxFitness + ", " + lastPopAvgFitness);
+	}
+	
+	/**
+	 * An evaluator thread's own stage and pipeline
+	 */
+	private static class Lane
+	{
+		final Stage stage;
+		final CritterPipeline pipeline;
+		
+		Lane(Stage stage, CritterPipeline pipeline)
+		{
+			this.stage = stage;
+			this.pipeline = pipeline;
+		}
 	}
 
 }
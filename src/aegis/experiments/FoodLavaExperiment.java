@@ -5,6 +5,8 @@ import java.util.Random;
 import aegis.actors.Food;
 import aegis.actors.FoodLavaCritter;
 import aegis.actors.Lava;
+import aegis.core.CritterPipeline;
+import aegis.core.Stage;
 import braincraft.Brain;
 import braincraft.TribePopulation;
 
@@ -22,24 +24,35 @@ public class FoodLavaExperiment extends FoodExperiment
 	{
 		super(args);
 		
-		//only difference from FoodExperiment is number of inputs
-		pop = new TribePopulation(popSize, 6, 3);
+		//only difference from FoodExperiment is what the critters sense
+		pipeline = createPipeline(stage);
+		pop = new TribePopulation(context, popSize, pipeline.numInputs(), pipeline.numOutputs());
 		pop.nodeMutationRate = nodeMutationRate;
 		pop.linkMutationRate = linkMutationRate;
 		pop.weightMutationRate = weightMutationRate;
 		pop.linkDisableRate = linkDisableRate;
+		pop.feedForward = feedForward;
+		pop.activation = activation;
 		
 	}
 	
+	@Override
+	protected CritterPipeline createPipeline(Stage s)
+	{
+		return FoodLavaCritter.createPipeline(s);
+	}
+	
 	/**
 	 * Simulates one critter. If the critter's fitness passes a threshold, it's actions are replayed. 
 	 * 
 	 * @param b
 	 * @param r
+	 * @param stage
+	 * @param pipeline
 	 * @return
 	 */
 	@Override
-	protected int runSimulation(Brain b, Random r)
+	protected int runSimulation(Brain b, Random r, Stage stage, CritterPipeline pipeline)
 	{
 		stage.clear();
 		
@@ -58,54 +71,27 @@ public class FoodLavaExperiment extends FoodExperiment
 		}
 		
 		//create critter
-		FoodLavaCritter c = new FoodLavaCritter(b, stage);
+		FoodLavaCritter c = new FoodLavaCritter(b, pipeline);
 		stage.addRandomUnsafe(c, r);
 		
 		//go around for a while
-		for (int i = 0; i < 100; i++)
+		for (int i = 0; i < ticks; i++)
 		{
 			c.act();
 			
-			if((renderer != null && renderer.drawStage))
+			if(renderer != null)
 			{
 				lastFitness=c.fitness();
 				
-				try
-				{
-					//makes the thread sleep so we can see what's going on
-					Thread.sleep(50);
-				} catch (InterruptedException e)
-				{
-					e.printStackTrace();
-				}
+				//hands the frame to the renderer without waiting for it
+				renderer.capture(stage, i);
 			}
 		}
 		
-		//reset population counter and calculate population stats
-		if(cpopNum == popSize)
-		{
-			lastPopAvgFitness = fitTotal/popSize;
-			//System.out.println("lastPop: " + lastPopAvgFitness);
-			fitTotal = 0;
-			cpopNum=1;
-		}
-		else 
-			cpopNum++;
-
-		//store max fitness
-		if(c.fitness() > maxFitness)
-		{
-			maxFitness = c.fitness();
-		}
-
-		lastFitness = c.fitness();
-		fitTotal += c.fitness();
-		avgFitness = fitTotal/cpopNum;
-
-		cn++;
-
-		log(cn + ", " + c.fitness() + ", " + maxFitness + ", " + lastPopAvgFitness);
+		if(renderer != null)
+			renderer.endEvaluation();
 		
+		recordFitness(c.fitness());
 		return c.fitness();
 	}
 
@@ -0,0 +1,61 @@
+package aegis.experiments;
+
+import aegis.core.Actuator;
+import aegis.core.CellType;
+import aegis.core.CritterPipeline;
+import aegis.core.Stage;
+import aegis.core.VisionSensor;
+import braincraft.TribePopulation;
+
+/**
+ * FoodExperiment where critters see food along 8 rays instead of only the 3 cells in front of them.
+ * @author Prad
+ *
+ */
+public class FoodVisionExperiment extends FoodExperiment
+{
+	//how far the critters can see
+	protected int visionRange = 20;
+	
+	/**
+	 * Takes in a bunch of parameters, sets up the BrainCraft population
+	 */
+	public FoodVisionExperiment(String[] args)
+	{
+		super(args);
+		
+		for(String s: args)
+		{
+			if(s.contains("="))
+			{
+				String[] st = s.split("=");
+				
+				if(st[0].equals("vr"))
+					visionRange = Integer.parseInt(st[1]);
+			}
+		}
+		
+		//only difference from FoodExperiment is what the critters sense
+		pipeline = createPipeline(stage);
+		
+		pop = new TribePopulation(context, popSize, pipeline.numInputs(), pipeline.numOutputs());
+		pop.nodeMutationRate = nodeMutationRate;
+		pop.linkMutationRate = linkMutationRate;
+		pop.weightMutationRate = weightMutationRate;
+		pop.linkDisableRate = linkDisableRate;
+		pop.feedForward = feedForward;
+		pop.activation = activation;
+	}
+	
+	@Override
+	protected CritterPipeline createPipeline(Stage s)
+	{
+		CritterPipeline p = new CritterPipeline(s);
+		p.addSensor(new VisionSensor(s, visionRange, CellType.FOOD));
+		p.addActuator(Actuator.TURN_LEFT);
+		p.addActuator(Actuator.MOVE_FORWARD);
+		p.addActuator(Actuator.TURN_RIGHT);
+		p.setReward(CellType.FOOD, 1);
+		return p;
+	}
+}
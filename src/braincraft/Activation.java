@@ -0,0 +1,101 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ *
+ *         Activation functions a Brain can pass node sums through. Each one is
+ *         given the weighted sum into a node and the Brain's sigmoid
+ *         coefficient (negative for the usual increasing sigmoid, -4.9 by
+ *         default). Chosen per Population through Population.activation.
+ */
+public enum Activation {
+	/**
+	 * The steepened sigmoid 1 / (1 + e^(coefficient * sum)) computed with
+	 * Math.pow, as Braincraft always has. The default, and the reference the
+	 * others are measured against.
+	 */
+	SIGMOID {
+		public double apply(double sum, double coefficient) {
+			return 1 / (1 + Math.pow(Math.E, sum * coefficient));
+		}
+	},
+	/**
+	 * The same sigmoid computed with Math.exp. Within 1e-15 of SIGMOID.
+	 */
+	EXP_SIGMOID {
+		public double apply(double sum, double coefficient) {
+			return 1 / (1 + Math.exp(sum * coefficient));
+		}
+	},
+	/**
+	 * The same sigmoid read from a table of 4096 steps over exponents -16 to
+	 * 16, with linear interpolation in between and 0 or 1 outside. Within
+	 * 8e-7 of SIGMOID everywhere (at most 7.4e-7 from interpolation and 1.2e-7
+	 * from saturating), far below anything a 0.5 threshold can notice.
+	 */
+	FAST_SIGMOID {
+		public double apply(double sum, double coefficient) {
+			double t = sum * coefficient;
+			if (t <= -SigmoidTable.RANGE)
+				return 1.0;
+			if (t >= SigmoidTable.RANGE)
+				return 0.0;
+			double pos = (t + SigmoidTable.RANGE) * SigmoidTable.SCALE;
+			int i = (int) pos;
+			double lo = SigmoidTable.VALUES[i];
+			return lo + (SigmoidTable.VALUES[i + 1] - lo) * (pos - i);
+		}
+	},
+	/**
+	 * Hyperbolic tangent with the same steepness, tanh(-coefficient * sum).
+	 * Ranges from -1 to 1 instead of 0 to 1.
+	 */
+	TANH {
+		public double apply(double sum, double coefficient) {
+			return Math.tanh(-coefficient * sum);
+		}
+	},
+	/**
+	 * Rectified linear, max(0, sum). Ignores the coefficient.
+	 */
+	RELU {
+		public double apply(double sum, double coefficient) {
+			return sum > 0 ? sum : 0.0;
+		}
+	},
+	/**
+	 * Binary step, 1 if the sum is positive and 0 otherwise. Ignores the
+	 * coefficient.
+	 */
+	STEP {
+		public double apply(double sum, double coefficient) {
+			return sum > 0 ? 1.0 : 0.0;
+		}
+	};
+
+	/**
+	 * Computes a node's output from its input sum
+	 *
+	 * @param sum
+	 *            the sum of the node's input activations times their weights
+	 * @param coefficient
+	 *            the Brain's sigmoid coefficient
+	 * @return the node's output
+	 */
+	public abstract double apply(double sum, double coefficient);
+
+	/**
+	 * Lookup table for FAST_SIGMOID, indexed by exponent
+	 */
+	private static final class SigmoidTable {
+		static final double RANGE = 16.0;
+		static final int STEPS = 4096;
+		static final double SCALE = STEPS / (2 * RANGE);
+		static final double[] VALUES = new double[STEPS + 1];
+
+		static {
+			for (int i = 0; i <= STEPS; i++)
+				VALUES[i] = 1 / (1 + Math.exp(i / SCALE - RANGE));
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         The inner loop of BrainBatch: computes the outputs of a list of
+ *         nodes for every lane. Node n's output for lane l lives at
+ *         n * lanes + l, gene g's weight for lane l at g * lanes + l.
+ */
+interface BatchKernel {
+	/**
+	 * Computes every node in computeNodes, in order
+	 * 
+	 * @param computeNodes
+	 *            nodes to compute
+	 * @param geneOffsets
+	 *            genes into computeNodes[k] run from geneOffsets[k] to
+	 *            geneOffsets[k + 1] - 1
+	 * @param geneSources
+	 *            node each gene starts from
+	 * @param weights
+	 *            gene weights by lane
+	 * @param src
+	 *            node outputs read by the genes
+	 * @param dst
+	 *            where computed outputs are written, may be src
+	 * @param lanes
+	 *            number of lanes, a multiple of 8
+	 * @param activation
+	 *            activation function
+	 * @param coefficient
+	 *            sigmoid coefficient
+	 */
+	void pump(int[] computeNodes, int[] geneOffsets, int[] geneSources,
+			double[] weights, double[] src, double[] dst, int lanes,
+			Activation activation, double coefficient);
+}
@@ -1,8 +1,13 @@
 package braincraft;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -19,6 +24,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 
 /**
  * @author Chris Donahue
@@ -57,6 +63,39 @@ public class Brain implements Serializable {
 	 * The sigmoid coefficient for evaluation of this Brain
 	 */
 	protected Double sigmoidCoefficient;
+	/**
+	 * The function node sums are passed through
+	 */
+	protected Activation activation;
+	/**
+	 * Whether pumpNet propagates in a single pass when the network has no
+	 * cycles
+	 */
+	protected boolean feedForward;
+	/**
+	 * Whether compiled evaluators and saveBinary use 32-bit floats for
+	 * weights and node outputs. pumpNet always computes in double.
+	 */
+	protected boolean floatPrecision;
+	/**
+	 * Non-input nodes in an order where every node comes after the nodes
+	 * feeding it. Null unless feed-forward mode is on and the network is
+	 * acyclic.
+	 */
+	protected transient NNode[] order;
+	/**
+	 * Enabled genes ending at each node in order
+	 */
+	private transient Gene[][] orderGenes;
+	/**
+	 * Start node of each gene in orderGenes
+	 */
+	private transient NNode[][] orderSources;
+	/**
+	 * Metrics of the Population this Brain came from, null if loaded from
+	 * file
+	 */
+	protected transient Metrics metrics;
 
 	// EVOLVE FIELDS:
 	/**
@@ -64,6 +103,10 @@ public class Brain implements Serializable {
 	 * identify DNA objects by Brain
 	 */
 	protected DNA dna;
+	/**
+	 * System.nanoTime() when this Brain was issued, for Metrics
+	 */
+	protected transient long issuedAt;
 
 	// CONSTRUCTORS:
 
@@ -108,6 +151,37 @@ public class Brain implements Serializable {
 		}
 
 		sigmoidCoefficient = sigmoid;
+		activation = Activation.SIGMOID;
+		if (genome != null)
+			metrics = genome.getPopulation().metrics;
+	}
+
+	/**
+	 * Constructor for the Brain of an elite copy of a tested DNA, sharing the
+	 * network already built for the original. Only used for Brains that are
+	 * never issued, since the two would share their activity.
+	 * 
+	 * @param genome
+	 *            the copy
+	 * @param b
+	 *            the original's Brain
+	 */
+	protected Brain(DNA genome, Brain b) {
+		alive = true;
+		ID = genome.ID;
+		dna = genome;
+		nodemap = b.nodemap;
+		connections = b.connections;
+		inputs = b.inputs;
+		outputs = b.outputs;
+		sigmoidCoefficient = b.sigmoidCoefficient;
+		activation = b.activation;
+		feedForward = b.feedForward;
+		floatPrecision = b.floatPrecision;
+		order = b.order;
+		orderGenes = b.orderGenes;
+		orderSources = b.orderSources;
+		metrics = genome.getPopulation().metrics;
 	}
 
 	/**
@@ -128,6 +202,95 @@ public class Brain implements Serializable {
 		}
 	}
 
+	/**
+	 * Sorts the nodes so every node comes after the nodes feeding it, using
+	 * only enabled genes.
+	 * 
+	 * @return true if the network is acyclic and was sorted
+	 */
+	private boolean sortTopologically() {
+		ArrayList<NNode> nodes = new ArrayList<NNode>();
+		nodes.addAll(nodemap.values());
+		Collections.sort(nodes);
+
+		// Count links into each non-input node, and who they come from
+		HashMap<Integer, Integer> waitingOn = new HashMap<Integer, Integer>();
+		HashMap<Integer, ArrayList<Integer>> feeds = new HashMap<Integer, ArrayList<Integer>>();
+		int nonInputs = 0;
+		for (NNode n : nodes) {
+			if (n.type == NNode.INPUT)
+				continue;
+			nonInputs++;
+			int count = 0;
+			for (Gene g : incoming(n.ID)) {
+				if (!g.enabled || getNode(g.start).type == NNode.INPUT)
+					continue;
+				count++;
+				if (!feeds.containsKey(g.start))
+					feeds.put(g.start, new ArrayList<Integer>());
+				feeds.get(g.start).add(n.ID);
+			}
+			waitingOn.put(n.ID, count);
+		}
+
+		// Kahn's algorithm
+		LinkedList<Integer> ready = new LinkedList<Integer>();
+		for (NNode n : nodes) {
+			if (n.type != NNode.INPUT && waitingOn.get(n.ID) == 0)
+				ready.add(n.ID);
+		}
+		ArrayList<NNode> sorted = new ArrayList<NNode>();
+		while (!ready.isEmpty()) {
+			int id = ready.poll();
+			sorted.add(getNode(id));
+			if (!feeds.containsKey(id))
+				continue;
+			for (int next : feeds.get(id)) {
+				int left = waitingOn.get(next) - 1;
+				waitingOn.put(next, left);
+				if (left == 0)
+					ready.add(next);
+			}
+		}
+
+		if (sorted.size() < nonInputs) {
+			order = null;
+			orderGenes = null;
+			orderSources = null;
+			return false;
+		}
+
+		order = sorted.toArray(new NNode[sorted.size()]);
+		orderGenes = new Gene[order.length][];
+		orderSources = new NNode[order.length][];
+		for (int i = 0; i < order.length; i++) {
+			ArrayList<Gene> enabled = new ArrayList<Gene>();
+			for (Gene g : incoming(order[i].ID)) {
+				if (g.enabled)
+					enabled.add(g);
+			}
+			orderGenes[i] = enabled.toArray(new Gene[enabled.size()]);
+			orderSources[i] = new NNode[enabled.size()];
+			for (int j = 0; j < enabled.size(); j++)
+				orderSources[i][j] = getNode(enabled.get(j).start);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the genes ending at a node
+	 * 
+	 * @param id
+	 *            ID of the node
+	 * @return the genes ending at that node, possibly empty
+	 */
+	private ArrayList<Gene> incoming(int id) {
+		ArrayList<Gene> ret = connections.get(id);
+		if (ret == null)
+			return new ArrayList<Gene>();
+		return ret;
+	}
+
 	// PUBLIC ACCESSOR METHODS:
 	/**
 	 * Accessor for ID
@@ -149,6 +312,75 @@ public class Brain implements Serializable {
 		return alive;
 	}
 
+	/**
+	 * Turns feed-forward evaluation on or off. With it on, an acyclic network
+	 * is sorted once and every pumpNet call propagates the inputs all the way
+	 * to the outputs in one pass, giving the value repeated pumping with the
+	 * same inputs would settle on. Networks with cycles keep the normal
+	 * one-step-per-pump behaviour. Brains loaded from serialized objects
+	 * need this called again.
+	 * 
+	 * @param ff
+	 *            true to use feed-forward evaluation when possible
+	 */
+	public void setFeedForward(boolean ff) {
+		feedForward = ff;
+		if (ff && order == null)
+			sortTopologically();
+	}
+
+	/**
+	 * Sets the function node sums are passed through. Defaults to
+	 * Activation.SIGMOID.
+	 * 
+	 * @param a
+	 *            the activation function to use
+	 */
+	public void setActivation(Activation a) {
+		activation = a;
+	}
+
+	/**
+	 * Gets the function node sums are passed through
+	 * 
+	 * @return this Brain's activation function
+	 */
+	public Activation getActivation() {
+		return activation;
+	}
+
+	/**
+	 * Sets whether this Brain is compiled and saved in 32-bit float precision
+	 * instead of double. Halves the memory traffic of a CompiledBrain and the
+	 * size of a binary genome; pumpNet is unaffected. Float evaluation stays
+	 * within 1e-6 of double on a settled sigmoid network, see BrainCompiler.
+	 * 
+	 * @param single
+	 *            true for float precision
+	 */
+	public void setFloatPrecision(boolean single) {
+		floatPrecision = single;
+	}
+
+	/**
+	 * Whether this Brain is compiled and saved in 32-bit float precision
+	 * 
+	 * @return true for float precision
+	 */
+	public boolean isFloatPrecision() {
+		return floatPrecision;
+	}
+
+	/**
+	 * Whether pumpNet settles the network in a single call. If so, there is
+	 * no need to pump more than once per set of inputs.
+	 * 
+	 * @return true if feed-forward mode is on and the network is acyclic
+	 */
+	public boolean isFeedForward() {
+		return feedForward && order != null;
+	}
+
 	/**
 	 * Prints the genetics of this Brain to a String.
 	 * 
@@ -191,6 +423,7 @@ public class Brain implements Serializable {
 	 *            output filename for this Brain
 	 */
 	public void saveObject(String file) {
+		BraincraftContext context = getContext();
 		DNA backupdna = dna;
 		dna = null;
 		try {
@@ -199,7 +432,7 @@ public class Brain implements Serializable {
 			out.writeObject(this);
 			out.close();
 		} catch (IOException e) {
-			Braincraft.report("Couldn't save object to file.");
+			context.report("Couldn't save object to file.");
 			dna = backupdna;
 		}
 		dna = backupdna;
@@ -230,6 +463,143 @@ public class Brain implements Serializable {
 		return null;
 	}
 
+	/**
+	 * Saves this Brain in the compact binary genome format, see writeBinary()
+	 * 
+	 * @param file
+	 *            output file for this Brain
+	 */
+	public void saveBinary(String file) {
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				writeBinary(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			getContext().reportError("Could not write Brain " + ID
+					+ " to location " + file + ".");
+		}
+	}
+
+	/**
+	 * Writes this Brain in the compact binary genome format: its nodes, its
+	 * genes sorted by innovation, and its evaluation settings. Weights are
+	 * stored as 4-byte floats if this Brain is in float precision, 8-byte
+	 * doubles otherwise.
+	 * 
+	 * @param out
+	 *            where to write this Brain
+	 * @throws IOException
+	 *             if out cannot be written to
+	 */
+	public void writeBinary(DataOutput out) throws IOException {
+		ArrayList<Gene> genes = new ArrayList<Gene>();
+		for (ArrayList<Gene> l : connections.values())
+			genes.addAll(l);
+		Collections.sort(genes);
+		ArrayList<NNode> nodes = new ArrayList<NNode>(nodemap.values());
+		Collections.sort(nodes);
+
+		out.writeInt(BINARY_MAGIC);
+		out.writeByte(BINARY_VERSION);
+		out.writeInt(ID);
+		out.writeDouble(sigmoidCoefficient);
+		out.writeUTF(activation.name());
+		out.writeBoolean(feedForward);
+		out.writeBoolean(floatPrecision);
+		out.writeInt(nodes.size());
+		for (NNode n : nodes) {
+			out.writeInt(n.ID);
+			out.writeByte(n.type);
+		}
+		out.writeInt(genes.size());
+		for (Gene g : genes) {
+			out.writeInt(g.innovation);
+			out.writeInt(g.start);
+			out.writeInt(g.end);
+			out.writeBoolean(g.enabled);
+			if (floatPrecision)
+				out.writeFloat((float) g.weight);
+			else
+				out.writeDouble(g.weight);
+		}
+	}
+
+	/**
+	 * Loads a Brain saved with saveBinary, with the evaluation settings it
+	 * was saved with
+	 * 
+	 * @param file
+	 *            filename for the saved Brain
+	 * @return the loaded Brain or null if the file could not be read
+	 */
+	public static Brain loadBinary(String file) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			try {
+				return readBinary(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			Braincraft.reportError("Could not load Brain from file " + file
+					+ ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a Brain written with writeBinary, with the evaluation settings it
+	 * was written with. The Brain belongs to no Population.
+	 * 
+	 * @param in
+	 *            where to read the Brain from
+	 * @return the Brain
+	 * @throws IOException
+	 *             if in cannot be read or does not hold a binary Brain
+	 */
+	public static Brain readBinary(DataInput in) throws IOException {
+		if (in.readInt() != BINARY_MAGIC || in.readByte() != BINARY_VERSION)
+			throw new IOException("not a binary Brain");
+		int id = in.readInt();
+		double sigmoid = in.readDouble();
+		Activation act;
+		try {
+			act = Activation.valueOf(in.readUTF());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("unknown activation function");
+		}
+		boolean ff = in.readBoolean();
+		boolean single = in.readBoolean();
+
+		HashMap<Integer, NNode> loadedmap = new HashMap<Integer, NNode>();
+		int numNodes = in.readInt();
+		for (int i = 0; i < numNodes; i++) {
+			NNode n = new NNode(in.readInt(), in.readByte());
+			loadedmap.put(n.ID, n);
+		}
+		ArrayList<Gene> genes = new ArrayList<Gene>();
+		int numGenes = in.readInt();
+		for (int i = 0; i < numGenes; i++) {
+			int inno = in.readInt();
+			int start = in.readInt();
+			int end = in.readInt();
+			boolean enab = in.readBoolean();
+			double weight = single ? in.readFloat() : in.readDouble();
+			genes.add(new Gene(inno, start, end, weight, enab));
+		}
+
+		Brain b = new Brain(null, id, genes, loadedmap, sigmoid);
+		b.setActivation(act);
+		b.setFloatPrecision(single);
+		b.setFeedForward(ff);
+		return b;
+	}
+
 	/**
 	 * Allows the user to save this brain as raw text data
 	 * 
@@ -242,7 +612,7 @@ public class Brain implements Serializable {
 			out.write(toString());
 			out.close();
 		} catch (IOException e) {
-			Braincraft.reportError("Could not write Brain " + ID
+			getContext().reportError("Could not write Brain " + ID
 					+ " to location " + file + ".");
 		}
 	}
@@ -302,7 +672,8 @@ public class Brain implements Serializable {
 	 * @return a loaded Brain object
 	 */
 	public static Brain loadText(String file) {
-		return loadText(file, Braincraft.sigmoidCoefficient);
+		return loadText(file,
+				Braincraft.getDefaultContext().sigmoidCoefficient);
 	}
 
 	/**
@@ -375,12 +746,26 @@ public class Brain implements Serializable {
 
 			// Report fitnesses
 			dna.fitness = fitvalue;
+			dna.testedFitness = fitvalue;
 
 			// Kill cleanly
 			alive = false;
 		}
 	}
 
+	/**
+	 * Gets the context this Brain reports to: its Population's, or the
+	 * default context if it has no Population, for example once loaded from
+	 * file
+	 * 
+	 * @return the context for this Brain's log messages
+	 */
+	protected BraincraftContext getContext() {
+		if (dna != null)
+			return dna.getPopulation().context;
+		return Braincraft.getDefaultContext();
+	}
+
 	/**
 	 * Gets the fitness of a recently evaluated Brain. Should only be called in
 	 * the context of evolution and will return null if the Brain hasn't been
@@ -405,6 +790,74 @@ public class Brain implements Serializable {
 		if (inputvals.length != inputs.length)
 			return null;
 
+		if (feedForward && order != null)
+			return pumpFeedForward(inputvals);
+
+		step(inputvals);
+
+		// Get output activations
+		double[] retarray = new double[outputs.length];
+		for (int i = 0; i < retarray.length; i++) {
+			retarray[i] = outputs[i].output;
+		}
+
+		return retarray;
+	}
+
+	/**
+	 * Pumps the network with the same inputs until no node's output changes
+	 * by more than epsilon, or maxIters pumps have been done. Since the
+	 * network's whole state is its node outputs, an epsilon of 0 gives
+	 * exactly the outputs of pumping maxIters times, usually in far fewer
+	 * pumps. Feed-forward Brains always take one pump. The number of pumps
+	 * used is recorded in the Population's Metrics.
+	 * 
+	 * @param inputvals
+	 *            input values for this neural net
+	 * @param outputvals
+	 *            filled with the output values, must be as long as the number
+	 *            of outputs
+	 * @param maxIters
+	 *            most pumps to do
+	 * @param epsilon
+	 *            largest change in a node output still counted as settled
+	 * @return the number of pumps done, or 0 if the inputs were the wrong size
+	 */
+	public int pumpUntilStable(double[] inputvals, double[] outputvals,
+			int maxIters, double epsilon) {
+		if (inputvals.length != inputs.length)
+			return 0;
+
+		int iters;
+		if (feedForward && order != null) {
+			pumpFeedForward(inputvals);
+			iters = 1;
+		} else {
+			iters = 0;
+			while (iters < maxIters) {
+				iters++;
+				if (step(inputvals) <= epsilon)
+					break;
+			}
+		}
+
+		for (int i = 0; i < outputs.length; i++) {
+			outputvals[i] = outputs[i].output;
+		}
+
+		if (metrics != null)
+			metrics.recordSettle(iters);
+		return iters;
+	}
+
+	/**
+	 * Pumps the network once, moving every signal one link forward.
+	 * 
+	 * @param inputvals
+	 *            input values for this neural net
+	 * @return the largest change in any node's output
+	 */
+	private double step(double[] inputvals) {
 		// Set input activations
 		for (int i = 0; i < inputvals.length; i++) {
 			inputs[i].activity = inputvals[i];
@@ -426,15 +879,42 @@ public class Brain implements Serializable {
 		}
 
 		// Transfer activity to output through sigmoid and set activity to 0
+		double change = 0.0;
 		for (NNode n : nodemap.values()) {
-			n.output = sigmoidFunction(n.activity);
+			double output = activationFunction(n.activity);
+			change = Math.max(change, Math.abs(output - n.output));
+			n.output = output;
 			if (n.type != NNode.INPUT)
 				n.activity = 0.0;
 		}
 
-		// DONE EVALUATING, RETURN RESULSTS
+		return change;
+	}
+
+	/**
+	 * Single pass evaluation for acyclic networks. Every node reads outputs
+	 * computed earlier in the same pass.
+	 * 
+	 * @param inputvals
+	 *            input values for this neural net
+	 * @return output values for this neural net
+	 */
+	private double[] pumpFeedForward(double[] inputvals) {
+		for (int i = 0; i < inputvals.length; i++) {
+			inputs[i].activity = inputvals[i];
+			inputs[i].output = activationFunction(inputvals[i]);
+		}
+
+		for (int i = 0; i < order.length; i++) {
+			Gene[] genes = orderGenes[i];
+			NNode[] sources = orderSources[i];
+			double sum = 0.0;
+			for (int j = 0; j < genes.length; j++)
+				sum += genes[j].weight * sources[j].output;
+			order[i].output = activationFunction(sum);
+			order[i].activity = 0.0;
+		}
 
-		// Get output activations
 		double[] retarray = new double[outputs.length];
 		for (int i = 0; i < retarray.length; i++) {
 			retarray[i] = outputs[i].output;
@@ -475,7 +955,7 @@ public class Brain implements Serializable {
 	 * @return an activation value
 	 */
 	private double calculateActivity(NNode node) {
-		Double sum = 0.0;
+		double sum = 0.0;
 		for (Gene g : connections.get(node.ID)) {
 			if (g.enabled) {
 				sum += g.weight * getNode(g.start).output;
@@ -485,14 +965,14 @@ public class Brain implements Serializable {
 	}
 
 	/**
-	 * Computes the sigmoid function on a weighted sum
+	 * Computes this Brain's activation function on a weighted sum
 	 * 
 	 * @param sum
 	 *            the sum of the node's input activations times their weights
-	 * @return a double between 0 and 1
+	 * @return the node's output, between 0 and 1 for the sigmoids
 	 */
-	private double sigmoidFunction(Double sum) {
-		return 1 / (1 + Math.pow(Math.E, sum * sigmoidCoefficient));
+	private double activationFunction(double sum) {
+		return activation.apply(sum, sigmoidCoefficient);
 	}
 
 	/**
@@ -507,6 +987,26 @@ public class Brain implements Serializable {
 	}
 
 	// INTERFACE HELPERS:
+	/**
+	 * Reads a serialized Brain, giving Brains saved before activation
+	 * functions existed the original sigmoid.
+	 * 
+	 * @param in
+	 *            stream to read from
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		if (activation == null)
+			activation = Activation.SIGMOID;
+	}
+
+	/**
+	 * First bytes of a binary Brain file, "BCBR"
+	 */
+	private static final int BINARY_MAGIC = 0x42434252;
+	private static final byte BINARY_VERSION = 1;
+
 	/**
 	 * Version ID for serialization
 	 */
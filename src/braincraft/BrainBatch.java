@@ -0,0 +1,290 @@
+package braincraft;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * @author Chris Donahue
+ *
+ *         A BrainBatch evaluates many Brains with the same topology at once.
+ *         Such Brains differ only in their weights, so a pump is a dense
+ *         computation where every node's sum is worked out for all Brains
+ *         (lanes) together. When the jdk.incubator.vector module is present
+ *         (run with --add-modules jdk.incubator.vector) the lanes are computed
+ *         with SIMD instructions, otherwise with plain loops.
+ *
+ *         A batch pumps exactly like Brain.pumpNet: one step per pump, or one
+ *         full pass if every Brain is feed-forward. It keeps its own node
+ *         outputs and never touches the Brains' state. The scalar kernel gives
+ *         the same outputs as Brain.pumpNet bit for bit. The vector kernel
+ *         computes sigmoids with a vectorized exp, within 1e-15 of them, except
+ *         that FAST_SIGMOID comes out exact instead of within its table error.
+ */
+public class BrainBatch {
+	/**
+	 * Why the vector kernel could not be loaded, null if it was or was not
+	 * tried. Set while DEFAULT_KERNEL is loaded, so it has no initializer.
+	 */
+	private static String vectorKernelError;
+	/**
+	 * Kernel used when none is asked for: vector if available
+	 */
+	private static final BatchKernel DEFAULT_KERNEL = loadKernel(true);
+	/**
+	 * Contexts already told about vectorKernelError
+	 */
+	private static final Set<BraincraftContext> toldContexts = Collections
+			.newSetFromMap(new WeakHashMap<BraincraftContext, Boolean>());
+	/**
+	 * Lanes are padded to a multiple of this, enough for 512-bit vectors
+	 */
+	private static final int LANE_MULTIPLE = 8;
+
+	// FIELDS:
+	/**
+	 * The Brains in this batch, one per lane
+	 */
+	private final Brain[] brains;
+	/**
+	 * Number of lanes, brains.length rounded up
+	 */
+	private final int lanes;
+	/**
+	 * The shared topology
+	 */
+	private final BrainLayout layout;
+	/**
+	 * Weight of gene g for lane l at g * lanes + l
+	 */
+	private final double[] weights;
+	/**
+	 * Output of node n for lane l at n * lanes + l, and the buffer the next
+	 * step is written to
+	 */
+	private double[] state;
+	private double[] next;
+	private final BatchKernel kernel;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs a batch of Brains that all have the same topology, feed
+	 * forward setting, activation function and sigmoid coefficient, using
+	 * SIMD if available.
+	 *
+	 * @param batch
+	 *            the Brains to evaluate together
+	 * @throws IllegalArgumentException
+	 *             if the Brains do not share a topology
+	 */
+	public BrainBatch(List<Brain> batch) {
+		this(batch, true);
+	}
+
+	/**
+	 * Constructs a batch of Brains that all have the same topology, feed
+	 * forward setting, activation function and sigmoid coefficient.
+	 *
+	 * @param batch
+	 *            the Brains to evaluate together
+	 * @param vectorize
+	 *            false to always use the scalar kernel
+	 * @throws IllegalArgumentException
+	 *             if the Brains do not share a topology
+	 */
+	public BrainBatch(List<Brain> batch, boolean vectorize) {
+		if (batch.isEmpty())
+			throw new IllegalArgumentException("A BrainBatch needs a Brain");
+		brains = batch.toArray(new Brain[batch.size()]);
+		Brain first = brains[0];
+		String key = BrainLayout.topologyKey(first);
+		for (Brain b : brains) {
+			if (!BrainLayout.topologyKey(b).equals(key))
+				throw new IllegalArgumentException("Brain " + b.ID
+						+ " does not share the topology of Brain " + first.ID);
+		}
+
+		lanes = (brains.length + LANE_MULTIPLE - 1) / LANE_MULTIPLE
+				* LANE_MULTIPLE;
+		layout = new BrainLayout(first);
+		kernel = vectorize ? DEFAULT_KERNEL : loadKernel(false);
+		if (vectorize && vectorKernelError != null)
+			reportVectorKernelError(first.getContext());
+
+		// Gather every Brain's weights into lanes
+		weights = new double[layout.geneSources.length * lanes];
+		for (int l = 0; l < brains.length; l++) {
+			double[] w = layout.weightsOf(brains[l]);
+			for (int g = 0; g < w.length; g++)
+				weights[g * lanes + l] = w[g];
+		}
+
+		state = new double[layout.numNodes * lanes];
+		next = layout.feedForward ? state : new double[layout.numNodes
+				* lanes];
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Splits Brains into batches that share a topology, keeping the order
+	 * Brains first appear in.
+	 *
+	 * @param all
+	 *            the Brains to group
+	 * @return one BrainBatch per topology
+	 */
+	public static List<BrainBatch> group(Collection<Brain> all) {
+		LinkedHashMap<String, List<Brain>> groups = new LinkedHashMap<String, List<Brain>>();
+		for (Brain b : all) {
+			String key = BrainLayout.topologyKey(b);
+			if (!groups.containsKey(key))
+				groups.put(key, new ArrayList<Brain>());
+			groups.get(key).add(b);
+		}
+		ArrayList<BrainBatch> ret = new ArrayList<BrainBatch>();
+		for (List<Brain> g : groups.values())
+			ret.add(new BrainBatch(g));
+		return ret;
+	}
+
+	/**
+	 * Whether SIMD evaluation is available in this JVM
+	 *
+	 * @return true if the jdk.incubator.vector module could be loaded
+	 */
+	public static boolean isVectorAvailable() {
+		return !(DEFAULT_KERNEL instanceof ScalarBatchKernel);
+	}
+
+	/**
+	 * Whether this batch is evaluated with SIMD
+	 *
+	 * @return true if the vector kernel is used
+	 */
+	public boolean isVectorized() {
+		return !(kernel instanceof ScalarBatchKernel);
+	}
+
+	/**
+	 * Gets the number of Brains in this batch
+	 *
+	 * @return number of Brains
+	 */
+	public int size() {
+		return brains.length;
+	}
+
+	/**
+	 * Gets a Brain of this batch
+	 *
+	 * @param lane
+	 *            the Brain's position in the batch
+	 * @return the Brain
+	 */
+	public Brain getBrain(int lane) {
+		return brains[lane];
+	}
+
+	/**
+	 * Pumps every Brain in the batch once, the same as calling pumpNet on
+	 * each of them.
+	 *
+	 * @param inputvals
+	 *            inputvals[lane] are the inputs for that Brain
+	 * @param outputvals
+	 *            outputvals[lane] is filled with that Brain's outputs
+	 */
+	public void pumpNet(double[][] inputvals, double[][] outputvals) {
+		// Inputs are read in their new state only by a feed-forward pass
+		if (layout.feedForward)
+			setInputs(inputvals, state);
+
+		kernel.pump(layout.computeNodes, layout.geneOffsets,
+				layout.geneSources, weights, state, next, lanes,
+				layout.activation, layout.coefficient);
+
+		if (!layout.feedForward) {
+			setInputs(inputvals, next);
+			double[] swap = state;
+			state = next;
+			next = swap;
+		}
+
+		for (int l = 0; l < brains.length; l++) {
+			for (int o = 0; o < layout.outputNodes.length; o++)
+				outputvals[l][o] = state[layout.outputNodes[o] * lanes + l];
+		}
+	}
+
+	/**
+	 * Clears all node outputs, like Brain.clearActivity on every Brain
+	 */
+	public void clearActivity() {
+		Arrays.fill(state, 0.0);
+		Arrays.fill(next, 0.0);
+	}
+
+	// HELPERS:
+	/**
+	 * Writes the activated inputs into a state buffer
+	 *
+	 * @param inputvals
+	 *            inputs per lane
+	 * @param buffer
+	 *            the buffer to write to
+	 */
+	private void setInputs(double[][] inputvals, double[] buffer) {
+		for (int l = 0; l < brains.length; l++) {
+			for (int i = 0; i < layout.inputNodes.length; i++)
+				buffer[layout.inputNodes[i] * lanes + l] = layout.activation
+						.apply(inputvals[l][i], layout.coefficient);
+		}
+	}
+
+	/**
+	 * Loads the vector kernel if asked and possible, the scalar one otherwise.
+	 * The vector kernel is only referenced by name, so this class loads fine
+	 * without the incubator module.
+	 *
+	 * @param vector
+	 *            whether to try the vector kernel
+	 * @return a kernel
+	 */
+	private static BatchKernel loadKernel(boolean vector) {
+		if (vector
+				&& ModuleLayer.boot().findModule("jdk.incubator.vector")
+						.isPresent()) {
+			try {
+				return (BatchKernel) Class
+						.forName("braincraft.VectorBatchKernel")
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				vectorKernelError = "Could not load the vector kernel: " + e;
+			} catch (LinkageError e) {
+				vectorKernelError = "Could not load the vector kernel: " + e;
+			}
+		}
+		return new ScalarBatchKernel();
+	}
+
+	/**
+	 * Reports why the vector kernel could not be loaded, once to each
+	 * context that batches Brains. The kernel is loaded before any Population
+	 * uses it, so the error waits for a Brain to say whose log it belongs in.
+	 *
+	 * @param context
+	 *            context of the Brains being batched
+	 */
+	private static void reportVectorKernelError(BraincraftContext context) {
+		synchronized (toldContexts) {
+			if (!toldContexts.add(context))
+				return;
+		}
+		context.reportError(vectorKernelError);
+	}
+}
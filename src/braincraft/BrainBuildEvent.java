@@ -0,0 +1,27 @@
+package braincraft;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         Flight Recorder event for turning a batch of DNA into Brains in
+ *         getBrain() or getBrains().
+ */
+@Name("braincraft.BrainBuild")
+@Label("Brain Build")
+@Category({ "Braincraft", "Brain" })
+@Description("Building a batch of Brains out of DNA")
+class BrainBuildEvent extends jdk.jfr.Event {
+	@Label("Population")
+	int populationID;
+
+	@Label("Generation")
+	int generation;
+
+	@Label("Brains")
+	int count;
+}
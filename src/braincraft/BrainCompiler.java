@@ -0,0 +1,481 @@
+package braincraft;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Chris Donahue
+ *
+ *         A BrainCompiler turns Brains into CompiledBrains: for each network it
+ *         writes the bytecode of a class whose pump method is the whole
+ *         network as straight-line code, with the weights as constants and
+ *         every node read from a fixed array index, and loads it as a hidden
+ *         class. The JIT then sees one short method per network with no loops,
+ *         no lookups and nothing to dereference but the state arrays.
+ *
+ *         Generated classes are cached by genome: Brains with the same
+ *         topology and weights share one class, so compiling the same champion
+ *         again (or a population full of clones) costs a map lookup. The cache
+ *         keeps the most recently used classes; evicted ones are unloaded once
+ *         no CompiledBrain uses them.
+ *
+ *         Networks too large for one method (more than 32767 nodes, or about
+ *         6000 genes) get an interpreted kernel over the same arrays instead.
+ *         Either way the outputs are identical to Brain.pumpNet bit for bit.
+ *
+ *         Brains in float precision (Brain.setFloatPrecision) are compiled to
+ *         float weights, sums and node outputs, with the activation function
+ *         still computed in double. Settling evolving XOR and FoodExperiment
+ *         networks, float outputs stayed within 1e-6 of double with the
+ *         sigmoids, 2e-6 with RELU and 2e-5 with the steeper TANH, and none
+ *         landed on the other side of 0.5. STEP can only differ where a sum is
+ *         within float rounding of 0. aegis.bench.PrecisionCheck in the
+ *         benchmarks fails if these bounds are exceeded.
+ */
+public class BrainCompiler {
+	/**
+	 * Classes cached when no size is given
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+	/**
+	 * Largest node index the generated code can address with sipush
+	 */
+	private static final int MAX_NODES = Short.MAX_VALUE;
+	/**
+	 * Largest pump method the class file format allows
+	 */
+	private static final int MAX_CODE = 65535;
+	/**
+	 * Leaves room in the constant pool for the fixed entries
+	 */
+	private static final int MAX_CONSTANTS = 65000;
+
+	// FIELDS:
+	/**
+	 * Compiled kernels by genome, least recently used first
+	 */
+	private final LinkedHashMap<Key, NetworkKernel> cache;
+	private final int cacheSize;
+	private long hits;
+	private long misses;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs a compiler caching DEFAULT_CACHE_SIZE classes
+	 */
+	public BrainCompiler() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructs a compiler
+	 *
+	 * @param cacheSize
+	 *            most generated classes to keep, 0 to never reuse them
+	 */
+	public BrainCompiler(int cacheSize) {
+		this.cacheSize = cacheSize;
+		cache = new LinkedHashMap<Key, NetworkKernel>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Key, NetworkKernel> e) {
+				return size() > BrainCompiler.this.cacheSize;
+			}
+		};
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Compiles a Brain. The CompiledBrain starts with all node outputs at 0
+	 * and does not see later changes to the Brain.
+	 *
+	 * @param b
+	 *            the Brain to compile
+	 * @return a CompiledBrain that pumps like b
+	 */
+	public CompiledBrain compile(Brain b) {
+		BrainLayout layout = new BrainLayout(b);
+		double[] weights = layout.weightsOf(b);
+		boolean single = b.isFloatPrecision();
+		Key key = new Key(BrainLayout.topologyKey(b), weights, single);
+
+		NetworkKernel kernel;
+		synchronized (cache) {
+			kernel = cache.get(key);
+			if (kernel != null)
+				hits++;
+			else
+				misses++;
+		}
+		if (kernel == null) {
+			kernel = generate(layout, weights, single, b.getContext());
+			synchronized (cache) {
+				cache.put(key, kernel);
+			}
+		}
+		return new CompiledBrain(b, layout, kernel);
+	}
+
+	/**
+	 * Gets how many compile() calls reused a cached class
+	 *
+	 * @return number of cache hits
+	 */
+	public long getCacheHits() {
+		synchronized (cache) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Gets how many compile() calls generated a new class
+	 *
+	 * @return number of cache misses
+	 */
+	public long getCacheMisses() {
+		synchronized (cache) {
+			return misses;
+		}
+	}
+
+	/**
+	 * Forgets every cached class
+	 */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	// HELPERS:
+	/**
+	 * Generates and loads a kernel for one network, or falls back to an
+	 * interpreted one if the network does not fit in a method
+	 *
+	 * @param layout
+	 *            the network's topology
+	 * @param weights
+	 *            its weights
+	 * @param single
+	 *            true for float precision
+	 * @param context
+	 *            where to report a kernel that could not be loaded
+	 * @return a BrainKernel, or a FloatBrainKernel if single
+	 */
+	private static NetworkKernel generate(BrainLayout layout, double[] weights,
+			boolean single, BraincraftContext context) {
+		if (layout.numNodes <= MAX_NODES) {
+			byte[] bytes = new ClassWriter(layout, weights, single).toBytes();
+			if (bytes != null) {
+				try {
+					MethodHandles.Lookup lookup = MethodHandles.lookup()
+							.defineHiddenClass(bytes, true);
+					return (NetworkKernel) lookup.lookupClass()
+							.getDeclaredConstructor().newInstance();
+				} catch (ReflectiveOperationException e) {
+					context.reportError("Could not load a compiled Brain: "
+							+ e);
+				} catch (LinkageError e) {
+					context.reportError("Could not load a compiled Brain: "
+							+ e);
+				}
+			}
+		}
+		return new InterpretedKernel(layout, weights);
+	}
+
+	/**
+	 * Cache key: a topology, the exact bits of its weights and the precision
+	 */
+	private static final class Key {
+		private final String topology;
+		private final long[] weightBits;
+		private final boolean single;
+		private final int hash;
+
+		Key(String topology, double[] weights, boolean single) {
+			this.topology = topology;
+			this.single = single;
+			weightBits = new long[weights.length];
+			for (int i = 0; i < weights.length; i++)
+				weightBits[i] = Double.doubleToRawLongBits(weights[i]);
+			hash = 31 * (31 * topology.hashCode() + Arrays.hashCode(weightBits))
+					+ (single ? 1 : 0);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return hash == k.hash && single == k.single
+					&& topology.equals(k.topology)
+					&& Arrays.equals(weightBits, k.weightBits);
+		}
+	}
+
+	/**
+	 * Writes the class file of a BrainKernel for one network. The class is
+	 *
+	 * <pre>
+	 * final class CompiledKernel implements BrainKernel {
+	 * 	public void pump(double[] in, double[] src, double[] dst) {
+	 * 		dst[3] = ACTIVATION.apply(in[0], coefficient);
+	 * 		...
+	 * 		dst[5] = ACTIVATION.apply(0.0 + w0 * src[3] + w1 * src[4], coefficient);
+	 * 		...
+	 * 	}
+	 * }
+	 * </pre>
+	 *
+	 * with one line per node, summing in the order Brain.pumpNet does. In float
+	 * precision the class implements FloatBrainKernel, the weights are float
+	 * constants, src and dst are float[] and each sum is widened for the
+	 * activation function and its result narrowed. There are no branches, so
+	 * no stack map frames are needed.
+	 */
+	private static final class ClassWriter {
+		// Opcodes used
+		private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b,
+				ALOAD_2 = 0x2c, ALOAD_3 = 0x2d, SIPUSH = 0x11, DCONST_0 = 0x0e,
+				LDC2_W = 0x14, DALOAD = 0x31, DASTORE = 0x52, DMUL = 0x6b,
+				DADD = 0x63, GETSTATIC = 0xb2, INVOKEVIRTUAL = 0xb6,
+				INVOKESPECIAL = 0xb7, RETURN = 0xb1, FCONST_0 = 0x0b,
+				LDC_W = 0x13, FALOAD = 0x30, FASTORE = 0x51, FMUL = 0x6a,
+				FADD = 0x62, F2D = 0x8d, D2F = 0x90;
+		// Constant pool tags
+		private static final int UTF8 = 1, FLOAT = 4, DOUBLE = 6, CLASS = 7,
+				FIELDREF = 9, METHODREF = 10, NAME_AND_TYPE = 12;
+
+		private final BrainLayout layout;
+		private final double[] weights;
+		private final boolean single;
+		private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		private final DataOutputStream pool = new DataOutputStream(poolBytes);
+		private final HashMap<Long, Integer> doubles = new HashMap<Long, Integer>();
+		private final HashMap<Integer, Integer> floats = new HashMap<Integer, Integer>();
+		private int poolCount = 1;
+
+		ClassWriter(BrainLayout layout, double[] weights, boolean single) {
+			this.layout = layout;
+			this.weights = weights;
+			this.single = single;
+		}
+
+		/**
+		 * Writes the class file
+		 *
+		 * @return the class file bytes, or null if the network is too large
+		 */
+		byte[] toBytes() {
+			try {
+				int thisClass = classConstant("braincraft/CompiledKernel");
+				int superClass = classConstant("java/lang/Object");
+				int kernelClass = classConstant(single ? "braincraft/FloatBrainKernel"
+						: "braincraft/BrainKernel");
+				int init = utf8("<init>");
+				int voidDesc = utf8("()V");
+				int objectInit = memberConstant(METHODREF, superClass, init,
+						voidDesc);
+				int activationClass = classConstant("braincraft/Activation");
+				int activation = memberConstant(FIELDREF, activationClass,
+						utf8(layout.activation.name()),
+						utf8("Lbraincraft/Activation;"));
+				int apply = memberConstant(METHODREF, activationClass,
+						utf8("apply"), utf8("(DD)D"));
+				int pump = utf8("pump");
+				int pumpDesc = utf8(single ? "([D[F[F)V" : "([D[D[D)V");
+				int code = utf8("Code");
+				int coefficient = doubleConstant(layout.coefficient);
+
+				// pump(in, src, dst): locals 1, 2 and 3
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(body);
+				for (int i = 0; i < layout.inputNodes.length; i++) {
+					out.writeByte(ALOAD_3);
+					sipush(out, layout.inputNodes[i]);
+					out.writeByte(GETSTATIC);
+					out.writeShort(activation);
+					out.writeByte(ALOAD_1);
+					sipush(out, i);
+					out.writeByte(DALOAD);
+					out.writeByte(LDC2_W);
+					out.writeShort(coefficient);
+					out.writeByte(INVOKEVIRTUAL);
+					out.writeShort(apply);
+					store(out);
+				}
+				for (int k = 0; k < layout.computeNodes.length; k++) {
+					out.writeByte(ALOAD_3);
+					sipush(out, layout.computeNodes[k]);
+					out.writeByte(GETSTATIC);
+					out.writeShort(activation);
+					out.writeByte(single ? FCONST_0 : DCONST_0);
+					for (int g = layout.geneOffsets[k]; g < layout.geneOffsets[k + 1]; g++) {
+						if (single) {
+							out.writeByte(LDC_W);
+							out.writeShort(floatConstant((float) weights[g]));
+						} else {
+							out.writeByte(LDC2_W);
+							out.writeShort(doubleConstant(weights[g]));
+						}
+						out.writeByte(ALOAD_2);
+						sipush(out, layout.geneSources[g]);
+						out.writeByte(single ? FALOAD : DALOAD);
+						out.writeByte(single ? FMUL : DMUL);
+						out.writeByte(single ? FADD : DADD);
+					}
+					if (single)
+						out.writeByte(F2D);
+					out.writeByte(LDC2_W);
+					out.writeShort(coefficient);
+					out.writeByte(INVOKEVIRTUAL);
+					out.writeShort(apply);
+					store(out);
+					if (body.size() > MAX_CODE || poolCount > MAX_CONSTANTS)
+						return null;
+				}
+				out.writeByte(RETURN);
+				if (body.size() > MAX_CODE || poolCount > MAX_CONSTANTS)
+					return null;
+
+				ByteArrayOutputStream file = new ByteArrayOutputStream();
+				DataOutputStream cf = new DataOutputStream(file);
+				cf.writeInt(0xCAFEBABE);
+				cf.writeShort(0);
+				cf.writeShort(61); // Java 17
+				cf.writeShort(poolCount);
+				pool.flush();
+				poolBytes.writeTo(cf);
+				cf.writeShort(0x0030); // ACC_FINAL | ACC_SUPER
+				cf.writeShort(thisClass);
+				cf.writeShort(superClass);
+				cf.writeShort(1);
+				cf.writeShort(kernelClass);
+				cf.writeShort(0); // fields
+				cf.writeShort(2); // methods
+
+				// public <init>() { super(); }
+				byte[] initCode = { (byte) ALOAD_0, (byte) INVOKESPECIAL,
+						(byte) (objectInit >> 8), (byte) objectInit,
+						(byte) RETURN };
+				writeMethod(cf, init, voidDesc, code, 1, 1, initCode);
+				// the stack peaks at dst, index, activation, sum, weight,
+				// output: 1 + 1 + 1 + 2 + 2 + 2, or 7 with floats
+				writeMethod(cf, pump, pumpDesc, code, single ? 7 : 9, 4,
+						body.toByteArray());
+
+				cf.writeShort(0); // attributes
+				cf.flush();
+				return file.toByteArray();
+			} catch (IOException e) {
+				// ByteArrayOutputStreams do not throw
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Writes a public method with a Code attribute
+		 */
+		private static void writeMethod(DataOutputStream cf, int name,
+				int desc, int code, int maxStack, int maxLocals, byte[] bytes)
+				throws IOException {
+			cf.writeShort(0x0001); // ACC_PUBLIC
+			cf.writeShort(name);
+			cf.writeShort(desc);
+			cf.writeShort(1);
+			cf.writeShort(code);
+			cf.writeInt(12 + bytes.length);
+			cf.writeShort(maxStack);
+			cf.writeShort(maxLocals);
+			cf.writeInt(bytes.length);
+			cf.write(bytes);
+			cf.writeShort(0); // exception table
+			cf.writeShort(0); // attributes
+		}
+
+		/**
+		 * Stores an activation function result into dst
+		 */
+		private void store(DataOutputStream out) throws IOException {
+			if (single) {
+				out.writeByte(D2F);
+				out.writeByte(FASTORE);
+			} else {
+				out.writeByte(DASTORE);
+			}
+		}
+
+		private static void sipush(DataOutputStream out, int value)
+				throws IOException {
+			out.writeByte(SIPUSH);
+			out.writeShort(value);
+		}
+
+		private int utf8(String s) throws IOException {
+			pool.writeByte(UTF8);
+			pool.writeUTF(s);
+			return poolCount++;
+		}
+
+		private int classConstant(String name) throws IOException {
+			int n = utf8(name);
+			pool.writeByte(CLASS);
+			pool.writeShort(n);
+			return poolCount++;
+		}
+
+		private int memberConstant(int tag, int owner, int name, int desc)
+				throws IOException {
+			pool.writeByte(NAME_AND_TYPE);
+			pool.writeShort(name);
+			pool.writeShort(desc);
+			int nameAndType = poolCount++;
+			pool.writeByte(tag);
+			pool.writeShort(owner);
+			pool.writeShort(nameAndType);
+			return poolCount++;
+		}
+
+		/**
+		 * Gets the constant pool entry of a float, adding it if new
+		 */
+		private int floatConstant(float f) throws IOException {
+			int bits = Float.floatToRawIntBits(f);
+			Integer index = floats.get(bits);
+			if (index == null) {
+				pool.writeByte(FLOAT);
+				pool.writeInt(bits);
+				index = poolCount++;
+				floats.put(bits, index);
+			}
+			return index;
+		}
+
+		/**
+		 * Gets the constant pool entry of a double, adding it if new. Doubles
+		 * take two entries.
+		 */
+		private int doubleConstant(double d) throws IOException {
+			long bits = Double.doubleToRawLongBits(d);
+			Integer index = doubles.get(bits);
+			if (index == null) {
+				pool.writeByte(DOUBLE);
+				pool.writeLong(bits);
+				index = poolCount;
+				poolCount += 2;
+				doubles.put(bits, index);
+			}
+			return index;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         One pump of a single network whose weights and topology are fixed,
+ *         over node outputs held in arrays numbered as in BrainLayout.
+ *         BrainCompiler generates one implementation per network.
+ */
+interface BrainKernel extends NetworkKernel {
+	/**
+	 * Writes the activated inputs to dst, then computes every non-input node
+	 * from src into dst. Called with src == dst for a feed-forward pass.
+	 * 
+	 * @param inputvals
+	 *            input values
+	 * @param src
+	 *            node outputs read by the genes
+	 * @param dst
+	 *            where computed outputs are written, may be src
+	 */
+	void pump(double[] inputvals, double[] src, double[] dst);
+}
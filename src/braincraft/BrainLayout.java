@@ -0,0 +1,192 @@
+package braincraft;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * @author Chris Donahue
+ *
+ *         The topology of a Brain flattened into int arrays: nodes numbered
+ *         0..n-1 by ID, the non-input nodes in the order a pump computes them,
+ *         and the source node of every enabled gene into each of them, in the
+ *         order Brain.pumpNet sums them. Shared by the evaluators that work on
+ *         arrays instead of NNode objects (BrainBatch and BrainCompiler).
+ *
+ *         A pump computes every node in computeNodes from the node outputs:
+ *         the previous pump's outputs for a recurrent Brain, or the outputs of
+ *         the same pass for a feed-forward one, where computeNodes is in
+ *         topological order.
+ */
+class BrainLayout {
+	/**
+	 * Number of nodes
+	 */
+	final int numNodes;
+	/**
+	 * Node index of each input, in Brain.inputs order
+	 */
+	final int[] inputNodes;
+	/**
+	 * Node index of each output, in Brain.outputs order
+	 */
+	final int[] outputNodes;
+	/**
+	 * Non-input nodes in the order they are computed
+	 */
+	final int[] computeNodes;
+	/**
+	 * Genes into computeNodes[k] are geneOffsets[k] to geneOffsets[k + 1] - 1
+	 */
+	final int[] geneOffsets;
+	/**
+	 * Node index each gene starts from
+	 */
+	final int[] geneSources;
+	/**
+	 * Whether a pump is one full feed-forward pass
+	 */
+	final boolean feedForward;
+	final Activation activation;
+	final double coefficient;
+	/**
+	 * IDs of the nodes in computeNodes, for reading weights out of Brains
+	 */
+	private final int[] computeIDs;
+
+	/**
+	 * Flattens a Brain's topology
+	 *
+	 * @param b
+	 *            the Brain
+	 */
+	BrainLayout(Brain b) {
+		feedForward = b.isFeedForward();
+		activation = b.activation;
+		coefficient = b.sigmoidCoefficient;
+
+		// Number the nodes by ID
+		ArrayList<NNode> nodes = sortedNodes(b);
+		numNodes = nodes.size();
+		HashMap<Integer, Integer> index = new HashMap<Integer, Integer>();
+		for (int i = 0; i < nodes.size(); i++)
+			index.put(nodes.get(i).ID, i);
+
+		inputNodes = new int[b.inputs.length];
+		for (int i = 0; i < inputNodes.length; i++)
+			inputNodes[i] = index.get(b.inputs[i].ID);
+		outputNodes = new int[b.outputs.length];
+		for (int i = 0; i < outputNodes.length; i++)
+			outputNodes[i] = index.get(b.outputs[i].ID);
+
+		// Nodes to compute, in topological order if feed-forward
+		ArrayList<NNode> compute = new ArrayList<NNode>();
+		if (feedForward) {
+			for (NNode n : b.order)
+				compute.add(n);
+		} else {
+			for (NNode n : nodes) {
+				if (n.type != NNode.INPUT)
+					compute.add(n);
+			}
+		}
+
+		computeNodes = new int[compute.size()];
+		computeIDs = new int[compute.size()];
+		geneOffsets = new int[compute.size() + 1];
+		ArrayList<Integer> sources = new ArrayList<Integer>();
+		for (int k = 0; k < compute.size(); k++) {
+			NNode n = compute.get(k);
+			computeNodes[k] = index.get(n.ID);
+			computeIDs[k] = n.ID;
+			geneOffsets[k] = sources.size();
+			for (Gene g : enabledGenes(b, n.ID))
+				sources.add(index.get(g.start));
+		}
+		geneOffsets[compute.size()] = sources.size();
+		geneSources = new int[sources.size()];
+		for (int g = 0; g < geneSources.length; g++)
+			geneSources[g] = sources.get(g);
+	}
+
+	/**
+	 * Gets the weights of a Brain with this layout's topology, in gene order
+	 *
+	 * @param b
+	 *            a Brain with the same topology key
+	 * @return one weight per gene
+	 */
+	double[] weightsOf(Brain b) {
+		double[] ret = new double[geneSources.length];
+		int g = 0;
+		for (int id : computeIDs) {
+			for (Gene gene : enabledGenes(b, id))
+				ret[g++] = gene.weight;
+		}
+		return ret;
+	}
+
+	/**
+	 * Describes everything about a Brain except its weights. Brains with the
+	 * same key have the same layout.
+	 *
+	 * @param b
+	 *            the Brain
+	 * @return a String that is equal for Brains of the same topology
+	 */
+	static String topologyKey(Brain b) {
+		StringBuilder key = new StringBuilder();
+		key.append(b.isFeedForward()).append(' ').append(b.activation)
+				.append(' ').append(b.sigmoidCoefficient);
+		for (NNode n : b.inputs)
+			key.append(" i").append(n.ID);
+		for (NNode n : b.outputs)
+			key.append(" o").append(n.ID);
+		for (NNode n : sortedNodes(b)) {
+			key.append(" n").append(n.ID).append(':').append(n.type);
+			for (Gene g : enabledGenes(b, n.ID))
+				key.append(',').append(g.start);
+		}
+		if (b.isFeedForward()) {
+			key.append(" order");
+			for (NNode n : b.order)
+				key.append(' ').append(n.ID);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Gets a Brain's nodes sorted by ID
+	 *
+	 * @param b
+	 *            the Brain
+	 * @return the sorted nodes
+	 */
+	private static ArrayList<NNode> sortedNodes(Brain b) {
+		ArrayList<NNode> nodes = new ArrayList<NNode>();
+		nodes.addAll(b.nodemap.values());
+		Collections.sort(nodes);
+		return nodes;
+	}
+
+	/**
+	 * Gets the enabled genes ending at a node, in the order pumpNet sums them
+	 *
+	 * @param b
+	 *            the Brain
+	 * @param id
+	 *            the node ID
+	 * @return the enabled genes
+	 */
+	private static ArrayList<Gene> enabledGenes(Brain b, int id) {
+		ArrayList<Gene> ret = new ArrayList<Gene>();
+		ArrayList<Gene> all = b.connections.get(id);
+		if (all == null)
+			return ret;
+		for (Gene g : all) {
+			if (g.enabled)
+				ret.add(g);
+		}
+		return ret;
+	}
+}
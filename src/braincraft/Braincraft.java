@@ -1,12 +1,7 @@
 package braincraft;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
 
-//import java.util.Random;
-
 /**
  * @author Chris Donahue
  * 
@@ -14,41 +9,37 @@ import java.util.ArrayList;
  *         testing of genetic algorithms/population control algorithms. Heavily
  *         inspired by NEAT: http://www.cs.ucf.edu/~kstanley/neat.html
  * 
- *         This class is a singleton to provide storage and convenience across
- *         the library. Stores default values for all parameters.
+ *         This class is the static face of the library. Its methods act on a
+ *         default BraincraftContext, which holds the parameter defaults, logs
+ *         and statistics of every Population created without a context of its
+ *         own.
  */
 public class Braincraft {
-	// ALL POPULATION PARAMETER DEFAULTS:
-	protected static int populationSize = 100;
-	protected static double sigmoidCoefficient = -4.9;
-	protected static double perWeightMutationRate = 0.9;
-	protected static double weightMutationRate = 0.8;
-	protected static double linkMutationRate = 0.1;
-	protected static double linkDisableRate = 0.1;
-	protected static double nodeMutationRate = 0.05;
-	protected static double disabledRate = 0.75;
-	protected static double inheritFromHigherFitRate = 0.8;
-
-	// POPULATION SUBCLASS PARAMETER DEFAULTS:
-	protected static double c1 = 1.0;
-	protected static double c2 = 1.0;
-	protected static double c3 = 0.4;
-	protected static double tribeCompatibilityThreshold = 3.0;
-	protected static double percentageOfTribeToKillBeforeReproduction = 0.5;
-	protected static double survivalRatePerGeneration = 0.2;
-
 	// STATISTICS FIELDS:
+	/**
+	 * Whether the default context records statistics for writeStats()
+	 */
 	public static boolean gatherStats = false;
-	protected static ArrayList<DNA> allDNA = new ArrayList<DNA>();
-	protected static ArrayList<String> genetics = new ArrayList<String>();
-	protected static ArrayList<Double> generationAverages = new ArrayList<Double>();
 
 	// FIELDS:
+	/**
+	 * Whether the default context prints log messages
+	 */
 	public static boolean logToSystemOut = false;
-	// private static Random rng = new Random();
-	private static ArrayList<Population> society = new ArrayList<Population>();
-	private static ArrayList<String> log = new ArrayList<String>();
-	private static ArrayList<String> errorLog = new ArrayList<String>();
+	/**
+	 * The context of Populations created without one
+	 */
+	private static final BraincraftContext defaultContext = new BraincraftContext() {
+		// Qualified, since the context's own fields of the same names hide
+		// the static ones in here
+		protected boolean isGatheringStats() {
+			return Braincraft.gatherStats;
+		}
+
+		protected boolean isLoggingToSystemOut() {
+			return Braincraft.logToSystemOut;
+		}
+	};
 
 	// CONSTRUCTORS (to avoid public construction)
 	/**
@@ -59,117 +50,87 @@ public class Braincraft {
 
 	// PUBLIC METHODS:
 	/**
-	 * Writes the log messages to a specified file
+	 * Gets the context shared by every Population created without one. The
+	 * static methods of this class act on it.
+	 * 
+	 * @return the default context
+	 */
+	public static BraincraftContext getDefaultContext() {
+		return defaultContext;
+	}
+
+	/**
+	 * Writes the default context's log messages to a specified file
 	 * 
 	 * @param file
 	 *            the file to write to
 	 * @return 1 if successful, -1 if unsuccessful
 	 */
 	public static int writeLog(String file) {
-		return writeStringToFile(listToString(log), file);
+		return defaultContext.writeLog(file);
 	}
 
 	/**
-	 * Writes the visualizer statistics to a specified file
+	 * Writes the default context's visualizer statistics to a specified file
 	 * 
 	 * @param file
 	 *            the file to write to
 	 * @return 1 if successful, -1 if unsuccessful
 	 */
 	public static int writeStats(String file) {
-		return writeStringToFile(listToString(allDNA) + listToString(genetics)
-				+ listToString(generationAverages), file);
+		return defaultContext.writeStats(file);
 	}
 
 	/**
-	 * Writes the error log messages to a specified file
+	 * Writes the default context's error log messages to a specified file
 	 * 
 	 * @param file
 	 *            the file to write to
 	 * @return 1 if successful, -1 if unsuccessful
 	 */
 	public static int writeErrorLog(String file) {
-		return writeStringToFile(listToString(errorLog), file);
-	}
-
-	// LIBRARY METHODS:
-	/**
-	 * Bernoulli trial with percentage chance
-	 * 
-	 * @param chance
-	 *            the chance of success for this Bernoulli trial
-	 * @return whether or not the trial was a success
-	 */
-	protected static boolean randomChance(double chance) {
-		if (Math.random() < chance)
-			return true;
-		return false;
+		return defaultContext.writeErrorLog(file);
 	}
 
 	/**
-	 * Get a random weight value
+	 * Seeds the random number generator used for all evolution in the
+	 * default context, so a run can be repeated.
 	 * 
-	 * @return double a weight value between -1 and 1
+	 * @param seed
+	 *            the seed
 	 */
-	protected static double randomWeight() {
-		int sign = (int) (Math.random() * 2);
-		double value = Math.random();
-		if (sign == 0) {
-			return value * -1;
-		}
-		return value;
+	public static void setSeed(long seed) {
+		defaultContext.setSeed(seed);
 	}
 
 	/**
-	 * Gets a random integer between 0 (inclusive) and the specified range
-	 * (exclusive)
-	 * 
-	 * @param range
-	 *            get a random number greater than or equal to 0 but less than
-	 *            range
-	 * @return a random integer
+	 * Empties the default context's log and error log. Every DNA, node and
+	 * innovation made is logged, so long runs should write and clear the logs
+	 * now and then.
 	 */
-	protected static int randomInteger(int range) {
-		// TODO: MAKE THIS MORE RANDOM
-		return (int) (Math.random() * range);
-		// return rng.nextInt(range);
+	public static void clearLogs() {
+		defaultContext.clearLogs();
 	}
 
+	// LIBRARY METHODS:
 	/**
-	 * Adds a string to the library log
+	 * Adds a string to the default context's log
 	 * 
 	 * @param message
 	 *            message to add to the log
 	 */
 	protected static void report(String message) {
-		if (logToSystemOut)
-			System.out.println(message);
-		log.add(message);
+		defaultContext.report(message);
 	}
 
 	/**
-	 * Adds a string to the library error log
+	 * Adds a string to the default context's error log
 	 * 
 	 * @param message
 	 *            error to report
 	 */
 	protected static void reportError(String message) {
-		if (logToSystemOut)
-			System.out.println(message);
-		errorLog.add(message);
-	}
-
-	/**
-	 * Returns an integer representing the new Population ID
-	 * 
-	 * @param p
-	 *            Population to get an ID for
-	 * @return new Population ID
-	 */
-	protected static int getNewPopulationID(Population p) {
-		int ret = society.size() + 1;
-		society.add(p);
-		return ret;
+		defaultContext.reportError(message);
 	}
 
 	/**
@@ -186,25 +147,4 @@ public class Braincraft {
 			ret += o.toString() + "\n";
 		return ret;
 	}
-
-	/**
-	 * Attempts to write a given string to a given file
-	 * 
-	 * @param output
-	 *            the output to write to file
-	 * @param file
-	 *            the location of the file writing to
-	 * @return 1 if successful, -1 if unsuccessful
-	 */
-	protected static int writeStringToFile(String output, String file) {
-		try {
-			BufferedWriter out = new BufferedWriter(new FileWriter(file));
-			out.write(output);
-			out.close();
-		} catch (IOException e) {
-			Braincraft.reportError("Could not write to location " + file + ".");
-			return -1;
-		}
-		return 1;
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,305 @@
+package braincraft;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * @author Chris Donahue
+ *
+ *         A BraincraftContext holds everything one evolution run shares: the
+ *         default parameters for new Populations, the random number generator,
+ *         the log, the error log, the visualizer statistics and the list of
+ *         Populations. Populations created with their own context share
+ *         nothing with any other run, so separate runs can evolve on separate
+ *         threads without corrupting or waiting on each other.
+ *
+ *         Populations created without a context use the default one behind
+ *         Braincraft's static methods, which works as Braincraft always has.
+ *         A context is thread-safe: logging and statistics are synchronized
+ *         on it and random numbers come from a thread-safe Random.
+ */
+public class BraincraftContext {
+	// POPULATION PARAMETER DEFAULTS:
+	public int populationSize = 100;
+	public double sigmoidCoefficient = -4.9;
+	public double perWeightMutationRate = 0.9;
+	public double weightMutationRate = 0.8;
+	public double linkMutationRate = 0.1;
+	public double linkDisableRate = 0.1;
+	public double nodeMutationRate = 0.05;
+	public double disabledRate = 0.75;
+	public double inheritFromHigherFitRate = 0.8;
+	public boolean feedForward = false;
+	public Activation activation = Activation.SIGMOID;
+	public boolean floatPrecision = false;
+	public boolean memoizeFitness = false;
+	public boolean deterministicFitness = false;
+	public int fitnessCacheSize = 4096;
+	public boolean offHeapGenomes = false;
+
+	// POPULATION SUBCLASS PARAMETER DEFAULTS:
+	public double c1 = 1.0;
+	public double c2 = 1.0;
+	public double c3 = 0.4;
+	public double tribeCompatibilityThreshold = 3.0;
+	public double percentageOfTribeToKillBeforeReproduction = 0.5;
+	public double survivalRatePerGeneration = 0.2;
+	public int elitism = 0;
+
+	// STATISTICS FIELDS:
+	/**
+	 * Whether to record the statistics written by writeStats(). Ignored by
+	 * the default context, which follows Braincraft.gatherStats.
+	 */
+	public boolean gatherStats = false;
+	protected final ArrayList<DNA> allDNA = new ArrayList<DNA>();
+	protected final ArrayList<String> genetics = new ArrayList<String>();
+	protected final ArrayList<Double> generationAverages = new ArrayList<Double>();
+
+	// FIELDS:
+	/**
+	 * Whether to print log messages as well as store them. Ignored by the
+	 * default context, which follows Braincraft.logToSystemOut.
+	 */
+	public boolean logToSystemOut = false;
+	private volatile Random rng;
+	private final ArrayList<Population> society = new ArrayList<Population>();
+	private final ArrayList<String> log = new ArrayList<String>();
+	private final ArrayList<String> errorLog = new ArrayList<String>();
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs a context with an unseeded random number generator
+	 */
+	public BraincraftContext() {
+		rng = new Random();
+	}
+
+	/**
+	 * Constructs a context whose runs can be repeated
+	 *
+	 * @param seed
+	 *            seed for the random number generator
+	 */
+	public BraincraftContext(long seed) {
+		rng = new Random(seed);
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Writes the log messages to a specified file
+	 *
+	 * @param file
+	 *            the file to write to
+	 * @return 1 if successful, -1 if unsuccessful
+	 */
+	public synchronized int writeLog(String file) {
+		return writeStringToFile(Braincraft.listToString(log), file);
+	}
+
+	/**
+	 * Writes the visualizer statistics to a specified file
+	 *
+	 * @param file
+	 *            the file to write to
+	 * @return 1 if successful, -1 if unsuccessful
+	 */
+	public synchronized int writeStats(String file) {
+		return writeStringToFile(Braincraft.listToString(allDNA)
+				+ Braincraft.listToString(genetics)
+				+ Braincraft.listToString(generationAverages), file);
+	}
+
+	/**
+	 * Writes the error log messages to a specified file
+	 *
+	 * @param file
+	 *            the file to write to
+	 * @return 1 if successful, -1 if unsuccessful
+	 */
+	public synchronized int writeErrorLog(String file) {
+		return writeStringToFile(Braincraft.listToString(errorLog), file);
+	}
+
+	/**
+	 * Seeds the random number generator used for all evolution in this
+	 * context, so a run can be repeated.
+	 *
+	 * @param seed
+	 *            the seed
+	 */
+	public void setSeed(long seed) {
+		rng = new Random(seed);
+	}
+
+	/**
+	 * Empties the log and error log. Every DNA, node and innovation made is
+	 * logged, so long runs should write and clear the logs now and then.
+	 */
+	public synchronized void clearLogs() {
+		log.clear();
+		errorLog.clear();
+	}
+
+	// LIBRARY METHODS:
+	/**
+	 * Whether statistics are being gathered
+	 *
+	 * @return true to record statistics
+	 */
+	protected boolean isGatheringStats() {
+		return gatherStats;
+	}
+
+	/**
+	 * Whether log messages are printed
+	 *
+	 * @return true to print log messages
+	 */
+	protected boolean isLoggingToSystemOut() {
+		return logToSystemOut;
+	}
+
+	/**
+	 * Bernoulli trial with percentage chance
+	 *
+	 * @param chance
+	 *            the chance of success for this Bernoulli trial
+	 * @return whether or not the trial was a success
+	 */
+	protected boolean randomChance(double chance) {
+		if (rng.nextDouble() < chance)
+			return true;
+		return false;
+	}
+
+	/**
+	 * Get a random weight value
+	 *
+	 * @return double a weight value between -1 and 1
+	 */
+	protected double randomWeight() {
+		int sign = (int) (rng.nextDouble() * 2);
+		double value = rng.nextDouble();
+		if (sign == 0) {
+			return value * -1;
+		}
+		return value;
+	}
+
+	/**
+	 * Gets a random integer between 0 (inclusive) and the specified range
+	 * (exclusive)
+	 *
+	 * @param range
+	 *            get a random number greater than or equal to 0 but less than
+	 *            range
+	 * @return a random integer
+	 */
+	protected int randomInteger(int range) {
+		return (int) (rng.nextDouble() * range);
+	}
+
+	/**
+	 * Adds a string to the log
+	 *
+	 * @param message
+	 *            message to add to the log
+	 */
+	protected synchronized void report(String message) {
+		if (isLoggingToSystemOut())
+			System.out.println(message);
+		log.add(message);
+	}
+
+	/**
+	 * Adds a string to the error log
+	 *
+	 * @param message
+	 *            error to report
+	 */
+	protected synchronized void reportError(String message) {
+		if (isLoggingToSystemOut())
+			System.out.println(message);
+		errorLog.add(message);
+	}
+
+	/**
+	 * Records a statistics line if statistics are being gathered
+	 *
+	 * @param line
+	 *            the line to record
+	 */
+	protected void recordGenetics(String line) {
+		if (isGatheringStats()) {
+			synchronized (this) {
+				genetics.add(line);
+			}
+		}
+	}
+
+	/**
+	 * Records a new DNA if statistics are being gathered
+	 *
+	 * @param d
+	 *            the DNA
+	 */
+	protected void recordDNA(DNA d) {
+		if (isGatheringStats()) {
+			synchronized (this) {
+				allDNA.add(d);
+			}
+		}
+	}
+
+	/**
+	 * Records a generation's average fitness if statistics are being gathered
+	 *
+	 * @param average
+	 *            average fitness of the generation
+	 */
+	protected void recordGenerationAverage(double average) {
+		if (isGatheringStats()) {
+			synchronized (this) {
+				generationAverages.add(average);
+			}
+		}
+	}
+
+	/**
+	 * Returns an integer representing the new Population ID
+	 *
+	 * @param p
+	 *            Population to get an ID for
+	 * @return new Population ID
+	 */
+	protected synchronized int getNewPopulationID(Population p) {
+		int ret = society.size() + 1;
+		society.add(p);
+		return ret;
+	}
+
+	/**
+	 * Attempts to write a given string to a given file
+	 *
+	 * @param output
+	 *            the output to write to file
+	 * @param file
+	 *            the location of the file writing to
+	 * @return 1 if successful, -1 if unsuccessful
+	 */
+	protected int writeStringToFile(String output, String file) {
+		try {
+			BufferedWriter out = new BufferedWriter(new FileWriter(file));
+			out.write(output);
+			out.close();
+		} catch (IOException e) {
+			reportError("Could not write to location " + file + ".");
+			return -1;
+		}
+		return 1;
+	}
+}
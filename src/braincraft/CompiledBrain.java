@@ -0,0 +1,243 @@
+package braincraft;
+
+import java.util.Arrays;
+
+/**
+ * @author Chris Donahue
+ *
+ *         A Brain compiled to bytecode by a BrainCompiler. Pumps exactly like
+ *         the Brain it was compiled from, bit for bit, with the same pumpNet
+ *         and pumpUntilStable contract, but keeps its own node outputs: pumping
+ *         one never changes the other. Use getBrain() to report fitness.
+ *
+ *         A Brain in float precision is compiled to float node outputs and
+ *         weights, and only approximates its Brain, see BrainCompiler.
+ *
+ *         A CompiledBrain is not thread-safe, but compile the same Brain twice
+ *         and the two can be pumped on different threads while sharing one
+ *         generated class.
+ */
+public class CompiledBrain {
+	// FIELDS:
+	/**
+	 * The Brain this was compiled from
+	 */
+	private final Brain brain;
+	/**
+	 * The kernel pumping a double precision Brain, or null
+	 */
+	private final BrainKernel kernel;
+	/**
+	 * The kernel pumping a float precision Brain, or null
+	 */
+	private final FloatBrainKernel floatKernel;
+	private final int numInputs;
+	/**
+	 * Node index of each output
+	 */
+	private final int[] outputNodes;
+	private final boolean feedForward;
+	/**
+	 * Node outputs, and the buffer the next step is written to (the same
+	 * array when feed-forward). Only the float ones are used in float
+	 * precision.
+	 */
+	private double[] state;
+	private double[] next;
+	private float[] floatState;
+	private float[] floatNext;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs a compiled Brain around a kernel
+	 *
+	 * @param b
+	 *            the Brain it was compiled from
+	 * @param layout
+	 *            b's layout
+	 * @param kernel
+	 *            the BrainKernel, or the FloatBrainKernel if b is in float
+	 *            precision
+	 */
+	protected CompiledBrain(Brain b, BrainLayout layout,
+			NetworkKernel kernel) {
+		brain = b;
+		numInputs = layout.inputNodes.length;
+		outputNodes = layout.outputNodes;
+		feedForward = layout.feedForward;
+		int n = layout.numNodes;
+		if (b.isFloatPrecision()) {
+			this.kernel = null;
+			floatKernel = (FloatBrainKernel) kernel;
+			floatState = new float[n];
+			floatNext = feedForward ? floatState : new float[n];
+		} else {
+			this.kernel = (BrainKernel) kernel;
+			floatKernel = null;
+			state = new double[n];
+			next = feedForward ? state : new double[n];
+		}
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Gets the Brain this was compiled from
+	 *
+	 * @return the Brain
+	 */
+	public Brain getBrain() {
+		return brain;
+	}
+
+	/**
+	 * Whether the network is run with generated bytecode, rather than
+	 * interpreted because it was too large to compile
+	 *
+	 * @return true if compiled
+	 */
+	public boolean isCompiled() {
+		return !(kernel instanceof InterpretedKernel)
+				&& !(floatKernel instanceof InterpretedKernel);
+	}
+
+	/**
+	 * Whether node outputs are 32-bit floats
+	 *
+	 * @return true if compiled in float precision
+	 */
+	public boolean isFloatPrecision() {
+		return floatKernel != null;
+	}
+
+	/**
+	 * Determines the outputs for the network using the given inputs, as
+	 * Brain.pumpNet does.
+	 *
+	 * @param inputvals
+	 *            input values for this neural net
+	 * @return output values for this neural net, or null if the inputs were
+	 *         the wrong size
+	 */
+	public double[] pumpNet(double[] inputvals) {
+		if (inputvals.length != numInputs)
+			return null;
+		pump(inputvals);
+		double[] retarray = new double[outputNodes.length];
+		getOutputs(retarray);
+		return retarray;
+	}
+
+	/**
+	 * Pumps the network with the same inputs until no node's output changes
+	 * by more than epsilon, or maxIters pumps have been done, as
+	 * Brain.pumpUntilStable does.
+	 *
+	 * @param inputvals
+	 *            input values for this neural net
+	 * @param outputvals
+	 *            filled with the output values
+	 * @param maxIters
+	 *            most pumps to do
+	 * @param epsilon
+	 *            largest change in a node output still counted as settled
+	 * @return the number of pumps done, or 0 if the inputs were the wrong size
+	 */
+	public int pumpUntilStable(double[] inputvals, double[] outputvals,
+			int maxIters, double epsilon) {
+		if (inputvals.length != numInputs)
+			return 0;
+
+		int iters;
+		if (feedForward) {
+			pump(inputvals);
+			iters = 1;
+		} else {
+			iters = 0;
+			while (iters < maxIters) {
+				iters++;
+				pump(inputvals);
+				if (change() <= epsilon)
+					break;
+			}
+		}
+		getOutputs(outputvals);
+
+		if (brain.metrics != null)
+			brain.metrics.recordSettle(iters);
+		return iters;
+	}
+
+	/**
+	 * Clears all node outputs, like Brain.clearActivity
+	 */
+	public void clearActivity() {
+		if (floatKernel != null) {
+			Arrays.fill(floatState, 0.0f);
+			Arrays.fill(floatNext, 0.0f);
+		} else {
+			Arrays.fill(state, 0.0);
+			Arrays.fill(next, 0.0);
+		}
+	}
+
+	// HELPERS:
+	/**
+	 * Pumps once. Afterwards state holds the new outputs and, for a recurrent
+	 * network, next holds the previous ones.
+	 *
+	 * @param inputvals
+	 *            input values
+	 */
+	private void pump(double[] inputvals) {
+		if (floatKernel != null) {
+			floatKernel.pump(inputvals, floatState, floatNext);
+			if (!feedForward) {
+				float[] swap = floatState;
+				floatState = floatNext;
+				floatNext = swap;
+			}
+		} else {
+			kernel.pump(inputvals, state, next);
+			if (!feedForward) {
+				double[] swap = state;
+				state = next;
+				next = swap;
+			}
+		}
+	}
+
+	/**
+	 * Gets the largest change in any node's output made by the last pump of a
+	 * recurrent network
+	 *
+	 * @return the largest change
+	 */
+	private double change() {
+		double change = 0.0;
+		if (floatKernel != null) {
+			for (int i = 0; i < floatState.length; i++)
+				change = Math.max(change,
+						Math.abs((double) floatState[i] - floatNext[i]));
+		} else {
+			for (int i = 0; i < state.length; i++)
+				change = Math.max(change, Math.abs(state[i] - next[i]));
+		}
+		return change;
+	}
+
+	/**
+	 * Copies the output node values
+	 *
+	 * @param outputvals
+	 *            filled with the output values
+	 */
+	private void getOutputs(double[] outputvals) {
+		if (floatKernel != null) {
+			for (int i = 0; i < outputNodes.length; i++)
+				outputvals[i] = floatState[outputNodes[i]];
+		} else {
+			for (int i = 0; i < outputNodes.length; i++)
+				outputvals[i] = state[outputNodes[i]];
+		}
+	}
+}
@@ -1,9 +1,12 @@
 package braincraft;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.FutureTask;
 
 /**
  * @author Chris Donahue
@@ -22,6 +25,16 @@ public class DNA implements Comparable<DNA> {
 	 * Starts as null.
 	 */
 	protected Double fitness;
+	/**
+	 * Fitness this DNA was tested with, or carried over with as an elite. It
+	 * stays as reported when fitness is shared out within a Tribe.
+	 */
+	protected Double testedFitness;
+	/**
+	 * Brain this DNA was tested with, kept when the Population's fitness is
+	 * deterministic so an elite copy of this DNA can reuse it
+	 */
+	protected Brain testedBrain;
 	/**
 	 * Highest innovation number in this DNA.
 	 */
@@ -38,6 +51,27 @@ public class DNA implements Comparable<DNA> {
 	 * Population that this DNA belongs to
 	 */
 	private Population population;
+	/**
+	 * Key of this DNA in its Population's FitnessCache, made when first
+	 * needed. DNA is not mutated once it has been registered, so the key
+	 * never goes stale.
+	 */
+	private FitnessCache.Key fitnessKey;
+	/**
+	 * Whether this DNA has been looked up in its Population's FitnessCache
+	 */
+	protected boolean lookedUp;
+	/**
+	 * Brain of this DNA being built in the background, see
+	 * Population.prebuildBrains()
+	 */
+	protected FutureTask<Brain> prebuilt;
+	/**
+	 * Genes and nodes of this DNA packed off the heap, see GenomeStore. Null
+	 * while they are in the HashMaps above; the HashMaps are null once they
+	 * are packed.
+	 */
+	private GenomeStore.Genome packed;
 
 	// CONSTRUCTOR:
 	/**
@@ -58,12 +92,12 @@ public class DNA implements Comparable<DNA> {
 		if (init) {
 			initializeDNA();
 		}
-		if (Braincraft.gatherStats)
-			Braincraft.allDNA.add(this);
+		population.context.recordDNA(this);
 	}
 
 	/**
-	 * Makes a pointer-independent clone of a DNA object
+	 * Makes a pointer-independent clone of a DNA object. The clone gets a new
+	 * ID and no fitness, but has the same genes, nodes and FitnessCache key.
 	 * 
 	 * @param pop
 	 *            Population that produced this DNA
@@ -71,7 +105,59 @@ public class DNA implements Comparable<DNA> {
 	 *            DNA object to clone
 	 */
 	protected DNA(Population pop, DNA d) {
-		// TODO: implement this
+		this(pop, false);
+		for (NNode n : d.getNodes()) {
+			submitNewNode(n);
+		}
+		for (Gene g : d.getGenes()) {
+			submitNewGene(g);
+		}
+		fitnessKey = d.fitnessKey;
+	}
+
+	/**
+	 * Gets the Population this DNA belongs to
+	 * 
+	 * @return the Population that produced this DNA
+	 */
+	protected Population getPopulation() {
+		return population;
+	}
+
+	// STORAGE METHODS:
+	/**
+	 * Moves the genes and nodes of this DNA off the heap into an Arena. Only
+	 * called once the DNA is finished, since packed DNA can be read but not
+	 * mutated.
+	 * 
+	 * @param arena
+	 *            Arena of this DNA's generation
+	 */
+	protected void pack(GenomeStore.Arena arena) {
+		packed = arena.pack(genes.values(), nodes.values());
+		genes = null;
+		nodes = null;
+	}
+
+	/**
+	 * Moves packed DNA into another Arena, so it outlives the release of the
+	 * Arena it was packed in. Heap DNA is left alone.
+	 * 
+	 * @param arena
+	 *            the Arena to keep this DNA in
+	 */
+	protected void moveTo(GenomeStore.Arena arena) {
+		if (packed != null && packed.getArena() != arena)
+			packed = arena.copy(packed);
+	}
+
+	/**
+	 * Whether this DNA has been packed off the heap
+	 * 
+	 * @return true if its genes and nodes are in a GenomeStore
+	 */
+	protected boolean isPacked() {
+		return packed != null;
 	}
 
 	// GENE METHODS:
@@ -81,9 +167,36 @@ public class DNA implements Comparable<DNA> {
 	 * @return number of genes in this DNA
 	 */
 	protected int numGenes() {
+		if (packed != null)
+			return packed.numGenes();
 		return genes.size();
 	}
 
+	/**
+	 * Gets every gene of this DNA. Genes of packed DNA are made fresh on each
+	 * call, so changing them does not change the DNA.
+	 * 
+	 * @return the genes of this DNA, in the same order whether it is packed
+	 *         or not
+	 */
+	protected Collection<Gene> getGenes() {
+		if (packed != null)
+			return packed.genes();
+		return genes.values();
+	}
+
+	/**
+	 * Gets the key of this DNA in a FitnessCache
+	 * 
+	 * @return a key shared by every DNA with the same enabled genes and
+	 *         weights
+	 */
+	protected FitnessCache.Key fitnessKey() {
+		if (fitnessKey == null)
+			fitnessKey = FitnessCache.keyOf(getGenes());
+		return fitnessKey;
+	}
+
 	/**
 	 * Returns a random gene from within this DNA
 	 * 
@@ -92,21 +205,52 @@ public class DNA implements Comparable<DNA> {
 	protected Gene getRandomGene() {
 		ArrayList<Gene> genearr = new ArrayList<Gene>();
 		genearr.addAll(genes.values());
-		return genearr.get(Braincraft.randomInteger(genearr.size()));
+		return genearr.get(population.context.randomInteger(genearr.size()));
 	}
 
 	/**
-	 * Properly adds a new gene to this DNA
+	 * Properly adds a new gene to this DNA. The gene is shared rather than
+	 * copied, so parents and offspring hold the same Gene objects; it is
+	 * marked shared and from then on only ever replaced, never changed.
 	 * 
 	 * @param element
 	 *            the gene to submit
 	 */
 	protected void submitNewGene(Gene element) {
-		Gene newgene = new Gene(element);
-		genes.put(newgene.innovation, newgene);
+		element.shared = true;
+		addGene(element);
+	}
+
+	/**
+	 * Adds a gene only this DNA holds, which it may change in place until
+	 * another DNA shares it
+	 * 
+	 * @param g
+	 *            the gene to add
+	 */
+	private void addGene(Gene g) {
+		genes.put(g.innovation, g);
 
-		if (newgene.innovation > highest)
-			highest = newgene.innovation;
+		if (g.innovation > highest)
+			highest = g.innovation;
+	}
+
+	/**
+	 * Gets a gene of this DNA that is safe to change. A shared gene is first
+	 * replaced by a copy only this DNA holds. Replacing the gene of an
+	 * innovation already in the map is not a structural change, so this can
+	 * be called while iterating over the genes.
+	 * 
+	 * @param g
+	 *            a gene of this DNA
+	 * @return g, or the copy that replaced it
+	 */
+	private Gene ownGene(Gene g) {
+		if (!g.shared)
+			return g;
+		Gene copy = new Gene(g);
+		genes.put(copy.innovation, copy);
+		return copy;
 	}
 
 	/**
@@ -117,6 +261,8 @@ public class DNA implements Comparable<DNA> {
 	 * @return true if this DNA has this Gene, otherwise false
 	 */
 	protected boolean hasGene(int innovation) {
+		if (packed != null)
+			return packed.indexOf(innovation) >= 0;
 		return genes.containsKey(innovation);
 	}
 
@@ -128,9 +274,27 @@ public class DNA implements Comparable<DNA> {
 	 * @return the gene at index innovation or null if it is not in this DNA
 	 */
 	protected Gene getGene(int innovation) {
+		if (packed != null) {
+			int index = packed.indexOf(innovation);
+			return index < 0 ? null : packed.gene(index);
+		}
 		return genes.get(innovation);
 	}
 
+	/**
+	 * Gets the weight of a gene in this DNA without making a Gene of packed
+	 * DNA
+	 * 
+	 * @param innovation
+	 *            innovation number of a gene in this DNA
+	 * @return the weight of the gene
+	 */
+	protected double getWeight(int innovation) {
+		if (packed != null)
+			return packed.weight(packed.indexOf(innovation));
+		return genes.get(innovation).weight;
+	}
+
 	/**
 	 * Get the highest innovation number of any gene in this DNA
 	 * 
@@ -146,6 +310,12 @@ public class DNA implements Comparable<DNA> {
 	 * @return set of innovation numbers in this DNA
 	 */
 	protected Set<Integer> getInnovations() {
+		if (packed != null) {
+			Set<Integer> innovations = new LinkedHashSet<Integer>();
+			for (int i = 0; i < packed.numGenes(); i++)
+				innovations.add(packed.innovation(i));
+			return innovations;
+		}
 		return genes.keySet();
 	}
 
@@ -173,6 +343,8 @@ public class DNA implements Comparable<DNA> {
 	 * @return number of nodes in this DNA
 	 */
 	protected int numNodes() {
+		if (packed != null)
+			return packed.numNodes();
 		return nodes.size();
 	}
 
@@ -184,7 +356,7 @@ public class DNA implements Comparable<DNA> {
 	protected NNode getRandomNode() {
 		ArrayList<NNode> nodearr = new ArrayList<NNode>();
 		nodearr.addAll(nodes.values());
-		return nodearr.get(Braincraft.randomInteger(nodearr.size()));
+		return nodearr.get(population.context.randomInteger(nodearr.size()));
 	}
 
 	/**
@@ -196,9 +368,26 @@ public class DNA implements Comparable<DNA> {
 	 *         DNA does not have this NNode
 	 */
 	protected NNode getNode(int ID) {
+		if (packed != null) {
+			int index = packed.nodeIndexOf(ID);
+			return index < 0 ? null : packed.node(index);
+		}
 		return nodes.get(ID);
 	}
 
+	/**
+	 * Gets every node of this DNA. Nodes of packed DNA are made fresh on each
+	 * call.
+	 * 
+	 * @return the nodes of this DNA, in the same order whether it is packed
+	 *         or not
+	 */
+	protected Collection<NNode> getNodes() {
+		if (packed != null)
+			return packed.nodes().values();
+		return nodes.values();
+	}
+
 	/**
 	 * Properly submit a new node to this DNA
 	 * 
@@ -218,6 +407,8 @@ public class DNA implements Comparable<DNA> {
 	 * @return true if DNA has node, otherwise false
 	 */
 	protected boolean hasNode(int ID) {
+		if (packed != null)
+			return packed.nodeIndexOf(ID) >= 0;
 		return nodes.containsKey(ID);
 	}
 
@@ -244,10 +435,10 @@ public class DNA implements Comparable<DNA> {
 				int start = i + 1;
 				int end = numInputs + 1 + j;
 				int innovation = population.getInnovation(start, end);
-				Gene g = new Gene(innovation, start, end, Braincraft
-						.randomWeight(), true);
+				Gene g = new Gene(innovation, start, end,
+						population.context.randomWeight(), true);
 				population.registerGene(g);
-				submitNewGene(g);
+				addGene(g);
 			}
 		}
 	}
@@ -291,17 +482,17 @@ public class DNA implements Comparable<DNA> {
 		population.registerGene(late);
 
 		// Disable old gene
-		mutated.enabled = false;
+		ownGene(mutated).enabled = false;
 
 		// Submit new node
 		submitNewNode(addition);
 
 		// Submit new genes
-		submitNewGene(early);
-		submitNewGene(late);
+		addGene(early);
+		addGene(late);
 
-		if (Braincraft.gatherStats)
-			Braincraft.genetics.add("node mutation " + ID + " "
+		if (population.context.isGatheringStats())
+			population.context.recordGenetics("node mutation " + ID + " "
 					+ mutated.innovation + " " + early.innovation + " "
 					+ late.innovation + " " + addition.ID);
 	}
@@ -340,12 +531,12 @@ public class DNA implements Comparable<DNA> {
 		int newgeneinno = population
 				.getInnovation(randomstart.ID, randomend.ID);
 		Gene newgene = new Gene(newgeneinno, randomstart.ID, randomend.ID,
-				Braincraft.randomWeight(), true);
+				population.context.randomWeight(), true);
 		population.registerGene(newgene);
-		submitNewGene(newgene);
+		addGene(newgene);
 
-		if (Braincraft.gatherStats)
-			Braincraft.genetics.add("link creation mutation " + ID + " "
+		if (population.context.isGatheringStats())
+			population.context.recordGenetics("link creation mutation " + ID + " "
 					+ newgene.innovation + " " + randomstart.ID + " "
 					+ randomend.ID);
 	}
@@ -355,11 +546,11 @@ public class DNA implements Comparable<DNA> {
 	 */
 	protected void mutateWeights() {
 		// TODO: Change the way weight mutation works
-		if (Braincraft.gatherStats) {
+		if (population.context.isGatheringStats()) {
 			ArrayList<Integer> mutatedgenes = new ArrayList<Integer>();
 			for (Gene g : genes.values()) {
-				if (Braincraft.randomChance(population.perWeightMutationRate)) {
-					g.weight = Braincraft.randomWeight();
+				if (population.context.randomChance(population.perWeightMutationRate)) {
+					ownGene(g).weight = population.context.randomWeight();
 					mutatedgenes.add(g.innovation);
 				}
 			}
@@ -367,11 +558,11 @@ public class DNA implements Comparable<DNA> {
 			for (Integer i : mutatedgenes) {
 				output += " " + i;
 			}
-			Braincraft.genetics.add(output);
+			population.context.recordGenetics(output);
 		} else {
 			for (Gene g : genes.values()) {
-				if (Braincraft.randomChance(population.perWeightMutationRate))
-					g.weight = Braincraft.randomWeight();
+				if (population.context.randomChance(population.perWeightMutationRate))
+					ownGene(g).weight = population.context.randomWeight();
 			}
 		}
 		// TODO: Report weight mutations to stats
@@ -381,11 +572,11 @@ public class DNA implements Comparable<DNA> {
 	 * Disables a random link in this genome. Primitive search pruning.
 	 */
 	protected void mutateDisableLink() {
-		Gene g = getRandomGene();
+		Gene g = ownGene(getRandomGene());
 		g.enabled = false;
 
-		if (Braincraft.gatherStats)
-			Braincraft.genetics.add("link disable mutation " + ID + " "
+		if (population.context.isGatheringStats())
+			population.context.recordGenetics("link disable mutation " + ID + " "
 					+ g.innovation);
 	}
 
@@ -419,24 +610,28 @@ public class DNA implements Comparable<DNA> {
 		}
 
 		// Populate gene list of ret
-		for (Integer i : hifit.getInnovations()) {
-			Gene submission;
-			if (!lofit.hasGene(i)) {
-				submission = hifit.getGene(i);
-			} else {
-				Gene newgene;
-				if (Braincraft
-						.randomChance(population.inheritFromHigherFitRate))
-					newgene = new Gene(hifit.getGene(i));
-				else
-					newgene = new Gene(lofit.getGene(i));
-				if (!hifit.getGene(i).enabled || !lofit.getGene(i).enabled) {
-					if (Braincraft.randomChance(population.disabledRate))
-						newgene.enabled = false;
-					else
-						newgene.enabled = true;
+		for (Gene hiGene : hifit.getGenes()) {
+			// Inherited genes are shared with the parent, only a gene whose
+			// enabled bit changes is copied. Genes of packed parents are
+			// already copies.
+			Gene submission = hiGene;
+			boolean copied = hifit.isPacked();
+			Gene loGene = lofit.getGene(hiGene.innovation);
+			if (loGene != null) {
+				if (!population.context
+						.randomChance(population.inheritFromHigherFitRate)) {
+					submission = loGene;
+					copied = lofit.isPacked();
+				}
+				if (!hiGene.enabled || !loGene.enabled) {
+					boolean enabled = !population.context
+							.randomChance(population.disabledRate);
+					if (submission.enabled != enabled) {
+						submission = new Gene(submission);
+						submission.enabled = enabled;
+						copied = true;
+					}
 				}
-				submission = newgene;
 			}
 			if (!ret.hasNode(submission.start)) {
 				ret.submitNewNode(hifit.getNode(submission.start));
@@ -444,16 +639,19 @@ public class DNA implements Comparable<DNA> {
 			if (!ret.hasNode(submission.end)) {
 				ret.submitNewNode(hifit.getNode(submission.end));
 			}
-			ret.submitNewGene(submission);
+			if (copied)
+				ret.addGene(submission);
+			else
+				ret.submitNewGene(submission);
 		}
 
-		if (Braincraft.randomChance(population.weightMutationRate))
+		if (population.context.randomChance(population.weightMutationRate))
 			ret.mutateWeights();
-		if (Braincraft.randomChance(population.linkMutationRate))
+		if (population.context.randomChance(population.linkMutationRate))
 			ret.mutateAddLink();
-		if (Braincraft.randomChance(population.nodeMutationRate))
+		if (population.context.randomChance(population.nodeMutationRate))
 			ret.mutateAddNode();
-		if (Braincraft.randomChance(population.linkDisableRate))
+		if (population.context.randomChance(population.linkDisableRate))
 			ret.mutateDisableLink();
 
 		return ret;
@@ -466,8 +664,18 @@ public class DNA implements Comparable<DNA> {
 	 * @return a new Brain object
 	 */
 	protected Brain DNAtoBrain() {
-		return new Brain(this, this.ID, genes.values(), nodes,
-				population.sigmoidCoefficient);
+		Brain b;
+		if (packed != null)
+			b = new Brain(this, this.ID, packed.genes(), packed.nodes(),
+					population.sigmoidCoefficient);
+		else
+			b = new Brain(this, this.ID, genes.values(), nodes,
+					population.sigmoidCoefficient);
+		b.setActivation(population.activation);
+		b.setFloatPrecision(population.floatPrecision);
+		if (population.feedForward)
+			b.setFeedForward(true);
+		return b;
 	}
 
 	// INTERFACE HELPERS:
@@ -477,13 +685,13 @@ public class DNA implements Comparable<DNA> {
 
 		// Node list
 		ArrayList<NNode> nodelist = new ArrayList<NNode>();
-		nodelist.addAll(nodes.values());
+		nodelist.addAll(getNodes());
 		Collections.sort(nodelist);
 		output += Braincraft.listToString(nodelist);
 
 		// Gene list
 		ArrayList<Gene> allGenes = new ArrayList<Gene>();
-		allGenes.addAll(genes.values());
+		allGenes.addAll(getGenes());
 		Collections.sort(allGenes);
 		output += Braincraft.listToString(allGenes);
 
@@ -498,7 +706,7 @@ public class DNA implements Comparable<DNA> {
 			return 0;
 		if (fitness < d.fitness)
 			return -1;
-		else if (fitness == d.fitness)
+		else if (fitness.doubleValue() == d.fitness.doubleValue())
 			return 0;
 		else
 			return 1;
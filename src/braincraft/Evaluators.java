@@ -0,0 +1,115 @@
+package braincraft;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Chris Donahue
+ *
+ *         Evaluators makes the Executors Population.evaluateGeneration() is
+ *         usually given:
+ *
+ *         sequential() tests Brains one after another on the calling thread,
+ *         in the order they were issued, exactly like a getBrain() /
+ *         reportFitness() loop.
+ *
+ *         forkJoin() suits CPU-bound fitness functions such as simulations:
+ *         a work-stealing pool with one thread per core at most.
+ *
+ *         virtualThreads() suits fitness functions that spend their time
+ *         waiting, for example on a subprocess or a socket: every Brain gets
+ *         its own cheap thread. Virtual threads need Java 21; on older Java a
+ *         cached pool of daemon platform threads is used instead.
+ *
+ *         Shut down the ExecutorServices returned once the Population is done
+ *         with them.
+ */
+public class Evaluators {
+	// FIELDS:
+	/**
+	 * Runs every task on the calling thread
+	 */
+	private static final Executor SEQUENTIAL = new Executor() {
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
+	// CONSTRUCTORS:
+	private Evaluators() {
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Gets an Executor that tests Brains one after another on the calling
+	 * thread
+	 *
+	 * @return the Executor
+	 */
+	public static Executor sequential() {
+		return SEQUENTIAL;
+	}
+
+	/**
+	 * Makes a work-stealing pool for CPU-bound fitness functions
+	 *
+	 * @param threads
+	 *            number of threads to test Brains on
+	 * @return the pool
+	 */
+	public static ExecutorService forkJoin(int threads) {
+		return new ForkJoinPool(Math.max(1, threads));
+	}
+
+	/**
+	 * Makes a work-stealing pool with a thread per core, for CPU-bound fitness
+	 * functions
+	 *
+	 * @return the pool
+	 */
+	public static ExecutorService forkJoin() {
+		return forkJoin(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Makes an Executor that starts a virtual thread for each Brain, for
+	 * fitness functions that block. Falls back to a cached pool of daemon
+	 * threads when virtual threads are not available.
+	 *
+	 * @return the Executor
+	 */
+	public static ExecutorService virtualThreads() {
+		try {
+			// Looked up by name so Braincraft still builds and runs on Java 17
+			Method m = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "braincraft-evaluator");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Whether virtualThreads() gives real virtual threads on this Java
+	 *
+	 * @return true if virtual threads are available
+	 */
+	public static boolean hasVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
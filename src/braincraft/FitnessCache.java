@@ -0,0 +1,227 @@
+package braincraft;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Chris Donahue
+ *
+ *         FitnessCache remembers the fitness of recently evaluated genomes so
+ *         a Population can skip testing a genome it has already tested. NEAT
+ *         breeds many exact copies: champions, offspring whose mutations all
+ *         missed, and crossovers of identical parents. With a deterministic
+ *         fitness function a copy always scores the same, so its fitness is
+ *         simply looked up.
+ *
+ *         Genomes are keyed by their enabled genes in innovation order, with
+ *         each gene's exact weight. Disabled genes and NNode IDs do not
+ *         change what a Brain computes, so they are left out of the key.
+ *
+ *         The least recently used genome is forgotten once the cache is full.
+ *         Only turn this on (Population.memoizeFitness) when a genome always
+ *         earns the same fitness: stochastic fitness functions, such as
+ *         simulations in randomly generated worlds, would have one lucky or
+ *         unlucky score stand in for every later copy.
+ */
+public class FitnessCache {
+	// FIELDS:
+	/**
+	 * Orders genes by innovation number
+	 */
+	private static final Comparator<Gene> BY_INNOVATION = new Comparator<Gene>() {
+		public int compare(Gene a, Gene b) {
+			return Integer.compare(a.innovation, b.innovation);
+		}
+	};
+	/**
+	 * Most genomes remembered at once
+	 */
+	private final int capacity;
+	/**
+	 * Remembered fitnesses, least recently used first
+	 */
+	private final LinkedHashMap<Key, Double> fitnesses;
+	/**
+	 * Lookups that found a fitness
+	 */
+	private long hits;
+	/**
+	 * Lookups that did not
+	 */
+	private long misses;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs an empty cache
+	 *
+	 * @param capacity
+	 *            most genomes remembered at once
+	 */
+	public FitnessCache(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: "
+					+ capacity);
+		this.capacity = capacity;
+		fitnesses = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Most genomes remembered at once
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of genomes remembered
+	 *
+	 * @return the size
+	 */
+	public synchronized int size() {
+		return fitnesses.size();
+	}
+
+	/**
+	 * Number of lookups that found a fitness
+	 *
+	 * @return the hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Number of lookups that did not find a fitness
+	 *
+	 * @return the misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Fraction of lookups that found a fitness
+	 *
+	 * @return the hit rate, 0 if nothing has been looked up
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0.0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Forgets every fitness, for example after the fitness function changes.
+	 * Hit and miss counts are kept.
+	 */
+	public synchronized void clear() {
+		fitnesses.clear();
+	}
+
+	public synchronized String toString() {
+		return "FitnessCache: " + fitnesses.size() + "/" + capacity
+				+ " genomes, " + hits + " hits, " + misses + " misses";
+	}
+
+	// LIBRARY METHODS:
+	/**
+	 * Looks up the fitness of a genome
+	 *
+	 * @param key
+	 *            the genome's key, see keyOf()
+	 * @return its fitness, or null if it is not remembered
+	 */
+	protected synchronized Double get(Key key) {
+		Double fitness = fitnesses.get(key);
+		if (fitness == null)
+			misses++;
+		else
+			hits++;
+		return fitness;
+	}
+
+	/**
+	 * Remembers the fitness of a genome
+	 *
+	 * @param key
+	 *            the genome's key, see keyOf()
+	 * @param fitness
+	 *            its fitness
+	 */
+	protected synchronized void put(Key key, double fitness) {
+		fitnesses.put(key, fitness);
+	}
+
+	/**
+	 * Makes the key of a genome
+	 *
+	 * @param genes
+	 *            every gene of the genome, in any order
+	 * @return a key equal to the key of any genome with the same enabled
+	 *         genes and weights
+	 */
+	protected static Key keyOf(Collection<Gene> genes) {
+		int enabled = 0;
+		for (Gene g : genes)
+			if (g.enabled)
+				enabled++;
+
+		// Each innovation number stands for one start and end node, so in
+		// order they spell out the topology
+		Gene[] sorted = new Gene[enabled];
+		int i = 0;
+		for (Gene g : genes)
+			if (g.enabled)
+				sorted[i++] = g;
+		Arrays.sort(sorted, BY_INNOVATION);
+
+		int[] innovations = new int[enabled];
+		long[] weightBits = new long[enabled];
+		for (i = 0; i < enabled; i++) {
+			innovations[i] = sorted[i].innovation;
+			weightBits[i] = Double.doubleToLongBits(sorted[i].weight);
+		}
+		return new Key(innovations, weightBits);
+	}
+
+	// HELPER CLASSES:
+	/**
+	 * The canonical form of a genome. Equal keys are compared in full, so two
+	 * genomes whose hashes collide are never confused.
+	 */
+	protected static final class Key {
+		private final int[] innovations;
+		private final long[] weightBits;
+		private final int hash;
+
+		private Key(int[] innovations, long[] weightBits) {
+			this.innovations = innovations;
+			this.weightBits = weightBits;
+			hash = 31 * Arrays.hashCode(innovations)
+					+ Arrays.hashCode(weightBits);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return hash == k.hash && Arrays.equals(innovations, k.innovations)
+					&& Arrays.equals(weightBits, k.weightBits);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ *
+ *         A FitnessFunction tests one Brain and says how fit it is. Pass one
+ *         to Population.evaluateGeneration() to have a whole generation tested
+ *         on an Executor.
+ *
+ *         Brains of different DNA share no state, so evaluate() may be called
+ *         for many Brains at once from different threads. Anything else the
+ *         function touches (a simulation, a file, a counter) must be
+ *         thread-safe or kept per thread.
+ */
+public interface FitnessFunction {
+	/**
+	 * Tests a Brain
+	 *
+	 * @param b
+	 *            the Brain to test
+	 * @return the Brain's fitness
+	 */
+	public double evaluate(Brain b);
+}
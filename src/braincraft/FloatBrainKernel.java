@@ -0,0 +1,23 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         BrainKernel for Brains in float precision: weights, sums and node
+ *         outputs are 32-bit floats. Activation functions are still computed
+ *         in double and their results rounded.
+ */
+interface FloatBrainKernel extends NetworkKernel {
+	/**
+	 * Writes the activated inputs to dst, then computes every non-input node
+	 * from src into dst. Called with src == dst for a feed-forward pass.
+	 * 
+	 * @param inputvals
+	 *            input values
+	 * @param src
+	 *            node outputs read by the genes
+	 * @param dst
+	 *            where computed outputs are written, may be src
+	 */
+	void pump(double[] inputvals, float[] src, float[] dst);
+}
@@ -30,6 +30,11 @@ public class Gene implements Comparable<Gene>, Serializable {
 	 * Boolean representing whether or not this Gene is active
 	 */
 	protected boolean enabled;
+	/**
+	 * Whether this Gene may be held by more than one DNA. Shared Genes are
+	 * never changed: DNA changes a copy instead, see DNA.ownGene().
+	 */
+	protected transient boolean shared;
 
 	// CONSTUCTORS:
 	/**
@@ -0,0 +1,33 @@
+package braincraft;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         Flight Recorder event spanning one generation of a Population, from
+ *         the first Brain being issued until the last fitness is reported.
+ */
+@Name("braincraft.Generation")
+@Label("Generation")
+@Category({ "Braincraft", "Evolution" })
+@Description("One generation of a Population, from breeding to the last fitness report")
+class GenerationEvent extends jdk.jfr.Event {
+	@Label("Population")
+	int populationID;
+
+	@Label("Generation")
+	int generation;
+
+	@Label("Brains Evaluated")
+	int brains;
+
+	@Label("Average Fitness")
+	double averageFitness;
+
+	@Label("Best Fitness")
+	double bestFitness;
+}
@@ -0,0 +1,158 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ *
+ *         GenerationMetrics is an unchanging record of one finished
+ *         generation: how long each phase took, what was counted, and the
+ *         distributions of evaluation times and genome sizes. Times cover
+ *         the repopulate() that bred a generation and evaluating it.
+ */
+public class GenerationMetrics {
+	// FIELDS:
+	private final int populationID;
+	private final int generation;
+	private final long[] phaseNanos;
+	private final long[] counts;
+	private final int tribes;
+	private final double averageFitness;
+	private final double bestFitness;
+	private final Histogram evaluationNanos;
+	private final Histogram genomeSizes;
+	private final Histogram settleIterations;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs a record of a finished generation
+	 *
+	 * @param populationID
+	 * @param generation
+	 * @param phaseNanos
+	 *            nanoseconds per Metrics.Phase, by ordinal
+	 * @param counts
+	 *            count per Metrics.Counter, by ordinal
+	 * @param tribes
+	 * @param averageFitness
+	 * @param bestFitness
+	 * @param evaluationNanos
+	 * @param genomeSizes
+	 * @param settleIterations
+	 */
+	protected GenerationMetrics(int populationID, int generation,
+			long[] phaseNanos, long[] counts, int tribes,
+			double averageFitness, double bestFitness,
+			Histogram evaluationNanos, Histogram genomeSizes,
+			Histogram settleIterations) {
+		this.populationID = populationID;
+		this.generation = generation;
+		this.phaseNanos = phaseNanos;
+		this.counts = counts;
+		this.tribes = tribes;
+		this.averageFitness = averageFitness;
+		this.bestFitness = bestFitness;
+		this.evaluationNanos = evaluationNanos;
+		this.genomeSizes = genomeSizes;
+		this.settleIterations = settleIterations;
+	}
+
+	// PUBLIC ACCESSOR METHODS:
+	public int getPopulationID() {
+		return populationID;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Gets the time spent in a phase
+	 *
+	 * @param p
+	 *            the phase
+	 * @return nanoseconds spent in p
+	 */
+	public long getNanos(Metrics.Phase p) {
+		return phaseNanos[p.ordinal()];
+	}
+
+	/**
+	 * Gets the value of a counter
+	 *
+	 * @param c
+	 *            the counter
+	 * @return its count for this generation
+	 */
+	public long getCount(Metrics.Counter c) {
+		return counts[c.ordinal()];
+	}
+
+	/**
+	 * Gets the fraction of DNA looked up in the FitnessCache whose fitness
+	 * was found there
+	 *
+	 * @return the hit rate, 0 if the Population does not memoize fitness
+	 */
+	public double getFitnessCacheHitRate() {
+		long hits = getCount(Metrics.Counter.FITNESS_CACHE_HITS);
+		long lookups = hits + getCount(Metrics.Counter.FITNESS_CACHE_MISSES);
+		return lookups == 0 ? 0.0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Gets the number of Tribes alive when the generation ended
+	 *
+	 * @return number of Tribes, 1 for unspeciated Populations
+	 */
+	public int getTribes() {
+		return tribes;
+	}
+
+	public double getAverageFitness() {
+		return averageFitness;
+	}
+
+	public double getBestFitness() {
+		return bestFitness;
+	}
+
+	/**
+	 * Gets how long each Brain took from issue to fitness report
+	 *
+	 * @return a Histogram of nanoseconds
+	 */
+	public Histogram getEvaluationNanos() {
+		return evaluationNanos;
+	}
+
+	/**
+	 * Gets the number of genes in each evaluated DNA
+	 *
+	 * @return a Histogram of gene counts
+	 */
+	public Histogram getGenomeSizes() {
+		return genomeSizes;
+	}
+
+	/**
+	 * Gets the number of pumps each Brain.pumpUntilStable() call used
+	 * 
+	 * @return a Histogram of pump counts, empty if it was never called
+	 */
+	public Histogram getSettleIterations() {
+		return settleIterations;
+	}
+
+	public String toString() {
+		String ret = "POPULATION " + populationID + " generation "
+				+ generation + ": tribes=" + tribes + " average="
+				+ averageFitness + " best=" + bestFitness;
+		for (Metrics.Phase p : Metrics.Phase.values())
+			ret += " " + p.name().toLowerCase() + "Ms=" + getNanos(p) / 1e6;
+		for (Metrics.Counter c : Metrics.Counter.values())
+			ret += " " + c.name().toLowerCase() + "=" + getCount(c);
+		ret += " genomeSize[" + genomeSizes + "]";
+		if (settleIterations.getCount() > 0)
+			ret += " settleIterations[" + settleIterations + "]";
+		return ret;
+	}
+}
@@ -0,0 +1,489 @@
+package braincraft;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author Chris Donahue
+ *
+ *         GenomeStore keeps the genomes of very large Populations off the
+ *         heap. With Population.offHeapGenomes on, each DNA is packed into
+ *         the Arena of its generation as soon as it is registered: its genes
+ *         and nodes as fixed-size records in direct memory, followed by
+ *         their indexes sorted by innovation and by ID for lookups. The DNA
+ *         then drops its HashMaps, Genes and NNodes and reads the records
+ *         through a Genome view instead.
+ *
+ *         Records keep the order the DNA's HashMaps iterated in, so packed
+ *         DNA hands out its genes and nodes in the same order heap DNA
+ *         does, and a seeded run breeds the same genomes either way.
+ *
+ *         An Arena hands out space from large chunks one genome after
+ *         another, so a generation lies in a few contiguous blocks. When the
+ *         next generation has been bred, its parents' Arena is released in
+ *         one go and its chunks go on a free list, where the next Arena takes
+ *         them from. Direct memory is allocated only while the Population is
+ *         growing, and the garbage collector never traces genomes.
+ *
+ *         Reading a Genome whose Arena has been released throws an
+ *         IllegalStateException, since its chunks may already hold another
+ *         generation.
+ */
+public class GenomeStore {
+	/**
+	 * Chunk size used when none is given
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	/**
+	 * Bytes per gene: innovation, start, end and enabled as ints, then the
+	 * weight
+	 */
+	private static final int GENE_BYTES = 24;
+	/**
+	 * Bytes per node: ID and type
+	 */
+	private static final int NODE_BYTES = 8;
+	/**
+	 * Bytes per entry of the sorted indexes: a record number
+	 */
+	private static final int INDEX_BYTES = 4;
+
+	// FIELDS:
+	/**
+	 * Size of the chunks Arenas allocate from
+	 */
+	private final int chunkSize;
+	/**
+	 * Chunks released by dead generations, ready for the next Arena
+	 */
+	private final ArrayDeque<ByteBuffer> freeChunks;
+	/**
+	 * Direct memory held by this store, in use or free
+	 */
+	private long reservedBytes;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs a store with DEFAULT_CHUNK_SIZE chunks
+	 */
+	public GenomeStore() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructs a store
+	 *
+	 * @param chunkSize
+	 *            bytes per chunk of direct memory. Genomes larger than a
+	 *            chunk get a chunk of their own.
+	 */
+	public GenomeStore(int chunkSize) {
+		if (chunkSize < GENE_BYTES)
+			throw new IllegalArgumentException("Chunk size too small: "
+					+ chunkSize);
+		this.chunkSize = chunkSize;
+		freeChunks = new ArrayDeque<ByteBuffer>();
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Gets the direct memory this store holds, in use or on the free list
+	 *
+	 * @return bytes of direct memory
+	 */
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	/**
+	 * Gets the direct memory on the free list
+	 *
+	 * @return bytes of direct memory no generation is using
+	 */
+	public synchronized long getFreeBytes() {
+		return (long) freeChunks.size() * chunkSize;
+	}
+
+	public synchronized String toString() {
+		return "GenomeStore: " + reservedBytes / 1024 + " KB reserved, "
+				+ getFreeBytes() / 1024 + " KB free";
+	}
+
+	// LIBRARY METHODS:
+	/**
+	 * Opens an Arena for the genomes of a new generation
+	 *
+	 * @return an empty Arena
+	 */
+	protected Arena openArena() {
+		return new Arena(this);
+	}
+
+	/**
+	 * Gets a chunk from the free list, or allocates one
+	 *
+	 * @param bytes
+	 *            least size of the chunk
+	 * @return a chunk at least bytes long
+	 */
+	private synchronized ByteBuffer takeChunk(int bytes) {
+		if (bytes <= chunkSize && !freeChunks.isEmpty())
+			return freeChunks.pop();
+		ByteBuffer chunk = ByteBuffer.allocateDirect(
+				Math.max(bytes, chunkSize)).order(ByteOrder.nativeOrder());
+		reservedBytes += chunk.capacity();
+		return chunk;
+	}
+
+	/**
+	 * Puts the chunks of a released Arena on the free list. Oversized chunks
+	 * are dropped and left for the garbage collector to free.
+	 *
+	 * @param chunks
+	 *            chunks no longer in use
+	 */
+	private synchronized void recycle(List<ByteBuffer> chunks) {
+		for (ByteBuffer chunk : chunks) {
+			if (chunk.capacity() == chunkSize)
+				freeChunks.push(chunk);
+			else
+				reservedBytes -= chunk.capacity();
+		}
+	}
+
+	// HELPER CLASSES:
+	/**
+	 * The genomes of one generation, packed one after another into chunks
+	 * of direct memory and released all at once. Genomes are packed by the
+	 * thread breeding the generation; Genome views may be read from any
+	 * thread.
+	 */
+	protected static final class Arena {
+		private final GenomeStore store;
+		private final ArrayList<ByteBuffer> chunks;
+		private ByteBuffer current;
+		private int position;
+		private volatile boolean released;
+
+		private Arena(GenomeStore store) {
+			this.store = store;
+			chunks = new ArrayList<ByteBuffer>();
+		}
+
+		/**
+		 * Packs a genome into this Arena
+		 *
+		 * @param genes
+		 *            every gene of the genome, in the order they are to be
+		 *            handed out
+		 * @param nodes
+		 *            every node of the genome, in the order they are to be
+		 *            handed out
+		 * @return a view of the packed genome
+		 */
+		protected Genome pack(Collection<Gene> genes, Collection<NNode> nodes) {
+			int bytes = bytesFor(genes.size(), nodes.size());
+			ByteBuffer chunk = reserve(bytes);
+			int offset = position - bytes;
+
+			// Each record's key and number, to be sorted into the indexes
+			long[] geneKeys = new long[genes.size()];
+			int at = offset;
+			int i = 0;
+			for (Gene g : genes) {
+				chunk.putInt(at, g.innovation);
+				chunk.putInt(at + 4, g.start);
+				chunk.putInt(at + 8, g.end);
+				chunk.putInt(at + 12, g.enabled ? 1 : 0);
+				chunk.putDouble(at + 16, g.weight);
+				at += GENE_BYTES;
+				geneKeys[i] = sortKey(g.innovation, i);
+				i++;
+			}
+			long[] nodeKeys = new long[nodes.size()];
+			i = 0;
+			for (NNode n : nodes) {
+				chunk.putInt(at, n.ID);
+				chunk.putInt(at + 4, n.type);
+				at += NODE_BYTES;
+				nodeKeys[i] = sortKey(n.ID, i);
+				i++;
+			}
+
+			Arrays.sort(geneKeys);
+			for (long key : geneKeys) {
+				chunk.putInt(at, (int) key);
+				at += INDEX_BYTES;
+			}
+			Arrays.sort(nodeKeys);
+			for (long key : nodeKeys) {
+				chunk.putInt(at, (int) key);
+				at += INDEX_BYTES;
+			}
+			return new Genome(this, chunk, offset, genes.size(), nodes.size());
+		}
+
+		/**
+		 * Copies a genome packed in another Arena into this one, records,
+		 * order and indexes alike
+		 *
+		 * @param g
+		 *            the genome to copy
+		 * @return a view of the copy
+		 */
+		protected Genome copy(Genome g) {
+			g.checkLive();
+			int bytes = bytesFor(g.numGenes, g.numNodes);
+			ByteBuffer chunk = reserve(bytes);
+			int offset = position - bytes;
+			chunk.put(offset, g.chunk, g.offset, bytes);
+			return new Genome(this, chunk, offset, g.numGenes, g.numNodes);
+		}
+
+		/**
+		 * Reserves space in the current chunk, taking a new chunk if it is
+		 * full
+		 *
+		 * @param bytes
+		 *            bytes to reserve, ending at position
+		 * @return the chunk the space is in
+		 */
+		private ByteBuffer reserve(int bytes) {
+			if (released)
+				throw new IllegalStateException("Arena has been released");
+			if (current == null || position + bytes > current.capacity()) {
+				current = store.takeChunk(bytes);
+				chunks.add(current);
+				position = 0;
+			}
+			position += bytes;
+			return current;
+		}
+
+		/**
+		 * Whether this Arena has been released
+		 *
+		 * @return true if its genomes can no longer be read
+		 */
+		protected boolean isReleased() {
+			return released;
+		}
+
+		/**
+		 * Releases every genome in this Arena at once, returning its chunks
+		 * to the store's free list
+		 */
+		protected void release() {
+			if (released)
+				return;
+			released = true;
+			store.recycle(chunks);
+			chunks.clear();
+			current = null;
+		}
+	}
+
+	/**
+	 * Bytes a packed genome takes: its records and indexes, rounded up so the
+	 * next genome's weights stay 8-byte aligned
+	 *
+	 * @param numGenes
+	 *            number of genes
+	 * @param numNodes
+	 *            number of nodes
+	 * @return bytes to reserve
+	 */
+	private static int bytesFor(int numGenes, int numNodes) {
+		int bytes = numGenes * (GENE_BYTES + INDEX_BYTES) + numNodes
+				* (NODE_BYTES + INDEX_BYTES);
+		return (bytes + 7) & ~7;
+	}
+
+	/**
+	 * Packs a record's key and number into a long that sorts by key
+	 *
+	 * @param key
+	 *            innovation or node ID
+	 * @param record
+	 *            number of the record
+	 * @return a long whose low int is the record number
+	 */
+	private static long sortKey(int key, int record) {
+		return ((long) key << 32) | record;
+	}
+
+	/**
+	 * A read-only view of one genome packed in an Arena
+	 */
+	protected static final class Genome {
+		private final Arena arena;
+		private final ByteBuffer chunk;
+		private final int offset;
+		private final int numGenes;
+		private final int numNodes;
+
+		private Genome(Arena arena, ByteBuffer chunk, int offset,
+				int numGenes, int numNodes) {
+			this.arena = arena;
+			this.chunk = chunk;
+			this.offset = offset;
+			this.numGenes = numGenes;
+			this.numNodes = numNodes;
+		}
+
+		protected Arena getArena() {
+			return arena;
+		}
+
+		protected int numGenes() {
+			return numGenes;
+		}
+
+		protected int numNodes() {
+			return numNodes;
+		}
+
+		/**
+		 * Finds a gene by binary search over the innovation index
+		 *
+		 * @param innovation
+		 *            innovation number to look for
+		 * @return index of the gene, or -1 if the genome does not have it
+		 */
+		protected int indexOf(int innovation) {
+			checkLive();
+			int base = offset + numGenes * GENE_BYTES + numNodes * NODE_BYTES;
+			int low = 0;
+			int high = numGenes - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int index = chunk.getInt(base + mid * INDEX_BYTES);
+				int inno = chunk.getInt(offset + index * GENE_BYTES);
+				if (inno < innovation)
+					low = mid + 1;
+				else if (inno > innovation)
+					high = mid - 1;
+				else
+					return index;
+			}
+			return -1;
+		}
+
+		/**
+		 * Gets the innovation number of a gene
+		 *
+		 * @param index
+		 *            index of the gene, between 0 and numGenes()
+		 * @return its innovation number
+		 */
+		protected int innovation(int index) {
+			checkLive();
+			return chunk.getInt(offset + index * GENE_BYTES);
+		}
+
+		/**
+		 * Gets the weight of a gene
+		 *
+		 * @param index
+		 *            index of the gene, see indexOf()
+		 * @return its weight
+		 */
+		protected double weight(int index) {
+			checkLive();
+			return chunk.getDouble(offset + index * GENE_BYTES + 16);
+		}
+
+		/**
+		 * Makes a Gene out of a packed gene
+		 *
+		 * @param index
+		 *            index of the gene, see indexOf()
+		 * @return a new Gene
+		 */
+		protected Gene gene(int index) {
+			checkLive();
+			int at = offset + index * GENE_BYTES;
+			return new Gene(chunk.getInt(at), chunk.getInt(at + 4),
+					chunk.getInt(at + 8), chunk.getDouble(at + 16),
+					chunk.getInt(at + 12) != 0);
+		}
+
+		/**
+		 * Finds a node by binary search over the node ID index
+		 *
+		 * @param id
+		 *            node ID to look for
+		 * @return index of the node, or -1 if the genome does not have it
+		 */
+		protected int nodeIndexOf(int id) {
+			checkLive();
+			int records = offset + numGenes * GENE_BYTES;
+			int base = records + numNodes * NODE_BYTES + numGenes * INDEX_BYTES;
+			int low = 0;
+			int high = numNodes - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int index = chunk.getInt(base + mid * INDEX_BYTES);
+				int nid = chunk.getInt(records + index * NODE_BYTES);
+				if (nid < id)
+					low = mid + 1;
+				else if (nid > id)
+					high = mid - 1;
+				else
+					return index;
+			}
+			return -1;
+		}
+
+		/**
+		 * Makes an NNode out of a packed node
+		 *
+		 * @param index
+		 *            index of the node, see nodeIndexOf()
+		 * @return a new NNode
+		 */
+		protected NNode node(int index) {
+			checkLive();
+			int at = offset + numGenes * GENE_BYTES + index * NODE_BYTES;
+			return new NNode(chunk.getInt(at), chunk.getInt(at + 4));
+		}
+
+		/**
+		 * Makes Genes out of every packed gene
+		 *
+		 * @return new Genes in the order they were packed
+		 */
+		protected List<Gene> genes() {
+			ArrayList<Gene> genes = new ArrayList<Gene>(numGenes);
+			for (int i = 0; i < numGenes; i++)
+				genes.add(gene(i));
+			return genes;
+		}
+
+		/**
+		 * Makes NNodes out of every packed node
+		 *
+		 * @return new NNodes by ID, put in the order they were packed
+		 */
+		protected HashMap<Integer, NNode> nodes() {
+			HashMap<Integer, NNode> nodes = new HashMap<Integer, NNode>();
+			for (int i = 0; i < numNodes; i++) {
+				NNode n = node(i);
+				nodes.put(n.ID, n);
+			}
+			return nodes;
+		}
+
+		private void checkLive() {
+			if (arena.released)
+				throw new IllegalStateException(
+						"Genome belongs to a generation that has been released");
+		}
+	}
+}
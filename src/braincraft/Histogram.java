@@ -0,0 +1,205 @@
+package braincraft;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Chris Donahue
+ *
+ *         A Histogram counts non-negative long values in power-of-two buckets.
+ *         Bucket 0 holds 0, bucket i holds values from 2^(i-1) up to 2^i - 1.
+ *         Recording never locks (every bucket is a striped LongAdder), so many
+ *         threads can record into one Histogram on a hot path.
+ */
+public class Histogram {
+	/**
+	 * Number of buckets, enough for any long
+	 */
+	public static final int BUCKETS = 64;
+
+	// FIELDS:
+	/**
+	 * Count of values in each bucket
+	 */
+	private final LongAdder[] buckets;
+	/**
+	 * Sum of all recorded values
+	 */
+	private final LongAdder sum;
+	/**
+	 * Smallest recorded value
+	 */
+	private final LongAccumulator min;
+	/**
+	 * Largest recorded value
+	 */
+	private final LongAccumulator max;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs an empty Histogram
+	 */
+	public Histogram() {
+		buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = new LongAdder();
+		sum = new LongAdder();
+		min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+		max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Records a value. Negative values are counted as 0.
+	 *
+	 * @param value
+	 *            the value to record
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		buckets[bucketOf(value)].increment();
+		sum.add(value);
+		min.accumulate(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Gets the number of recorded values
+	 *
+	 * @return the number of values recorded so far
+	 */
+	public long getCount() {
+		long count = 0;
+		for (LongAdder b : buckets)
+			count += b.sum();
+		return count;
+	}
+
+	/**
+	 * Gets the sum of the recorded values
+	 *
+	 * @return the sum of all values recorded so far
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Gets the mean of the recorded values
+	 *
+	 * @return the mean, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) getSum() / count;
+	}
+
+	/**
+	 * Gets the smallest recorded value
+	 *
+	 * @return the smallest value, or 0 if nothing was recorded
+	 */
+	public long getMin() {
+		long m = min.get();
+		return m == Long.MAX_VALUE ? 0 : m;
+	}
+
+	/**
+	 * Gets the largest recorded value
+	 *
+	 * @return the largest value, or 0 if nothing was recorded
+	 */
+	public long getMax() {
+		long m = max.get();
+		return m == Long.MIN_VALUE ? 0 : m;
+	}
+
+	/**
+	 * Gets the count in every bucket
+	 *
+	 * @return an array of BUCKETS counts
+	 */
+	public long[] getBucketCounts() {
+		long[] ret = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			ret[i] = buckets[i].sum();
+		return ret;
+	}
+
+	/**
+	 * Estimates a percentile. The answer is the top of the bucket the
+	 * percentile falls in, so it is at most twice the true value, and never
+	 * more than the largest recorded value.
+	 *
+	 * @param p
+	 *            the percentile, between 0 and 100
+	 * @return the estimated value, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double p) {
+		long[] counts = getBucketCounts();
+		long total = 0;
+		for (long c : counts)
+			total += c;
+		if (total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(p / 100.0 * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0)
+				return Math.min(upperBound(i), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * Moves everything recorded so far into a new Histogram and empties this
+	 * one. Values recorded while draining end up in one or the other.
+	 *
+	 * @return a Histogram holding what this one held
+	 */
+	public Histogram drain() {
+		Histogram ret = new Histogram();
+		for (int i = 0; i < BUCKETS; i++)
+			ret.buckets[i].add(buckets[i].sumThenReset());
+		ret.sum.add(sum.sumThenReset());
+		ret.min.accumulate(min.getThenReset());
+		ret.max.accumulate(max.getThenReset());
+		return ret;
+	}
+
+	public String toString() {
+		return "count=" + getCount() + " mean=" + getMean() + " min="
+				+ getMin() + " p50=" + getPercentile(50) + " p99="
+				+ getPercentile(99) + " max=" + getMax();
+	}
+
+	// HELPERS:
+	/**
+	 * Finds the bucket for a value
+	 *
+	 * @param value
+	 *            a non-negative value
+	 * @return the bucket index
+	 */
+	private static int bucketOf(long value) {
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	/**
+	 * Largest value that falls in a bucket
+	 *
+	 * @param bucket
+	 *            the bucket index
+	 * @return the largest value in that bucket
+	 */
+	private static long upperBound(int bucket) {
+		if (bucket == 0)
+			return 0;
+		if (bucket >= 63)
+			return Long.MAX_VALUE;
+		return (1L << bucket) - 1;
+	}
+}
@@ -0,0 +1,69 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         BrainKernel that walks a BrainLayout's arrays, used by BrainCompiler
+ *         for networks too large to fit in one generated method. Sums genes in
+ *         the same order as Brain.pumpNet, so its double outputs are identical
+ *         to it. Also pumps in float precision, the same way the generated
+ *         float kernels do.
+ */
+class InterpretedKernel implements BrainKernel, FloatBrainKernel {
+	private final BrainLayout layout;
+	private final double[] weights;
+	private final float[] floatWeights;
+
+	/**
+	 * Constructs a kernel for one network
+	 * 
+	 * @param layout
+	 *            the network's topology
+	 * @param weights
+	 *            its weights, in gene order
+	 */
+	InterpretedKernel(BrainLayout layout, double[] weights) {
+		this.layout = layout;
+		this.weights = weights;
+		floatWeights = new float[weights.length];
+		for (int g = 0; g < weights.length; g++)
+			floatWeights[g] = (float) weights[g];
+	}
+
+	public void pump(double[] inputvals, double[] src, double[] dst) {
+		Activation activation = layout.activation;
+		double coefficient = layout.coefficient;
+		int[] inputNodes = layout.inputNodes;
+		for (int i = 0; i < inputNodes.length; i++)
+			dst[inputNodes[i]] = activation.apply(inputvals[i], coefficient);
+
+		int[] computeNodes = layout.computeNodes;
+		int[] geneOffsets = layout.geneOffsets;
+		int[] geneSources = layout.geneSources;
+		for (int k = 0; k < computeNodes.length; k++) {
+			double sum = 0.0;
+			for (int g = geneOffsets[k]; g < geneOffsets[k + 1]; g++)
+				sum += weights[g] * src[geneSources[g]];
+			dst[computeNodes[k]] = activation.apply(sum, coefficient);
+		}
+	}
+
+	public void pump(double[] inputvals, float[] src, float[] dst) {
+		Activation activation = layout.activation;
+		double coefficient = layout.coefficient;
+		int[] inputNodes = layout.inputNodes;
+		for (int i = 0; i < inputNodes.length; i++)
+			dst[inputNodes[i]] = (float) activation.apply(inputvals[i],
+					coefficient);
+
+		int[] computeNodes = layout.computeNodes;
+		int[] geneOffsets = layout.geneOffsets;
+		int[] geneSources = layout.geneSources;
+		for (int k = 0; k < computeNodes.length; k++) {
+			float sum = 0.0f;
+			for (int g = geneOffsets[k]; g < geneOffsets[k + 1]; g++)
+				sum += floatWeights[g] * src[geneSources[g]];
+			dst[computeNodes[k]] = (float) activation.apply(sum, coefficient);
+		}
+	}
+}
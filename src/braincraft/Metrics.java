@@ -0,0 +1,297 @@
+package braincraft;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Chris Donahue
+ *
+ *         Metrics collects timers, counters and histograms for one Population
+ *         while a generation runs, and turns them into a GenerationMetrics
+ *         when the generation ends. Every recording method is lock-free, so
+ *         Brains can be evaluated on many threads without contending here.
+ *
+ *         Finished generations can be polled with getLatest() or pushed to a
+ *         MetricsListener.
+ */
+public class Metrics {
+	/**
+	 * Phases of a generation that are timed
+	 */
+	public enum Phase {
+		/**
+		 * Building Brains out of DNA in getBrain() and getBrains()
+		 */
+		ISSUE,
+		/**
+		 * Time from a Brain being issued until its fitness is reported,
+		 * summed over all Brains (so it can exceed wall time when Brains are
+		 * evaluated in parallel)
+		 */
+		EVALUATE,
+		/**
+		 * All of repopulate() and postPopulate() that bred this generation,
+		 * 0 for the first
+		 */
+		REPOPULATE,
+		/**
+		 * Dividing fitness among Tribe members
+		 */
+		FITNESS_SHARING,
+		/**
+		 * Sorting Tribes and removing their weakest members
+		 */
+		CULLING,
+		/**
+		 * Crossing and mutating parents
+		 */
+		CROSSOVER,
+		/**
+		 * Placing new DNA into Tribes
+		 */
+		SPECIATION,
+		/**
+		 * From the call that found the last generation finished until the
+		 * first Brain of this one was issued: breeding this generation and
+		 * building the first Brains handed out. Counted in the generation it
+		 * leads into, 0 for the first.
+		 */
+		PAUSE
+	}
+
+	/**
+	 * Things that are counted
+	 */
+	public enum Counter {
+		BRAINS_ISSUED, BRAINS_EVALUATED, INNOVATIONS, TRIBES_CREATED, TRIBES_ERADICATED,
+		/**
+		 * DNA whose fitness was found in the FitnessCache instead of being
+		 * tested
+		 */
+		FITNESS_CACHE_HITS,
+		/**
+		 * DNA looked up in the FitnessCache and issued for testing
+		 */
+		FITNESS_CACHE_MISSES,
+		/**
+		 * DNA copied unchanged into the next generation by elitism
+		 */
+		ELITES
+	}
+
+	// FIELDS:
+	/**
+	 * Nanoseconds spent in each Phase this generation
+	 */
+	private final LongAdder[] nanos;
+	/**
+	 * Value of each Counter this generation
+	 */
+	private final LongAdder[] counters;
+	/**
+	 * Nanoseconds each Brain spent being evaluated this generation
+	 */
+	private final Histogram evaluationNanos;
+	/**
+	 * Number of genes in each evaluated DNA this generation
+	 */
+	private final Histogram genomeSizes;
+	/**
+	 * Pumps used by each Brain.pumpUntilStable() call this generation
+	 */
+	private final Histogram settleIterations;
+	/**
+	 * Number of Tribes (or 1 for unspeciated Populations)
+	 */
+	private volatile int tribes;
+	/**
+	 * The most recently finished generation
+	 */
+	private volatile GenerationMetrics latest;
+	/**
+	 * Listeners told about every finished generation
+	 */
+	private final CopyOnWriteArrayList<MetricsListener> listeners;
+
+	// CONSTRUCTORS:
+	/**
+	 * Constructs empty Metrics
+	 */
+	protected Metrics() {
+		nanos = new LongAdder[Phase.values().length];
+		for (int i = 0; i < nanos.length; i++)
+			nanos[i] = new LongAdder();
+		counters = new LongAdder[Counter.values().length];
+		for (int i = 0; i < counters.length; i++)
+			counters[i] = new LongAdder();
+		evaluationNanos = new Histogram();
+		genomeSizes = new Histogram();
+		settleIterations = new Histogram();
+		tribes = 1;
+		listeners = new CopyOnWriteArrayList<MetricsListener>();
+	}
+
+	// PUBLIC METHODS:
+	/**
+	 * Gets the most recently finished generation's metrics
+	 *
+	 * @return the last GenerationMetrics or null if no generation has finished
+	 */
+	public GenerationMetrics getLatest() {
+		return latest;
+	}
+
+	/**
+	 * Gets the time spent in a phase so far this generation
+	 *
+	 * @param p
+	 *            the phase
+	 * @return nanoseconds spent in p since the generation started
+	 */
+	public long getNanos(Phase p) {
+		return nanos[p.ordinal()].sum();
+	}
+
+	/**
+	 * Gets a counter's value so far this generation
+	 *
+	 * @param c
+	 *            the counter
+	 * @return the count since the generation started
+	 */
+	public long getCount(Counter c) {
+		return counters[c.ordinal()].sum();
+	}
+
+	/**
+	 * Registers a listener for finished generations. Listeners are called on
+	 * the thread that reports a generation's last fitness, so they should be
+	 * quick.
+	 *
+	 * @param l
+	 *            the listener to add
+	 */
+	public void addListener(MetricsListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Removes a listener added with addListener
+	 *
+	 * @param l
+	 *            the listener to remove
+	 */
+	public void removeListener(MetricsListener l) {
+		listeners.remove(l);
+	}
+
+	// LIBRARY METHODS:
+	/**
+	 * Adds time to a phase
+	 *
+	 * @param p
+	 *            the phase
+	 * @param start
+	 *            System.nanoTime() when the phase started
+	 */
+	protected void time(Phase p, long start) {
+		nanos[p.ordinal()].add(System.nanoTime() - start);
+	}
+
+	/**
+	 * Adds a number of nanoseconds to a phase
+	 *
+	 * @param p
+	 *            the phase
+	 * @param n
+	 *            nanoseconds to add
+	 */
+	protected void addNanos(Phase p, long n) {
+		nanos[p.ordinal()].add(n);
+	}
+
+	/**
+	 * Increments a counter
+	 *
+	 * @param c
+	 *            the counter
+	 */
+	protected void increment(Counter c) {
+		counters[c.ordinal()].increment();
+	}
+
+	/**
+	 * Records how long a Brain took to evaluate
+	 *
+	 * @param n
+	 *            nanoseconds from issue to fitness report
+	 */
+	protected void recordEvaluation(long n) {
+		nanos[Phase.EVALUATE.ordinal()].add(n);
+		evaluationNanos.record(n);
+	}
+
+	/**
+	 * Records the size of an evaluated genome
+	 *
+	 * @param genes
+	 *            number of genes in the DNA
+	 */
+	protected void recordGenomeSize(int genes) {
+		genomeSizes.record(genes);
+	}
+
+	/**
+	 * Records how many pumps a Brain needed to settle
+	 * 
+	 * @param iters
+	 *            pumps done by one pumpUntilStable() call
+	 */
+	protected void recordSettle(int iters) {
+		settleIterations.record(iters);
+	}
+
+	/**
+	 * Sets the current number of Tribes
+	 *
+	 * @param n
+	 *            number of Tribes
+	 */
+	protected void setTribes(int n) {
+		tribes = n;
+	}
+
+	/**
+	 * Ends a generation: packages everything recorded into a
+	 * GenerationMetrics, resets for the next generation and notifies
+	 * listeners.
+	 *
+	 * @param populationID
+	 *            ID of the Population
+	 * @param generation
+	 *            the generation that finished
+	 * @param averageFitness
+	 *            average fitness of the generation
+	 * @param bestFitness
+	 *            best fitness of the generation
+	 * @return the finished generation's metrics
+	 */
+	protected GenerationMetrics endGeneration(int populationID,
+			int generation, double averageFitness, double bestFitness) {
+		long[] phaseNanos = new long[nanos.length];
+		for (int i = 0; i < nanos.length; i++)
+			phaseNanos[i] = nanos[i].sumThenReset();
+		long[] counts = new long[counters.length];
+		for (int i = 0; i < counters.length; i++)
+			counts[i] = counters[i].sumThenReset();
+
+		GenerationMetrics m = new GenerationMetrics(populationID, generation,
+				phaseNanos, counts, tribes, averageFitness, bestFitness,
+				evaluationNanos.drain(), genomeSizes.drain(),
+				settleIterations.drain());
+		latest = m;
+		for (MetricsListener l : listeners)
+			l.generationFinished(m);
+		return m;
+	}
+}
@@ -0,0 +1,19 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ *
+ *         A MetricsListener is told about every generation a Population
+ *         finishes. Register one with Population.getMetrics().addListener().
+ */
+public interface MetricsListener {
+	/**
+	 * Called once every Brain of a generation has been evaluated, on the
+	 * thread that reported the last fitness. The next generation has not
+	 * been bred yet.
+	 *
+	 * @param m
+	 *            metrics for the finished generation
+	 */
+	public void generationFinished(GenerationMetrics m);
+}
@@ -0,0 +1,13 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         A kernel BrainCompiler made for one network: a BrainKernel for
+ *         Brains in double precision or a FloatBrainKernel for Brains in float
+ *         precision. The compiler's cache and CompiledBrain hold kernels as
+ *         NetworkKernels, and CompiledBrain picks the pump that matches its
+ *         Brain's precision.
+ */
+interface NetworkKernel {
+}
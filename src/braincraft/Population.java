@@ -5,8 +5,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Chris Donahue
@@ -26,8 +33,45 @@ public abstract class Population {
 	public double nodeMutationRate;
 	public double disabledRate;
 	public double inheritFromHigherFitRate;
+	/**
+	 * Evaluate acyclic Brains in a single pass, see Brain.setFeedForward()
+	 */
+	public boolean feedForward;
+	/**
+	 * Function node sums are passed through in every Brain
+	 */
+	public Activation activation;
+	/**
+	 * Compile and save Brains in 32-bit float precision, see
+	 * Brain.setFloatPrecision()
+	 */
+	public boolean floatPrecision;
+	/**
+	 * Look up DNA in the FitnessCache before issuing it, and skip testing DNA
+	 * identical to DNA already tested. Only for deterministic fitness
+	 * functions, see FitnessCache.
+	 */
+	public boolean memoizeFitness;
+	/**
+	 * The fitness function always scores a genome the same, so elites carried
+	 * over by TribePopulation keep their original's fitness and Brain instead
+	 * of being tested again. Each tested DNA holds on to its Brain while it
+	 * may still be carried over.
+	 */
+	public boolean deterministicFitness;
+	/**
+	 * Pack each generation's DNA off the heap into the GenomeStore, for very
+	 * large Populations. Ignored while the context gathers statistics, which
+	 * keeps every DNA readable.
+	 */
+	public boolean offHeapGenomes;
 
 	// SUBCLASS ACCESSIBLE FIELDS:
+	/**
+	 * The run this Population belongs to: its defaults, random numbers, logs
+	 * and statistics
+	 */
+	protected final BraincraftContext context;
 	/**
 	 * Whether this population is alive or not
 	 */
@@ -60,8 +104,27 @@ public abstract class Population {
 	 * List of Brains that an experiment has currently requested
 	 */
 	protected LinkedList<Brain> issued;
+	/**
+	 * Timers and counters for the current generation
+	 */
+	protected Metrics metrics;
+	/**
+	 * Fitnesses of recently tested DNA, used when memoizeFitness is on
+	 */
+	protected FitnessCache fitnessCache;
+	/**
+	 * Direct memory for DNA packed off the heap, used when offHeapGenomes is
+	 * on
+	 */
+	protected GenomeStore genomeStore;
 
 	// SUPER ONLY FIELDS:
+	/**
+	 * Most generations in a row answered entirely from the FitnessCache
+	 * before DNA is issued regardless, so a converged Population still moves
+	 * on when its callers ask for Brains
+	 */
+	private static final int MAX_CACHED_GENERATIONS = 100;
 	/**
 	 * The number of completed generations of this Population
 	 */
@@ -78,6 +141,33 @@ public abstract class Population {
 	 * Keeps track of the Nodes in this Population
 	 */
 	private ArrayList<NNode> nodes;
+	/**
+	 * Average fitness of the last finished generation
+	 */
+	private double lastAverageFitness;
+	/**
+	 * Best fitness of the last finished generation
+	 */
+	private double lastBestFitness;
+	/**
+	 * Flight Recorder event for the generation in progress
+	 */
+	private GenerationEvent generationEvent;
+	/**
+	 * Builds Brains for newly bred DNA ahead of time, null to build each Brain
+	 * as it is issued
+	 */
+	private Executor brainBuilder;
+	/**
+	 * When the last generation was found finished, 0 once the first Brain of
+	 * the next one has been issued
+	 */
+	private long pauseStart;
+	/**
+	 * Arena the current generation's DNA is packed into, opened when the
+	 * first DNA is packed
+	 */
+	private GenomeStore.Arena genomeArena;
 
 	// CONSTRUCTORS:
 	/**
@@ -91,17 +181,35 @@ public abstract class Population {
 	 *            number of output nodes for this Population
 	 */
 	protected Population(int popSize, int in, int out) {
+		this(Braincraft.getDefaultContext(), popSize, in, out);
+	}
+
+	/**
+	 * Constructor for a new Population in a given context.
+	 * 
+	 * @param context
+	 *            the run this Population belongs to
+	 * @param popSize
+	 *            the size of this Population
+	 * @param in
+	 *            number of input nodes for this Population
+	 * @param out
+	 *            number of output nodes for this Population
+	 */
+	protected Population(BraincraftContext context, int popSize, int in,
+			int out) {
+		this.context = context;
 		initialSetup();
 
-		ID = Braincraft.getNewPopulationID(this);
+		ID = context.getNewPopulationID(this);
 		numInputs = in;
 		numOutputs = out;
 		populationSize = popSize;
-		Braincraft.report("POPULATION " + ID + " has been created with "
+		context.report("POPULATION " + ID + " has been created with "
 				+ numInputs + " inputs, " + numOutputs
 				+ " outputs, and a population size of " + popSize + ".");
 
-		Braincraft.report("POPULATION " + ID + ": Start of generation "
+		context.report("POPULATION " + ID + ": Start of generation "
 				+ currentGeneration + ".");
 
 		for (int i = 0; i < numInputs; i++) {
@@ -127,7 +235,23 @@ public abstract class Population {
 	 *            the number of outputs for this Population
 	 */
 	protected Population(int numInputs, int numOutputs) {
-		this(Braincraft.populationSize, numInputs, numOutputs);
+		this(Braincraft.getDefaultContext(), numInputs, numOutputs);
+	}
+
+	/**
+	 * Constructor for a new Population in a given context with its default
+	 * population size.
+	 * 
+	 * @param context
+	 *            the run this Population belongs to
+	 * @param numInputs
+	 *            the number of inputs for this Population
+	 * @param numOutputs
+	 *            the number of outputs for this Population
+	 */
+	protected Population(BraincraftContext context, int numInputs,
+			int numOutputs) {
+		this(context, context.populationSize, numInputs, numOutputs);
 	}
 
 	/**
@@ -139,15 +263,31 @@ public abstract class Population {
 	 *            seed Brain
 	 */
 	protected Population(int popSize, Brain b) {
+		this(Braincraft.getDefaultContext(), popSize, b);
+	}
+
+	/**
+	 * Constructor for a new Population in a given context from a seed neural
+	 * network.
+	 * 
+	 * @param context
+	 *            the run this Population belongs to
+	 * @param popSize
+	 *            size of the Population
+	 * @param b
+	 *            seed Brain
+	 */
+	protected Population(BraincraftContext context, int popSize, Brain b) {
+		this.context = context;
 		initialSetup();
 
-		ID = Braincraft.getNewPopulationID(this);
+		ID = context.getNewPopulationID(this);
 		populationSize = popSize;
 
-		Braincraft.report("POPULATION " + ID + " has been created from brain "
+		context.report("POPULATION " + ID + " has been created from brain "
 				+ b.ID + ".");
 
-		Braincraft.report("POPULATION " + ID + ": Start of generation "
+		context.report("POPULATION " + ID + ": Start of generation "
 				+ currentGeneration + ".");
 
 		numInputs = b.inputs.length;
@@ -219,14 +359,70 @@ public abstract class Population {
 		return currentGeneration;
 	}
 
+	/**
+	 * Gets the context this Population belongs to
+	 * 
+	 * @return the Population's BraincraftContext
+	 */
+	public BraincraftContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Gets the metrics for this Population. Poll getLatest() on it or add a
+	 * MetricsListener to see each generation as soon as its last fitness is
+	 * reported.
+	 * 
+	 * @return this Population's Metrics
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Builds the Brain of each newly bred DNA in the background as soon as it
+	 * is registered, so breeding the next generation overlaps with building
+	 * its Brains and evaluators find them ready when they ask. A Brain still
+	 * waiting when it is issued is built by the caller instead. See
+	 * Metrics.Phase.PAUSE for the time callers wait between generations.
+	 * 
+	 * @param builder
+	 *            runs the builds, for example an idle evaluation pool; null
+	 *            to build each Brain as it is issued again
+	 */
+	public void prebuildBrains(Executor builder) {
+		brainBuilder = builder;
+	}
+
+	/**
+	 * Accessor method for the cache of tested fitnesses
+	 * 
+	 * @return the FitnessCache, only used when memoizeFitness is on
+	 */
+	public FitnessCache getFitnessCache() {
+		return fitnessCache;
+	}
+
+	/**
+	 * Accessor method for the off-heap store of DNA
+	 * 
+	 * @return the GenomeStore, only used when offHeapGenomes is on
+	 */
+	public GenomeStore getGenomeStore() {
+		return genomeStore;
+	}
+
 	/**
 	 * Accessor method for largest number of Brains you can currently get from a
-	 * call to getBrains()
+	 * call to getBrains(). With memoizeFitness on, DNA found in the
+	 * FitnessCache is reported as evaluated first and is not counted.
 	 * 
 	 * @return number of Brains in this current generation that have not been
 	 *         evaluated
 	 */
 	public int brainsAvailable() {
+		if (memoizeFitness)
+			answerFromCache();
 		return unevaluated.size();
 	}
 
@@ -249,21 +445,31 @@ public abstract class Population {
 		}
 
 		// if all evaluated, repopulate
-		if (evaluated.size() == populationSize && unevaluated.size() == 0
-				&& issued.size() == 0) {
-			incrementGeneration();
-			repopulate();
-			postPopulate();
-		}
+		prepareGeneration();
 
 		// check if num brains are available for delivery
 		if (num <= unevaluated.size()) {
+			long start = System.nanoTime();
+			BrainBuildEvent event = new BrainBuildEvent();
+			event.begin();
 			ArrayList<Brain> ret = new ArrayList<Brain>();
 			for (int i = 0; i < num; i++) {
 				DNA d = unevaluated.poll();
-				Brain b = d.DNAtoBrain();
+				Brain b = buildBrain(d);
 				ret.add(b);
 				issued.add(b);
+				metrics.increment(Metrics.Counter.BRAINS_ISSUED);
+			}
+			long now = System.nanoTime();
+			for (Brain b : ret)
+				b.issuedAt = now;
+			metrics.addNanos(Metrics.Phase.ISSUE, now - start);
+			endPause(now);
+			if (event.shouldCommit()) {
+				event.populationID = ID;
+				event.generation = currentGeneration;
+				event.count = num;
+				event.commit();
 			}
 			return ret;
 		} else {
@@ -282,17 +488,25 @@ public abstract class Population {
 			return null;
 		}
 
-		if (evaluated.size() == populationSize && unevaluated.size() == 0
-				&& issued.size() == 0) {
-			incrementGeneration();
-			repopulate();
-			postPopulate();
-		}
+		prepareGeneration();
 
 		if (!unevaluated.isEmpty()) {
+			long start = System.nanoTime();
+			BrainBuildEvent event = new BrainBuildEvent();
+			event.begin();
 			DNA d = unevaluated.poll();
-			Brain b = d.DNAtoBrain();
+			Brain b = buildBrain(d);
 			issued.add(b);
+			metrics.increment(Metrics.Counter.BRAINS_ISSUED);
+			b.issuedAt = System.nanoTime();
+			metrics.addNanos(Metrics.Phase.ISSUE, b.issuedAt - start);
+			endPause(b.issuedAt);
+			if (event.shouldCommit()) {
+				event.populationID = ID;
+				event.generation = currentGeneration;
+				event.count = 1;
+				event.commit();
+			}
 			return b;
 		} else {
 			return null;
@@ -312,15 +526,118 @@ public abstract class Population {
 		// TODO: Change issued data structure from Linked List once stable
 		if (issued.contains(b)) {
 			b.reportFitness(fitness);
+			if (deterministicFitness)
+				b.dna.testedBrain = b;
 			evaluated.add(b);
 			issued.remove(b);
-			Braincraft.report("POPULATION " + ID + ": Brain " + b.ID
+			metrics.recordEvaluation(System.nanoTime() - b.issuedAt);
+			metrics.increment(Metrics.Counter.BRAINS_EVALUATED);
+			if (memoizeFitness)
+				fitnessCache.put(b.dna.fitnessKey(), fitness);
+			context.report("POPULATION " + ID + ": Brain " + b.ID
 					+ " just died with fitness " + fitness + ".");
+			if (generationFinished())
+				endGeneration();
 		} else {
 			System.out.println("Shouldn't have done this");
 		}
 	}
 
+	/**
+	 * Tests every Brain left in the current generation, starting the next
+	 * generation first if the current one is finished. Each Brain is tested
+	 * by a task run on the Executor, so with a pool the Brains are tested in
+	 * parallel. Fitnesses are reported from the calling thread once every
+	 * test has finished, in the order the Brains were issued, so the next
+	 * generation is bred the same whichever order the tests finish in.
+	 *
+	 * Brains already taken with getBrain() and not yet reported are left
+	 * alone; the generation only finishes once they are reported too.
+	 *
+	 * @param f
+	 *            tests each Brain
+	 * @param executor
+	 *            runs the tests, see Evaluators
+	 * @return the number of Brains tested, 0 if the Population is dead
+	 * @throws RuntimeException
+	 *             the first exception thrown by f or by the Executor, after
+	 *             every test already started has finished. The fitnesses of
+	 *             the tests that finished are reported; the Brains whose
+	 *             tests failed or never ran go back to the generation, to be
+	 *             issued again by the next call.
+	 */
+	public int evaluateGeneration(final FitnessFunction f, Executor executor) {
+		if (!alive)
+			return 0;
+
+		prepareGeneration();
+		Collection<Brain> issue = getBrains(unevaluated.size());
+		if (issue == null || issue.isEmpty())
+			return 0;
+
+		final Brain[] brains = issue.toArray(new Brain[issue.size()]);
+		final double[] fitness = new double[brains.length];
+		final boolean[] tested = new boolean[brains.length];
+		final CountDownLatch done = new CountDownLatch(brains.length);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int i = 0; i < brains.length; i++) {
+			final int index = i;
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							fitness[index] = f.evaluate(brains[index]);
+							tested[index] = true;
+						} catch (Throwable t) {
+							failure.compareAndSet(null, t);
+						} finally {
+							done.countDown();
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				// The rest are never run, so stop waiting for them
+				failure.compareAndSet(null, e);
+				for (int j = i; j < brains.length; j++)
+					done.countDown();
+				break;
+			}
+		}
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		Throwable t = failure.get();
+		if (t != null) {
+			// Return the untested Brains first, so reporting the tested ones
+			// cannot finish the generation
+			for (int i = brains.length - 1; i >= 0; i--)
+				if (!tested[i])
+					returnBrain(brains[i]);
+			for (int i = 0; i < brains.length; i++)
+				if (tested[i])
+					reportFitness(brains[i], fitness[i]);
+			if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			if (t instanceof Error)
+				throw (Error) t;
+			throw new IllegalStateException(t);
+		}
+
+		for (int i = 0; i < brains.length; i++)
+			reportFitness(brains[i], fitness[i]);
+		return brains.length;
+	}
+
 	/**
 	 * Kills a Population so it can no longer produce networks.
 	 * 
@@ -329,7 +646,7 @@ public abstract class Population {
 	 */
 	public void killPopulation(String message) {
 		alive = false;
-		Braincraft.report("POPULATION " + ID + " was killed: " + message);
+		context.report("POPULATION " + ID + " was killed: " + message);
 	}
 
 	// CLASS ID METHODS
@@ -375,12 +692,39 @@ public abstract class Population {
 	 * @param d
 	 *            DNA to register
 	 */
-	protected void registerDNA(DNA d) {
+	protected void registerDNA(final DNA d) {
+		if (offHeapGenomes && !context.isGatheringStats()) {
+			if (genomeArena == null)
+				genomeArena = genomeStore.openArena();
+			d.pack(genomeArena);
+		}
 		unevaluated.add(d);
-		Braincraft.report("POPULATION " + ID + ": DNA " + d.ID
+		// Carried over with its fitness, so never built or issued
+		if (brainBuilder != null && d.testedBrain == null) {
+			d.prebuilt = new FutureTask<Brain>(new Callable<Brain>() {
+				public Brain call() {
+					return d.DNAtoBrain();
+				}
+			});
+			brainBuilder.execute(d.prebuilt);
+		}
+		context.report("POPULATION " + ID + ": DNA " + d.ID
 				+ " was just made.");
 	}
 
+	/**
+	 * Keeps a DNA of an earlier generation readable once that generation's
+	 * genomes are released, by moving it into the current generation's Arena.
+	 * Subclasses call this from postPopulate() for DNA they hold on to.
+	 * 
+	 * @param d
+	 *            DNA to keep
+	 */
+	protected void keepGenome(DNA d) {
+		if (genomeArena != null)
+			d.moveTo(genomeArena);
+	}
+
 	/**
 	 * Registers an NNode with the library
 	 * 
@@ -389,7 +733,7 @@ public abstract class Population {
 	 */
 	protected void registerNode(NNode node) {
 		nodes.add(node);
-		Braincraft.report("POPULATION " + ID + ": Node " + node.ID
+		context.report("POPULATION " + ID + ": Node " + node.ID
 				+ " was just made.");
 	}
 
@@ -402,12 +746,213 @@ public abstract class Population {
 	protected void registerGene(Gene gene) {
 		if (gene.innovation - 1 == genes.size()) {
 			genes.add(gene);
-			Braincraft.report("POPULATION " + ID + ": Innovation "
+			metrics.increment(Metrics.Counter.INNOVATIONS);
+			context.report("POPULATION " + ID + ": Innovation "
 					+ gene.innovation + " was just made.");
 		}
 	}
 
 	// EVOLUTION AND HELPER METHODS:
+	/**
+	 * Gets the current generation ready to issue Brains: starts the next
+	 * generation if the current one is finished, and with memoizeFitness on
+	 * reports every unevaluated DNA found in the FitnessCache as evaluated.
+	 * That can finish a generation without a single Brain being issued, in
+	 * which case the next one is started too.
+	 */
+	private void prepareGeneration() {
+		int generations = 0;
+		while (true) {
+			if (generationFinished()) {
+				if (pauseStart == 0)
+					pauseStart = System.nanoTime();
+				nextGeneration();
+				answerCarried();
+				generations++;
+			}
+			if (!memoizeFitness || generations > MAX_CACHED_GENERATIONS)
+				return;
+			answerFromCache();
+			if (!generationFinished())
+				return;
+		}
+	}
+
+	/**
+	 * Gets the Brain of a DNA being issued: the one built in the background if
+	 * prebuildBrains() is on, otherwise a new one. A background build that
+	 * has not started yet is run here rather than waited for.
+	 * 
+	 * @param d
+	 *            the DNA being issued
+	 * @return its Brain
+	 */
+	private Brain buildBrain(DNA d) {
+		FutureTask<Brain> task = d.prebuilt;
+		if (task == null)
+			return d.DNAtoBrain();
+		d.prebuilt = null;
+
+		// Does nothing if the builder has started or finished it already
+		task.run();
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable t = e.getCause();
+			if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			if (t instanceof Error)
+				throw (Error) t;
+			throw new IllegalStateException(t);
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Puts the DNA of an issued Brain that could not be tested back at the
+	 * front of the generation, to be issued again
+	 * 
+	 * @param b
+	 *            the Brain
+	 */
+	private void returnBrain(Brain b) {
+		issued.remove(b);
+		unevaluated.addFirst(b.dna);
+	}
+
+	/**
+	 * Records the pause between generations once the first Brain of a new
+	 * generation has been issued
+	 * 
+	 * @param now
+	 *            when it was issued
+	 */
+	private void endPause(long now) {
+		if (pauseStart != 0) {
+			metrics.addNanos(Metrics.Phase.PAUSE, now - pauseStart);
+			pauseStart = 0;
+		}
+	}
+
+	/**
+	 * Whether every Brain in the current generation has been evaluated
+	 * 
+	 * @return true if the next generation can be bred
+	 */
+	private boolean generationFinished() {
+		return evaluated.size() == populationSize && unevaluated.size() == 0
+				&& issued.size() == 0;
+	}
+
+	/**
+	 * Reports every DNA carried over with its original's fitness and Brain
+	 * as evaluated, see deterministicFitness. Done once the new generation
+	 * has been bred, since breeding clears the evaluated Brains.
+	 */
+	private void answerCarried() {
+		Iterator<DNA> it = unevaluated.iterator();
+		while (it.hasNext()) {
+			DNA d = it.next();
+			if (d.testedBrain == null)
+				continue;
+			it.remove();
+			Brain b = new Brain(d, d.testedBrain);
+			b.reportFitness(d.testedFitness);
+			d.testedBrain = b;
+			evaluated.add(b);
+		}
+		if (generationFinished())
+			endGeneration();
+	}
+
+	/**
+	 * Looks up every unevaluated DNA not yet looked up in the FitnessCache.
+	 * DNA found there is moved straight to evaluated with its remembered
+	 * fitness; the rest is left to be issued.
+	 */
+	private void answerFromCache() {
+		boolean answered = false;
+		Iterator<DNA> it = unevaluated.iterator();
+		while (it.hasNext()) {
+			DNA d = it.next();
+			if (d.lookedUp)
+				continue;
+			d.lookedUp = true;
+			Double fitness = fitnessCache.get(d.fitnessKey());
+			if (fitness == null) {
+				metrics.increment(Metrics.Counter.FITNESS_CACHE_MISSES);
+				continue;
+			}
+			it.remove();
+			Brain b = buildBrain(d);
+			b.reportFitness(fitness);
+			if (deterministicFitness)
+				d.testedBrain = b;
+			evaluated.add(b);
+			metrics.increment(Metrics.Counter.FITNESS_CACHE_HITS);
+			answered = true;
+		}
+		if (answered && generationFinished())
+			endGeneration();
+	}
+
+	/**
+	 * Ends the current generation once its last fitness is in and publishes
+	 * its metrics, so the last generation of a run is published too. The
+	 * next generation is bred later, when Brains are asked for again.
+	 */
+	private void endGeneration() {
+		int finished = currentGeneration;
+		incrementGeneration();
+
+		if (generationEvent.shouldCommit()) {
+			generationEvent.populationID = ID;
+			generationEvent.generation = finished;
+			generationEvent.brains = populationSize;
+			generationEvent.averageFitness = lastAverageFitness;
+			generationEvent.bestFitness = lastBestFitness;
+			generationEvent.commit();
+		}
+
+		metrics.endGeneration(ID, finished, lastAverageFitness,
+				lastBestFitness);
+	}
+
+	/**
+	 * Breeds the next generation once the current one has ended
+	 */
+	private void nextGeneration() {
+		long start = System.nanoTime();
+		RepopulateEvent event = new RepopulateEvent();
+		event.begin();
+		// The parents stay readable until the next generation is bred, then
+		// their genomes are released all at once
+		GenomeStore.Arena dyingArena = genomeArena;
+		genomeArena = null;
+		repopulate();
+		postPopulate();
+		if (dyingArena != null)
+			dyingArena.release();
+		metrics.time(Metrics.Phase.REPOPULATE, start);
+		if (event.shouldCommit()) {
+			event.populationID = ID;
+			event.generation = currentGeneration;
+			event.commit();
+		}
+
+		generationEvent = new GenerationEvent();
+		generationEvent.begin();
+	}
+
 	/**
 	 * Increments the library Generation number and calculates averages for
 	 * previous generation.
@@ -415,21 +960,24 @@ public abstract class Population {
 	private void incrementGeneration() {
 		// Calculate average, assign champ
 		double totalFitness = 0;
+		double bestFit = Double.NEGATIVE_INFINITY;
 		for (Brain b : evaluated) {
 			totalFitness += b.dna.fitness;
+			bestFit = Math.max(bestFit, b.dna.fitness);
+			metrics.recordGenomeSize(b.dna.numGenes());
 		}
 		double averageFit = totalFitness / populationSize;
+		lastAverageFitness = averageFit;
+		lastBestFitness = bestFit;
 
-		if (Braincraft.gatherStats)
-			Braincraft.generationAverages.add(averageFit);
+		context.recordGenerationAverage(averageFit);
 
-		Braincraft.report("POPULATION " + ID
+		context.report("POPULATION " + ID
 				+ ": Average fitness for generation " + currentGeneration
 				+ " was " + averageFit);
-		Braincraft.report("POPULATION " + ID + ": End of generation "
+		context.report("POPULATION " + ID + ": End of generation "
 				+ currentGeneration + ".");
-		Braincraft
-				.report("-----------------------------------------------------");
+		context.report("-----------------------------------------------------");
 
 		currentGeneration++;
 	}
@@ -450,6 +998,11 @@ public abstract class Population {
 		nodeMutationRate = p.nodeMutationRate;
 		disabledRate = p.disabledRate;
 		inheritFromHigherFitRate = p.inheritFromHigherFitRate;
+		feedForward = p.feedForward;
+		activation = p.activation;
+		floatPrecision = p.floatPrecision;
+		memoizeFitness = p.memoizeFitness;
+		offHeapGenomes = p.offHeapGenomes;
 	}
 
 	// SUBCLASS HOOK METHODS (TO BE OVERRIDEN BY SUBCLASS):
@@ -458,7 +1011,7 @@ public abstract class Population {
 	 * by subclass and super must be called.
 	 */
 	protected void repopulate() {
-		Braincraft.report("POPULATION " + ID + ": Start of generation "
+		context.report("POPULATION " + ID + ": Start of generation "
 				+ currentGeneration + ".");
 	}
 
@@ -468,6 +1021,9 @@ public abstract class Population {
 	 */
 	protected void initialSetup() {
 		alive = true;
+		metrics = new Metrics();
+		generationEvent = new GenerationEvent();
+		generationEvent.begin();
 		currentGeneration = 1;
 		nextDNAID = 1;
 		genes = new ArrayList<Gene>();
@@ -475,14 +1031,22 @@ public abstract class Population {
 		issued = new LinkedList<Brain>();
 		evaluated = new LinkedList<Brain>();
 		nodes = new ArrayList<NNode>();
-		sigmoidCoefficient = Braincraft.sigmoidCoefficient;
-		perWeightMutationRate = Braincraft.perWeightMutationRate;
-		weightMutationRate = Braincraft.weightMutationRate;
-		linkMutationRate = Braincraft.linkMutationRate;
-		linkDisableRate = Braincraft.linkDisableRate;
-		nodeMutationRate = Braincraft.nodeMutationRate;
-		disabledRate = Braincraft.disabledRate;
-		inheritFromHigherFitRate = Braincraft.inheritFromHigherFitRate;
+		sigmoidCoefficient = context.sigmoidCoefficient;
+		perWeightMutationRate = context.perWeightMutationRate;
+		weightMutationRate = context.weightMutationRate;
+		linkMutationRate = context.linkMutationRate;
+		linkDisableRate = context.linkDisableRate;
+		nodeMutationRate = context.nodeMutationRate;
+		disabledRate = context.disabledRate;
+		inheritFromHigherFitRate = context.inheritFromHigherFitRate;
+		feedForward = context.feedForward;
+		activation = context.activation;
+		floatPrecision = context.floatPrecision;
+		memoizeFitness = context.memoizeFitness;
+		deterministicFitness = context.deterministicFitness;
+		fitnessCache = new FitnessCache(context.fitnessCacheSize);
+		offHeapGenomes = context.offHeapGenomes;
+		genomeStore = new GenomeStore();
 	}
 
 	/**
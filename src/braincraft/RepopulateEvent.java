@@ -0,0 +1,25 @@
+package braincraft;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         Flight Recorder event covering repopulate() and postPopulate(), the
+ *         breeding of a new generation.
+ */
+@Name("braincraft.Repopulate")
+@Label("Repopulate")
+@Category({ "Braincraft", "Evolution" })
+@Description("Breeding the next generation of a Population")
+class RepopulateEvent extends jdk.jfr.Event {
+	@Label("Population")
+	int populationID;
+
+	@Label("Generation")
+	@Description("The generation being bred")
+	int generation;
+}
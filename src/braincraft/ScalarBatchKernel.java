@@ -0,0 +1,25 @@
+package braincraft;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         BatchKernel written with plain loops. Sums genes in the same order
+ *         as Brain.pumpNet, so its outputs are identical to it.
+ */
+class ScalarBatchKernel implements BatchKernel {
+	public void pump(int[] computeNodes, int[] geneOffsets,
+			int[] geneSources, double[] weights, double[] src, double[] dst,
+			int lanes, Activation activation, double coefficient) {
+		for (int k = 0; k < computeNodes.length; k++) {
+			int out = computeNodes[k] * lanes;
+			int first = geneOffsets[k];
+			int last = geneOffsets[k + 1];
+			for (int l = 0; l < lanes; l++) {
+				double sum = 0.0;
+				for (int g = first; g < last; g++)
+					sum += weights[g * lanes + l] * src[geneSources[g] * lanes + l];
+				dst[out + l] = activation.apply(sum, coefficient);
+			}
+		}
+	}
+}
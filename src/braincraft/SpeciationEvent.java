@@ -0,0 +1,30 @@
+package braincraft;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         Flight Recorder event for placing one DNA into a Tribe.
+ */
+@Name("braincraft.Speciation")
+@Label("Speciation")
+@Category({ "Braincraft", "Evolution" })
+@Description("Finding a compatible Tribe for a new DNA")
+class SpeciationEvent extends jdk.jfr.Event {
+	@Label("Population")
+	int populationID;
+
+	@Label("DNA")
+	int dnaID;
+
+	@Label("Tribe")
+	int tribeID;
+
+	@Label("New Tribe")
+	@Description("Whether no Tribe was compatible and a new one was started")
+	boolean newTribe;
+}
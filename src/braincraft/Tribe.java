@@ -84,7 +84,28 @@ public class Tribe implements Comparable<Tribe> {
 	 * @return a random DNA from the parental generation
 	 */
 	protected DNA getRandomParent() {
-		return lastGen.get(Braincraft.randomInteger(lastGen.size()));
+		return lastGen.get(population.context.randomInteger(lastGen.size()));
+	}
+
+	/**
+	 * Gets a DNA from the parental generation by fitness rank. Only
+	 * meaningful once the Tribe has been sorted and backed up.
+	 * 
+	 * @param rank
+	 *            the fitness rank (0 is highest)
+	 * @return the DNA with that fitness rank
+	 */
+	protected DNA getFittestParent(int rank) {
+		return lastGen.get(lastGen.size() - 1 - rank);
+	}
+
+	/**
+	 * Gets the number of DNA in the parental generation
+	 * 
+	 * @return number of parents
+	 */
+	protected int numParents() {
+		return lastGen.size();
 	}
 
 	/**
@@ -163,8 +184,8 @@ public class Tribe implements Comparable<Tribe> {
 				disjoint++;
 			}
 			if (d1has && d2has) {
-				weightdif += Math.abs(representative.getGene(i).weight
-						- other.getGene(i).weight);
+				weightdif += Math.abs(representative.getWeight(i)
+						- other.getWeight(i));
 				matching++;
 			}
 		}
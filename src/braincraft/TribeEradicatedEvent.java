@@ -0,0 +1,26 @@
+package braincraft;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         Flight Recorder event for a Tribe dying out.
+ */
+@Name("braincraft.TribeEradicated")
+@Label("Tribe Eradicated")
+@Category({ "Braincraft", "Evolution" })
+@Description("A Tribe was left with no members and removed")
+class TribeEradicatedEvent extends jdk.jfr.Event {
+	@Label("Population")
+	int populationID;
+
+	@Label("Tribe")
+	int tribeID;
+
+	@Label("Generation")
+	int generation;
+}
@@ -31,6 +31,15 @@ public class TribePopulation extends Population {
 	 * Percentage of population killed before reproduction occurs.
 	 */
 	public double percentageOfTribeToKillBeforeReproduction;
+	/**
+	 * Number of each Tribe's fittest DNA copied unchanged into the next
+	 * generation, out of the babies the Tribe earned. Only Tribes that earned
+	 * more than 5 babies carry any over, and every Tribe breeds at least one
+	 * baby. With deterministicFitness on, the copies keep their originals'
+	 * fitness and Brains and are not tested again; with memoizeFitness on,
+	 * they are answered from the FitnessCache while it remembers them.
+	 */
+	public int elitism;
 
 	// FIELDS:
 	/**
@@ -65,7 +74,7 @@ public class TribePopulation extends Population {
 	 * @param numOutputs
 	 */
 	public TribePopulation(int numInputs, int numOutputs) {
-		this(Braincraft.populationSize, numInputs, numOutputs);
+		super(numInputs, numOutputs);
 	}
 
 	/**
@@ -78,6 +87,43 @@ public class TribePopulation extends Population {
 		super(popSize, b);
 	}
 
+	/**
+	 * Construct a TribePopulation in its own run
+	 * 
+	 * @param context
+	 * @param popSize
+	 * @param in
+	 * @param out
+	 */
+	public TribePopulation(BraincraftContext context, int popSize, int in,
+			int out) {
+		super(context, popSize, in, out);
+	}
+
+	/**
+	 * Construct a TribePopulation in its own run with the context's default
+	 * population size
+	 * 
+	 * @param context
+	 * @param numInputs
+	 * @param numOutputs
+	 */
+	public TribePopulation(BraincraftContext context, int numInputs,
+			int numOutputs) {
+		super(context, numInputs, numOutputs);
+	}
+
+	/**
+	 * Construct a TribePopulation in its own run from a seed network
+	 * 
+	 * @param context
+	 * @param popSize
+	 * @param b
+	 */
+	public TribePopulation(BraincraftContext context, int popSize, Brain b) {
+		super(context, popSize, b);
+	}
+
 	// LIBRARY METHODS:
 	/**
 	 * Gets an ID for a new Tribe
@@ -95,7 +141,8 @@ public class TribePopulation extends Population {
 	 */
 	protected void registerTribe(Tribe t) {
 		newTribes.add(t);
-		Braincraft.report("POPULATION " + ID + ": Tribe " + t.ID
+		metrics.increment(Metrics.Counter.TRIBES_CREATED);
+		context.report("POPULATION " + ID + ": Tribe " + t.ID
 				+ " was just made.");
 	}
 
@@ -108,22 +155,47 @@ public class TribePopulation extends Population {
 	protected void registerDNA(DNA d) {
 		super.registerDNA(d);
 
+		long start = System.nanoTime();
+		SpeciationEvent event = new SpeciationEvent();
+		event.begin();
+		int before = newTribes.size();
+		Tribe t = placeInTribe(d);
+		metrics.time(Metrics.Phase.SPECIATION, start);
+		if (event.shouldCommit()) {
+			event.populationID = ID;
+			event.dnaID = d.ID;
+			event.tribeID = t.ID;
+			event.newTribe = newTribes.size() > before;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Adds DNA to the first compatible Tribe, or starts a new Tribe for it.
+	 * 
+	 * @param d
+	 *            the DNA to place
+	 * @return the Tribe d was placed in
+	 */
+	private Tribe placeInTribe(DNA d) {
 		for (Tribe tri : tribes) {
 			if (tri.isCompatible(d)) {
 				tri.add(d);
-				return;
+				return tri;
 			}
 		}
 
 		for (Tribe tri : newTribes) {
 			if (tri.isCompatible(d)) {
 				tri.add(d);
-				return;
+				return tri;
 			}
 		}
 
 		// Otherwise create a new Tribe with this Brain as the representative.
-		registerTribe(new Tribe(this, d));
+		Tribe tri = new Tribe(this, d);
+		registerTribe(tri);
+		return tri;
 	}
 
 	// NEAT EPOCH AND HELPER METHODS:
@@ -132,6 +204,7 @@ public class TribePopulation extends Population {
 
 		double totalFitness = 0.0;
 		double normalizeNeg = 0.0;
+		long start = System.nanoTime();
 
 		// Tribe loop to determine adjusted fitnesses
 		for (Tribe t : tribes) {
@@ -164,6 +237,8 @@ public class TribePopulation extends Population {
 		
 		// Normalize the total fitness
 		totalFitness = totalFitness + (tribes.size() * -1 * normalizeNeg);
+		metrics.time(Metrics.Phase.FITNESS_SHARING, start);
+		start = System.nanoTime();
 
 		// Determine reproduction rights, remove poor-performing members
 		int numBabiesDealt = 0;
@@ -209,6 +284,7 @@ public class TribePopulation extends Population {
 		int babycount = 0;
 		for (Tribe t : tribes)
 			babycount += t.numBabies;
+		metrics.time(Metrics.Phase.CULLING, start);
 
 		// Move last generation to proper array
 		for (Tribe t : tribes) {
@@ -222,15 +298,37 @@ public class TribePopulation extends Population {
 				continue;
 			}
 
+			// Carry over the fittest unchanged. As in NEAT, only Tribes that
+			// earned more than 5 babies do, so small Tribes still explore.
+			int elites = 0;
+			if (t.numBabies > 5)
+				elites = Math.min(Math.min(elitism, t.numParents()),
+						t.numBabies - 1);
+			for (int j = 0; j < elites; j++) {
+				DNA elite = t.getFittestParent(j);
+				DNA child = new DNA(this, elite);
+				if (deterministicFitness && elite.testedBrain != null) {
+					child.testedFitness = elite.testedFitness;
+					child.testedBrain = elite.testedBrain;
+				}
+				metrics.increment(Metrics.Counter.ELITES);
+				registerDNA(child);
+				if (context.isGatheringStats())
+					context.recordGenetics("elite " + elite.ID + " "
+							+ child.ID);
+			}
+
 			// Create offspring
-			for (int j = 0; j < t.numBabies; j++) {
+			for (int j = elites; j < t.numBabies; j++) {
 				DNA mother = t.getRandomParent();
 				DNA father = t.getRandomParent();
 				// System.out.println(mother.ID + "," + father.ID);
+				start = System.nanoTime();
 				DNA child = father.NEATcross(mother);
+				metrics.time(Metrics.Phase.CROSSOVER, start);
 				registerDNA(child);
-				if (Braincraft.gatherStats)
-					Braincraft.genetics.add("reproduction " + mother.ID + " "
+				if (context.isGatheringStats())
+					context.recordGenetics("reproduction " + mother.ID + " "
 							+ father.ID + " " + child.ID);
 			}
 			t.numBabies = 0;
@@ -263,11 +361,12 @@ public class TribePopulation extends Population {
 		super.initialSetup();
 		tribes = new ArrayList<Tribe>();
 		newTribes = new ArrayList<Tribe>();
-		c1 = Braincraft.c1;
-		c2 = Braincraft.c2;
-		c3 = Braincraft.c3;
-		tribeCompatibilityThreshold = Braincraft.tribeCompatibilityThreshold;
-		percentageOfTribeToKillBeforeReproduction = Braincraft.percentageOfTribeToKillBeforeReproduction;
+		c1 = context.c1;
+		c2 = context.c2;
+		c3 = context.c3;
+		tribeCompatibilityThreshold = context.tribeCompatibilityThreshold;
+		percentageOfTribeToKillBeforeReproduction = context.percentageOfTribeToKillBeforeReproduction;
+		elitism = context.elitism;
 	}
 
 	protected void postPopulate() {
@@ -284,14 +383,26 @@ public class TribePopulation extends Population {
 		// Kill off empty tribes
 		for (Tribe t : deadTribes) {
 			tribes.remove(t);
-			Braincraft.report("POPULATION " + ID + ": Tribe " + t.ID
+			metrics.increment(Metrics.Counter.TRIBES_ERADICATED);
+			TribeEradicatedEvent event = new TribeEradicatedEvent();
+			if (event.shouldCommit()) {
+				event.populationID = ID;
+				event.tribeID = t.ID;
+				event.generation = currentGeneration();
+				event.commit();
+			}
+			context.report("POPULATION " + ID + ": Tribe " + t.ID
 					+ " was eradicated.");
 		}
+		// Representatives may be from any earlier generation
+		for (Tribe t : tribes)
+			keepGenome(t.representative);
+		metrics.setTribes(tribes.size());
 		if (tribes.size() == 1) {
-			Braincraft.report("POPULATION " + ID + ": There is "
+			context.report("POPULATION " + ID + ": There is "
 					+ tribes.size() + " tribe currently active.");
 		} else {
-			Braincraft.report("POPULATION " + ID + ": There are "
+			context.report("POPULATION " + ID + ": There are "
 					+ tribes.size() + " tribes currently active.");
 		}
 	}
@@ -0,0 +1,71 @@
+package braincraft;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author Chris Donahue
+ * 
+ *         BatchKernel using the Vector API, computing as many lanes per
+ *         instruction as the CPU allows. Only ever loaded by name from
+ *         BrainBatch, so nothing else needs the incubator module. The sigmoids
+ *         use a vectorized exp, so results are within 1e-15 of Brain.pumpNet
+ *         rather than identical. FAST_SIGMOID uses it too, since a table
+ *         lookup does not vectorize, and so differs from pumpNet by the
+ *         table's error.
+ */
+class VectorBatchKernel implements BatchKernel {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	public void pump(int[] computeNodes, int[] geneOffsets,
+			int[] geneSources, double[] weights, double[] src, double[] dst,
+			int lanes, Activation activation, double coefficient) {
+		int step = SPECIES.length();
+		for (int k = 0; k < computeNodes.length; k++) {
+			int out = computeNodes[k] * lanes;
+			int first = geneOffsets[k];
+			int last = geneOffsets[k + 1];
+			for (int l = 0; l < lanes; l += step) {
+				DoubleVector sum = DoubleVector.zero(SPECIES);
+				for (int g = first; g < last; g++) {
+					DoubleVector w = DoubleVector.fromArray(SPECIES, weights,
+							g * lanes + l);
+					DoubleVector x = DoubleVector.fromArray(SPECIES, src,
+							geneSources[g] * lanes + l);
+					// multiply then add, like the scalar sum, not fma
+					sum = sum.add(w.mul(x));
+				}
+				activate(sum, activation, coefficient).intoArray(dst, out + l);
+			}
+		}
+	}
+
+	/**
+	 * Applies an activation function to every lane
+	 * 
+	 * @param sum
+	 *            node sums
+	 * @param activation
+	 *            the activation function
+	 * @param coefficient
+	 *            the sigmoid coefficient
+	 * @return node outputs
+	 */
+	private static DoubleVector activate(DoubleVector sum,
+			Activation activation, double coefficient) {
+		switch (activation) {
+		case TANH:
+			return sum.mul(-coefficient).lanewise(VectorOperators.TANH);
+		case RELU:
+			return sum.max(0.0);
+		case STEP:
+			VectorMask<Double> positive = sum.compare(VectorOperators.GT, 0.0);
+			return DoubleVector.zero(SPECIES).blend(1.0, positive);
+		default:
+			DoubleVector e = sum.mul(coefficient).lanewise(VectorOperators.EXP);
+			return DoubleVector.broadcast(SPECIES, 1.0).div(e.add(1.0));
+		}
+	}
+}